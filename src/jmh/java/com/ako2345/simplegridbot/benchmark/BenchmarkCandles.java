@@ -0,0 +1,41 @@
+package com.ako2345.simplegridbot.benchmark;
+
+import com.ako2345.simplegridbot.model.CandleSeries;
+import com.ako2345.simplegridbot.util.PriceUtils;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+/**
+ * Детерминированные свечи для бенчмарков: часовые свечи со случайным блужданием цены около 150 с шагом 0.01.
+ */
+public class BenchmarkCandles {
+
+    private static final long START_TIMESTAMP = 1640995200L;
+    private static final long CANDLE_DURATION = 3600L;
+    private static final long TICKS_PER_CENT = PriceUtils.toTicks(new BigDecimal("0.01"));
+
+    public static CandleSeries generate(int candlesNumber) {
+        var random = new Random(42);
+        var builder = CandleSeries.builder();
+        var price = 15000L;
+        for (int i = 0; i < candlesNumber; i++) {
+            var open = price + random.nextInt(41) - 20;
+            var close = open + random.nextInt(301) - 150;
+            // цена не уходит далеко от начальной, чтобы сетка оставалась в диапазоне свечей
+            if (close < 12000 || close > 18000) close = 2 * open - close;
+            var low = Math.min(open, close) - random.nextInt(120);
+            var high = Math.max(open, close) + random.nextInt(120);
+            builder.add(
+                    START_TIMESTAMP + CANDLE_DURATION * i,
+                    open * TICKS_PER_CENT,
+                    low * TICKS_PER_CENT,
+                    high * TICKS_PER_CENT,
+                    close * TICKS_PER_CENT
+            );
+            price = close;
+        }
+        return builder.build(false);
+    }
+
+}
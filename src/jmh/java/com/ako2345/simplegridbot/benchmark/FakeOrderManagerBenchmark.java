@@ -0,0 +1,71 @@
+package com.ako2345.simplegridbot.benchmark;
+
+import com.ako2345.simplegridbot.bot.grid.Grid;
+import com.ako2345.simplegridbot.model.Order;
+import com.ako2345.simplegridbot.order.FakeOrderManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск исполняемых ордеров при изменении цены. Книга содержит ордера на всех уровнях сетки: на покупку ниже средней
+ * цены, на продажу – выше.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FakeOrderManagerBenchmark {
+
+    private static final String FIGI = "BBG004730N88";
+
+    @Param({"10", "50", "200"})
+    public int gridsNumber;
+
+    private Grid grid;
+    private FakeOrderManager fakeOrderManager;
+    private BigDecimal priceBelowLevel;
+    private BigDecimal priceAboveLevel;
+    private BigDecimal priceWithinRange;
+
+    @Setup
+    public void setUp() {
+        grid = new Grid(new BigDecimal("100"), new BigDecimal("200"), gridsNumber);
+        fakeOrderManager = new FakeOrderManager();
+        var priceLevels = grid.getPriceLevels();
+        var middleIndex = gridsNumber / 2;
+        for (int i = 0; i < gridsNumber; i++) {
+            if (i < middleIndex) {
+                fakeOrderManager.makeBuyLimitOrder(FIGI, 1, BigDecimal.TEN, priceLevels[i]);
+            } else {
+                fakeOrderManager.makeSellLimitOrder(FIGI, 1, BigDecimal.TEN, priceLevels[i]);
+            }
+        }
+        var halfStep = grid.getPriceStep().divide(BigDecimal.valueOf(2));
+        priceBelowLevel = priceLevels[middleIndex].subtract(halfStep);
+        priceAboveLevel = priceLevels[middleIndex].add(halfStep);
+        priceWithinRange = priceAboveLevel.add(halfStep.divide(BigDecimal.valueOf(2)));
+    }
+
+    /**
+     * Цена меняется в пределах диапазона сетки: ордера не исполняются.
+     */
+    @Benchmark
+    public List<Order> getOrdersToExecuteWithinRange() {
+        return fakeOrderManager.getOrdersToExecute(priceWithinRange, priceAboveLevel, grid);
+    }
+
+    /**
+     * Цена пересекает уровень сетки: исполняется один ордер на продажу, который затем выставляется снова.
+     */
+    @Benchmark
+    public List<Order> getOrdersToExecuteCrossingLevel() {
+        var orders = fakeOrderManager.getOrdersToExecute(priceAboveLevel, priceBelowLevel, grid);
+        for (Order order : orders) {
+            fakeOrderManager.makeSellLimitOrder(order.getFigi(), (int) order.getLotsNumber(), BigDecimal.TEN, order.getPrice());
+        }
+        return orders;
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.ako2345.simplegridbot.benchmark;
+
+import com.ako2345.simplegridbot.bot.grid.Grid;
+import com.ako2345.simplegridbot.bot.grid.GridManager;
+import com.ako2345.simplegridbot.util.PriceUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определение индекса ценового диапазона и расчёт количества лотов на уровень сетки.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GridBenchmark {
+
+    private static final int PRICES_NUMBER = 1024;
+
+    @Param({"10", "50", "200"})
+    public int gridsNumber;
+
+    private Grid grid;
+    private BigDecimal[] prices;
+    private long[] tickPrices;
+    private int priceIndex = 0;
+
+    @Setup
+    public void setUp() {
+        grid = new Grid(new BigDecimal("100"), new BigDecimal("200"), gridsNumber);
+        var random = new Random(42);
+        prices = new BigDecimal[PRICES_NUMBER];
+        tickPrices = new long[PRICES_NUMBER];
+        for (int i = 0; i < PRICES_NUMBER; i++) {
+            prices[i] = BigDecimal.valueOf(9000 + random.nextInt(12000), 2);
+            tickPrices[i] = PriceUtils.toTicks(prices[i]);
+        }
+    }
+
+    @Benchmark
+    public int getPriceRangeIndex() {
+        priceIndex = (priceIndex + 1) & (PRICES_NUMBER - 1);
+        return grid.getPriceRangeIndex(prices[priceIndex]);
+    }
+
+    @Benchmark
+    public int getPriceRangeIndexTicks() {
+        priceIndex = (priceIndex + 1) & (PRICES_NUMBER - 1);
+        return grid.getPriceRangeIndex(tickPrices[priceIndex]);
+    }
+
+    @Benchmark
+    public int calculateLotsPerGrid() {
+        return GridManager.calculateLotsPerGrid(grid, BigDecimal.valueOf(1000000F), BigDecimal.TEN);
+    }
+
+}
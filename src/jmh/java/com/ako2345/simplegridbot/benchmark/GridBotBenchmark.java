@@ -0,0 +1,107 @@
+package com.ako2345.simplegridbot.benchmark;
+
+import com.ako2345.simplegridbot.bot.GridBot;
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.model.Order;
+import com.ako2345.simplegridbot.model.OrderStatus;
+import com.ako2345.simplegridbot.model.OrdersCancellation;
+import com.ako2345.simplegridbot.order.OrderManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Учёт исполненных ордеров и выставление лимитных ордеров ботом. Ордера передаются в {@link OrderManager}, который
+ * ничего не делает, поэтому измеряется только работа бота.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GridBotBenchmark {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final BigDecimal LOT_SIZE = BigDecimal.TEN;
+    private static final BigDecimal INITIAL_PRICE = new BigDecimal("150");
+    private static final int FILLS_NUMBER = 1000;
+
+    @Param({"10", "50", "200"})
+    public int gridsNumber;
+
+    private GridBotConfig config;
+    private GridBot gridBot;
+    private BigDecimal lowerLevel;
+    private BigDecimal upperLevel;
+
+    @Setup
+    public void setUp() {
+        config = new GridBotConfig(FIGI, 100, 200, gridsNumber, 10000000);
+        gridBot = new GridBot(config, new NoOpOrderManager(), LOT_SIZE, INITIAL_PRICE);
+        var priceLevels = gridBot.getGridManager().getGrid().getPriceLevels();
+        var middleIndex = gridsNumber / 2;
+        lowerLevel = priceLevels[middleIndex - 1];
+        upperLevel = priceLevels[middleIndex];
+    }
+
+    /**
+     * Цена колеблется между двумя соседними уровнями: ордера на продажу и покупку исполняются по очереди. Каждый вызов
+     * начинается с нового бота, поэтому история сделок не превышает {@link #FILLS_NUMBER}.
+     */
+    @Benchmark
+    @OperationsPerInvocation(FILLS_NUMBER)
+    public GridBot processOrder() {
+        var gridBot = new GridBot(config, new NoOpOrderManager(), LOT_SIZE, INITIAL_PRICE);
+        var lotsNumber = gridBot.getGridManager().getLotsPerGrid();
+        for (int i = 0; i < FILLS_NUMBER; i++) {
+            var isSell = i % 2 == 0;
+            var price = isSell ? upperLevel : lowerLevel;
+            var baseCurrencyAmount = price.multiply(LOT_SIZE).multiply(BigDecimal.valueOf(lotsNumber));
+            gridBot.processOrder("", FIGI, isSell ? Direction.SELL : Direction.BUY, price, baseCurrencyAmount, lotsNumber, null);
+        }
+        return gridBot;
+    }
+
+    /**
+     * Выставление ордеров на всех уровнях сетки.
+     */
+    @Benchmark
+    public GridBot createNewLimitOrders() {
+        gridBot.clearPriceLevelsWithLimitOrders();
+        gridBot.createNewLimitOrders(INITIAL_PRICE);
+        return gridBot;
+    }
+
+    private static class NoOpOrderManager implements OrderManager {
+
+        private static final Order ORDER = new Order("", FIGI, INITIAL_PRICE, Direction.BUY, 0, BigDecimal.ZERO, OrderStatus.NEW);
+
+        @Override
+        public Order makeBuyMarketOrder(String figi, int lotsNumber, BigDecimal lotSize) {
+            return ORDER;
+        }
+
+        @Override
+        public Order makeSellMarketOrder(String figi, int lotsNumber, BigDecimal lotSize) {
+            return ORDER;
+        }
+
+        @Override
+        public Order makeBuyLimitOrder(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
+            return ORDER;
+        }
+
+        @Override
+        public Order makeSellLimitOrder(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
+            return ORDER;
+        }
+
+        @Override
+        public OrdersCancellation cancelOrders(String figi) {
+            return new OrdersCancellation(0, List.of());
+        }
+
+    }
+
+}
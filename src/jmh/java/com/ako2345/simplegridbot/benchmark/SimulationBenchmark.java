@@ -0,0 +1,68 @@
+package com.ako2345.simplegridbot.benchmark;
+
+import com.ako2345.simplegridbot.bot.GridBot;
+import com.ako2345.simplegridbot.bot.GridBotStatistics;
+import com.ako2345.simplegridbot.cache.InstrumentsCache;
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+import com.ako2345.simplegridbot.model.CandleSeries;
+import com.ako2345.simplegridbot.order.FakeOrderManager;
+import com.ako2345.simplegridbot.service.BacktestService;
+import com.ako2345.simplegridbot.service.CandleHistoryService;
+import com.ako2345.simplegridbot.service.ConfigService;
+import com.ako2345.simplegridbot.simulation.SimulationMode;
+import com.ako2345.simplegridbot.util.PriceUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Полная симуляция работы бота на сгенерированных часовых свечах ({@link BenchmarkCandles}). Сетка занимает средние
+ * 80% диапазона цен свечей. Время включает подготовку пути цены ({@link com.ako2345.simplegridbot.simulation.PricePath}).
+ * Вариант REFERENCE – эталонная реализация на BigDecimal, с которой сравниваются остальные.
+ *
+ * <p>Симуляция не обращается к загрузке свечей и кэшу инструментов, поэтому сервису передаются заглушки.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SimulationBenchmark {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final BigDecimal LOT_SIZE = BigDecimal.TEN;
+
+    @Param({"10", "50"})
+    public int gridsNumber;
+
+    @Param({"30", "365"})
+    public int days;
+
+    @Param({"REFERENCE", "TICKS", "LEVEL_CROSSING"})
+    public SimulationMode simulationMode;
+
+    private final BacktestService backtestService = new BacktestService(mock(CandleHistoryService.class), mock(InstrumentsCache.class), mock(ConfigService.class));
+    private GridBotConfig config;
+    private CandleSeries candles;
+    private BigDecimal initialPrice;
+
+    @Setup
+    public void setUp() {
+        candles = BenchmarkCandles.generate(days * 24);
+        var minPrice = PriceUtils.fromTicks(candles.getLowest()).floatValue();
+        var maxPrice = PriceUtils.fromTicks(candles.getHighest()).floatValue();
+        var margin = (maxPrice - minPrice) / 10;
+        config = new GridBotConfig(FIGI, minPrice + margin, maxPrice - margin, gridsNumber, 10000000);
+        initialPrice = PriceUtils.fromTicks(candles.getOpen(0));
+    }
+
+    @Benchmark
+    public GridBotStatistics simulatePriceChanging() {
+        var fakeOrderManager = new FakeOrderManager();
+        fakeOrderManager.setSimulatedPrice(initialPrice);
+        var gridBot = new GridBot(config, fakeOrderManager, LOT_SIZE, initialPrice);
+        return backtestService.simulatePriceChanging(gridBot, fakeOrderManager, initialPrice, candles, simulationMode);
+    }
+
+}
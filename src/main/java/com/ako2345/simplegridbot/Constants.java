@@ -1,14 +1,57 @@
 package com.ako2345.simplegridbot;
 
+import com.ako2345.simplegridbot.analysis.SearchMode;
+import com.ako2345.simplegridbot.simulation.SimulationMode;
 import ru.tinkoff.piapi.contract.v1.CandleInterval;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 
 public class Constants {
 
     public static final int DEFAULT_SCALE = 8;
+    public static final int TICK_SCALE = 9;
     public static final BigDecimal BACKTEST_PRICE_STEP = new BigDecimal("0.05");
+    public static final BigDecimal DEFAULT_MIN_PRICE_INCREMENT = new BigDecimal("0.00000001");
     public static final CandleInterval DEFAULT_CANDLE_INTERVAL = CandleInterval.CANDLE_INTERVAL_HOUR;
+    public static final SimulationMode DEFAULT_SIMULATION_MODE = SimulationMode.TICKS;
+    public static final SearchMode DEFAULT_SEARCH_MODE = SearchMode.EXHAUSTIVE;
+    public static final boolean CANDLE_SERIES_OFF_HEAP = true;
+    public static final int CANDLES_REQUESTS_BURST = 10;
+    public static final int CANDLES_REQUEST_MAX_ATTEMPTS = 6;
+    public static final long CANDLES_REQUEST_INITIAL_BACKOFF_MS = 1000;
+    public static final long CANDLES_REQUEST_MAX_BACKOFF_MS = 30000;
+    public static final int PRICE_PATH_CACHE_SIZE = 8;
+    public static final int SIMULATION_RESULT_CACHE_SIZE = 50000;
+    public static final int JOBS_HISTORY_SIZE = 100;
+    public static final int JOB_RESULTS_CACHE_SIZE = 32;
+    public static final Duration JOB_RESULT_TTL = Duration.ofMinutes(10);
+    public static final long JOB_PROGRESS_INTERVAL_MS = 500;
+    public static final long JOB_EVENTS_TIMEOUT_MS = 30 * 60 * 1000;
+    public static final SearchMode SCREENER_DEFAULT_SEARCH_MODE = SearchMode.COARSE_TO_FINE;
+    public static final int SCREENER_DEFAULT_RESULTS_NUMBER = 50;
+    public static final int SCREENER_MIN_CANDLES = 24;
+    public static final int SCREENER_CANDLES_PER_DAY = 24;
+    public static final int SCREENER_BYTES_PER_CANDLE = 512;
+    public static final long TICK_LOG_SEGMENT_SIZE = 64L * 1024 * 1024;
+    public static final int TICK_RECORDER_BUFFER_SIZE = 1 << 16;
+    public static final long TICK_RECORDER_IDLE_NANOS = 1_000_000;
+    public static final long TICK_RECORDER_FLUSH_INTERVAL_SECONDS = 10;
+    public static final int TRADE_LEDGER_BLOCK_SIZE = 1 << 16;
+    public static final int TRADE_LEDGER_MAX_PAGE_SIZE = 1000;
+    public static final int GRID_BOT_EVENT_QUEUE_SIZE = 1024;
+    public static final int GRID_BOT_EVENT_BATCH_SIZE = 64;
+    public static final long GRID_BOT_EVENT_QUEUE_FULL_PARK_NANOS = 100_000;
+    public static final long GRID_BOT_EVENT_QUEUE_FULL_TIMEOUT_MS = 100;
+    public static final long GRID_BOT_EVENT_TIMEOUT_SECONDS = 60;
+    public static final long BOT_ORDERS_PENDING_EXECUTION_TTL_MS = 60000;
+    public static final int ORDERS_CANCEL_MAX_IN_FLIGHT = 64;
+    public static final long SANDBOX_ORDERS_SYNC_MIN_DELAY_MS = 500;
+    public static final long SANDBOX_ORDERS_SYNC_DELAY_MS = 1000;
+    public static final long SANDBOX_ORDERS_SYNC_MAX_DELAY_MS = 4000;
+    public static final int PRICE_STREAM_MAX_SUBSCRIPTIONS = 300;
+
+    public static final boolean KEEP_TRANSACTION_PAIRS = false;
 
     public static final boolean LOG_NEW_PRICE = true;
     public static final boolean LOG_SIGNALS = false;
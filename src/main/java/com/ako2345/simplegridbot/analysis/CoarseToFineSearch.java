@@ -0,0 +1,65 @@
+package com.ako2345.simplegridbot.analysis;
+
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Уточнение от грубой сетки параметров к мелкой. Сначала оценивается грубая сетка, затем
+ * {@link #REFINEMENTS_NUMBER} раз шаги параметров уменьшаются вдвое и оцениваются соседи
+ * {@link #REFINED_CONFIGS_NUMBER} лучших конфигураций. Все оценки выполняются на всех свечах, каждая конфигурация
+ * оценивается один раз.
+ */
+public class CoarseToFineSearch implements SearchStrategy {
+
+    private static final int COARSE_PRICE_DIVISIONS = 8;
+    private static final int COARSE_GRIDS_NUMBER_STEP = 4;
+    private static final int REFINEMENTS_NUMBER = 4;
+    private static final int REFINED_CONFIGS_NUMBER = 8;
+
+    @Override
+    public List<Map.Entry<GridBotConfig, BigDecimal>> search(SearchSpace searchSpace, ConfigEvaluator configEvaluator, int resultsNumber) {
+        var evaluatedConfigs = new HashSet<GridBotConfig>();
+        var topResults = new TopResults(Math.max(resultsNumber, REFINED_CONFIGS_NUMBER));
+        var candidates = new ArrayList<GridBotConfig>();
+        for (GridBotConfig config : searchSpace.getConfigs(COARSE_PRICE_DIVISIONS, COARSE_GRIDS_NUMBER_STEP)) {
+            // накопленная погрешность float может вывести крайние значения за границы пространства
+            if (searchSpace.contains(config.lowerPrice, config.upperPrice, config.gridsNumber)) candidates.add(config);
+        }
+        evaluatedConfigs.addAll(candidates);
+        var priceStep = searchSpace.getPriceRange() / COARSE_PRICE_DIVISIONS;
+        var gridsNumberStep = COARSE_GRIDS_NUMBER_STEP;
+        for (int refinement = 0; ; refinement++) {
+            topResults.addAll(candidates, configEvaluator.evaluate(candidates, configEvaluator.getCandlesNumber()));
+            if (refinement == REFINEMENTS_NUMBER) break;
+
+            priceStep /= 2;
+            gridsNumberStep = Math.max(1, gridsNumberStep / 2);
+            candidates = new ArrayList<>();
+            var bestConfigs = topResults.getConfigs();
+            for (GridBotConfig config : bestConfigs.subList(0, Math.min(REFINED_CONFIGS_NUMBER, bestConfigs.size()))) {
+                for (int lowerPriceShift = -1; lowerPriceShift <= 1; lowerPriceShift++) {
+                    for (int upperPriceShift = -1; upperPriceShift <= 1; upperPriceShift++) {
+                        for (int gridsNumberShift = -1; gridsNumberShift <= 1; gridsNumberShift++) {
+                            var lowerPrice = config.lowerPrice + lowerPriceShift * priceStep;
+                            var upperPrice = config.upperPrice + upperPriceShift * priceStep;
+                            var gridsNumber = config.gridsNumber + gridsNumberShift * gridsNumberStep;
+                            if (!searchSpace.contains(lowerPrice, upperPrice, gridsNumber)) continue;
+
+                            var neighbour = searchSpace.createConfig(lowerPrice, upperPrice, gridsNumber);
+                            if (evaluatedConfigs.add(neighbour)) candidates.add(neighbour);
+                        }
+                    }
+                }
+            }
+            if (candidates.isEmpty()) break;
+        }
+        var results = topResults.getResults();
+        return results.subList(0, Math.min(resultsNumber, results.size()));
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.ako2345.simplegridbot.analysis;
+
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Оценка конфигураций бота симуляцией на свечах.
+ */
+public interface ConfigEvaluator {
+
+    /**
+     * Общее количество свечей.
+     */
+    int getCandlesNumber();
+
+    /**
+     * Симулирует работу ботов на первых candlesNumber свечах.
+     *
+     * @return Общая доходность в порядке конфигураций в configs.
+     */
+    List<BigDecimal> evaluate(List<GridBotConfig> configs, int candlesNumber);
+
+}
@@ -0,0 +1,24 @@
+package com.ako2345.simplegridbot.analysis;
+
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Полный перебор параметров на всех свечах.
+ */
+public class ExhaustiveSearch implements SearchStrategy {
+
+    private static final int PRICE_DIVISIONS = 16;
+
+    @Override
+    public List<Map.Entry<GridBotConfig, BigDecimal>> search(SearchSpace searchSpace, ConfigEvaluator configEvaluator, int resultsNumber) {
+        var configs = searchSpace.getConfigs(PRICE_DIVISIONS, 1);
+        var topResults = new TopResults(resultsNumber);
+        topResults.addAll(configs, configEvaluator.evaluate(configs, configEvaluator.getCandlesNumber()));
+        return topResults.getResults();
+    }
+
+}
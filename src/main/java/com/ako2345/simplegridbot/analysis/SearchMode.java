@@ -0,0 +1,20 @@
+package com.ako2345.simplegridbot.analysis;
+
+/**
+ * Способ поиска оптимальных параметров бота при анализе.
+ */
+public enum SearchMode {
+    /**
+     * Полный перебор параметров с шагом цены в 1/16 диапазона цен ({@link ExhaustiveSearch}).
+     */
+    EXHAUSTIVE,
+    /**
+     * Последовательное отсеивание ({@link SuccessiveHalvingSearch}): более мелкая сетка параметров, слабые конфигурации
+     * отбрасываются по результатам на начальной части свечей.
+     */
+    SUCCESSIVE_HALVING,
+    /**
+     * Уточнение от грубой сетки параметров к мелкой вокруг лучших конфигураций ({@link CoarseToFineSearch}).
+     */
+    COARSE_TO_FINE
+}
@@ -0,0 +1,66 @@
+package com.ako2345.simplegridbot.analysis;
+
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пространство параметров бота для анализа: нижняя цена от минимальной цены до середины диапазона цен, верхняя – от
+ * середины диапазона до максимальной цены, количество сеток – от {@link #MIN_GRIDS_NUMBER} до
+ * {@link #MAX_GRIDS_NUMBER}. Ширина сетки не меньше 1/{@link #MIN_WIDTH_DIVISOR} диапазона цен, иначе шаг сетки
+ * вырождается.
+ */
+public class SearchSpace {
+
+    public static final int MIN_GRIDS_NUMBER = 2;
+    public static final int MAX_GRIDS_NUMBER = 49;
+    public static final int MIN_WIDTH_DIVISOR = 16;
+
+    private final String figi;
+    private final float minPrice;
+    private final float maxPrice;
+    private final float investment;
+
+    public SearchSpace(String figi, float minPrice, float maxPrice, float investment) {
+        if (maxPrice <= minPrice) {
+            throw new IllegalArgumentException("Max price (" + maxPrice + ") should be greater than min price (" + minPrice + ")");
+        }
+        this.figi = figi;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.investment = investment;
+    }
+
+    public float getPriceRange() {
+        return maxPrice - minPrice;
+    }
+
+    /**
+     * Конфигурации на сетке параметров с шагом цены (maxPrice - minPrice) / priceDivisions и шагом количества сеток
+     * gridsNumberStep.
+     */
+    public List<GridBotConfig> getConfigs(int priceDivisions, int gridsNumberStep) {
+        var configs = new ArrayList<GridBotConfig>();
+        for (float lowerPrice = minPrice; lowerPrice < minPrice + (maxPrice - minPrice) / 2; lowerPrice += (maxPrice - minPrice) / priceDivisions) {
+            for (float upperPrice = maxPrice - (maxPrice - minPrice) / 2; upperPrice <= maxPrice; upperPrice += (maxPrice - minPrice) / priceDivisions) {
+                for (int gridsNumber = MIN_GRIDS_NUMBER; gridsNumber <= MAX_GRIDS_NUMBER; gridsNumber += gridsNumberStep) {
+                    configs.add(createConfig(lowerPrice, upperPrice, gridsNumber));
+                }
+            }
+        }
+        return configs;
+    }
+
+    public boolean contains(float lowerPrice, float upperPrice, int gridsNumber) {
+        return lowerPrice >= minPrice && lowerPrice < minPrice + (maxPrice - minPrice) / 2 &&
+                upperPrice >= maxPrice - (maxPrice - minPrice) / 2 && upperPrice <= maxPrice &&
+                upperPrice - lowerPrice >= (maxPrice - minPrice) / MIN_WIDTH_DIVISOR &&
+                gridsNumber >= MIN_GRIDS_NUMBER && gridsNumber <= MAX_GRIDS_NUMBER;
+    }
+
+    public GridBotConfig createConfig(float lowerPrice, float upperPrice, int gridsNumber) {
+        return new GridBotConfig(figi, lowerPrice, upperPrice, gridsNumber, investment);
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.ako2345.simplegridbot.analysis;
+
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Стратегия поиска оптимальных параметров бота.
+ */
+public interface SearchStrategy {
+
+    /**
+     * @return Лучшие resultsNumber конфигураций с доходностью на всех свечах, начиная с лучшей.
+     */
+    List<Map.Entry<GridBotConfig, BigDecimal>> search(SearchSpace searchSpace, ConfigEvaluator configEvaluator, int resultsNumber);
+
+    static SearchStrategy of(SearchMode searchMode) {
+        switch (searchMode) {
+            case SUCCESSIVE_HALVING:
+                return new SuccessiveHalvingSearch();
+            case COARSE_TO_FINE:
+                return new CoarseToFineSearch();
+            default:
+                return new ExhaustiveSearch();
+        }
+    }
+
+}
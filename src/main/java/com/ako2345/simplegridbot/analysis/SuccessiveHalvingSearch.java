@@ -0,0 +1,51 @@
+package com.ako2345.simplegridbot.analysis;
+
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Последовательное отсеивание (successive halving). Все конфигурации мелкой сетки параметров оцениваются на
+ * начальной части свечей, в следующий раунд проходит 1/{@link #ELIMINATION_RATE} лучших, а часть свечей
+ * увеличивается в {@link #ELIMINATION_RATE} раз. В последнем раунде используются все свечи.
+ *
+ * <p>Каждый раунд стоит примерно одинаково, поэтому перебор сетки с шагом цены в 1/32 диапазона обходится дешевле
+ * полного перебора с шагом в 1/16.
+ */
+public class SuccessiveHalvingSearch implements SearchStrategy {
+
+    private static final int PRICE_DIVISIONS = 32;
+    private static final int ELIMINATION_RATE = 3;
+    private static final int ROUNDS_NUMBER = 4;
+    private static final int MIN_CANDLES_NUMBER = 24;
+
+    @Override
+    public List<Map.Entry<GridBotConfig, BigDecimal>> search(SearchSpace searchSpace, ConfigEvaluator configEvaluator, int resultsNumber) {
+        var totalCandlesNumber = configEvaluator.getCandlesNumber();
+        var candidates = searchSpace.getConfigs(PRICE_DIVISIONS, 1);
+        var candlesDivisor = 1;
+        for (int round = 1; round < ROUNDS_NUMBER; round++) {
+            candlesDivisor *= ELIMINATION_RATE;
+        }
+        for (int round = 1; ; round++) {
+            var candlesNumber = Math.min(totalCandlesNumber, Math.max(MIN_CANDLES_NUMBER, totalCandlesNumber / candlesDivisor));
+            var isLastRound = round == ROUNDS_NUMBER || candidates.size() <= resultsNumber;
+            if (isLastRound) candlesNumber = totalCandlesNumber;
+
+            var profits = configEvaluator.evaluate(candidates, candlesNumber);
+            if (isLastRound) {
+                var topResults = new TopResults(resultsNumber);
+                topResults.addAll(candidates, profits);
+                return topResults.getResults();
+            }
+            var survivorsNumber = Math.max(resultsNumber, (candidates.size() + ELIMINATION_RATE - 1) / ELIMINATION_RATE);
+            var survivors = new TopResults(survivorsNumber);
+            survivors.addAll(candidates, profits);
+            candidates = survivors.getConfigs();
+            candlesDivisor /= ELIMINATION_RATE;
+        }
+    }
+
+}
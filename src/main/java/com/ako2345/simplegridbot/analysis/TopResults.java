@@ -0,0 +1,85 @@
+package com.ako2345.simplegridbot.analysis;
+
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Лучшие конфигурации по доходности. Хранится не больше capacity результатов в куче, вершина которой – худший из
+ * них, поэтому добавление результата стоит O(log capacity) независимо от количества оценённых конфигураций.
+ *
+ * <p>При равной доходности лучшим считается результат, добавленный раньше.
+ */
+public class TopResults {
+
+    private static final Comparator<Result> WORST_FIRST = Comparator
+            .comparing((Result result) -> result.profit)
+            .thenComparing(result -> -result.sequenceNumber);
+
+    private final int capacity;
+    private final PriorityQueue<Result> results;
+    private long nextSequenceNumber = 0;
+
+    public TopResults(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+        this.results = new PriorityQueue<>(capacity, WORST_FIRST);
+    }
+
+    public void add(GridBotConfig config, BigDecimal profit) {
+        var result = new Result(config, profit, nextSequenceNumber++);
+        if (results.size() < capacity) {
+            results.add(result);
+        } else if (WORST_FIRST.compare(result, results.peek()) > 0) {
+            results.poll();
+            results.add(result);
+        }
+    }
+
+    public void addAll(List<GridBotConfig> configs, List<BigDecimal> profits) {
+        for (int i = 0; i < configs.size(); i++) {
+            add(configs.get(i), profits.get(i));
+        }
+    }
+
+    /**
+     * @return Результаты, начиная с лучшего.
+     */
+    public List<Map.Entry<GridBotConfig, BigDecimal>> getResults() {
+        var sortedResults = new ArrayList<>(results);
+        sortedResults.sort(WORST_FIRST.reversed());
+        var entries = new ArrayList<Map.Entry<GridBotConfig, BigDecimal>>(sortedResults.size());
+        for (Result result : sortedResults) {
+            entries.add(Map.entry(result.config, result.profit));
+        }
+        return entries;
+    }
+
+    public List<GridBotConfig> getConfigs() {
+        var configs = new ArrayList<GridBotConfig>(results.size());
+        for (Map.Entry<GridBotConfig, BigDecimal> entry : getResults()) {
+            configs.add(entry.getKey());
+        }
+        return configs;
+    }
+
+    private static class Result {
+
+        private final GridBotConfig config;
+        private final BigDecimal profit;
+        private final long sequenceNumber;
+
+        private Result(GridBotConfig config, BigDecimal profit, long sequenceNumber) {
+            this.config = config;
+            this.profit = profit;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+    }
+
+}
@@ -4,10 +4,13 @@ import com.ako2345.simplegridbot.Constants;
 import com.ako2345.simplegridbot.bot.grid.Grid;
 import com.ako2345.simplegridbot.bot.grid.GridManager;
 import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+import com.ako2345.simplegridbot.ledger.TradeLedger;
 import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.model.Order;
 import com.ako2345.simplegridbot.model.OrderStatus;
 import com.ako2345.simplegridbot.model.Transaction;
 import com.ako2345.simplegridbot.model.TransactionPair;
+import com.ako2345.simplegridbot.order.AsyncOrderManager;
 import com.ako2345.simplegridbot.order.OrderManager;
 import com.ako2345.simplegridbot.service.OrdersStreamServiceListener;
 import com.ako2345.simplegridbot.util.TextUtils;
@@ -16,9 +19,15 @@ import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public class GridBot implements OrdersStreamServiceListener {
@@ -30,13 +39,49 @@ public class GridBot implements OrdersStreamServiceListener {
     private final GridManager gridManager;
     protected BigDecimal baseCurrencyAmount;
     protected BigDecimal instrumentAmount;
-    protected BigDecimal activePriceLevel = null;
-    protected List<Double> pricesWithLimitOrders = new ArrayList<>();
+    // индекс уровня сетки последнего исполненного ордера, -1 – ордер исполнен не по цене уровня
+    protected int activeLevelIndex = -1;
+    // состояние лимитных ордеров по индексам уровней сетки: наличие ордера, его направление и идентификатор
+    protected final BitSet levelsWithLimitOrders;
+    protected final Direction[] limitOrderDirections;
+    protected final String[] limitOrderIds;
+    // уровни, ордера которых выставляются асинхронно и ещё не выставлены
+    protected final BitSet levelsWithPendingLimitOrders;
+    // история пар транзакций, хранится при Constants.KEEP_TRANSACTION_PAIRS
     protected List<TransactionPair> transactionPairs = new ArrayList<>();
+    // открытые пары, последняя открытая – сверху; все пары в стеке одного направления (см. addTransaction)
+    protected final Deque<TransactionPair> openTransactionPairs = new ArrayDeque<>();
+    protected int transactionPairsNumber = 0;
+    protected int transactionsNumber = 0;
+    protected int arbitragesNumber = 0;
+    protected BigDecimal gridProfit = BigDecimal.ZERO;
+    // журнал сделок, null – сделки не записываются
+    private final TradeLedger tradeLedger;
     private boolean isInitializing = true;
     private boolean isClosing = false;
 
     public GridBot(GridBotConfig config, OrderManager orderManager, BigDecimal lotSize, BigDecimal initialPrice) {
+        this(config, orderManager, lotSize, Constants.DEFAULT_MIN_PRICE_INCREMENT, initialPrice);
+    }
+
+    /**
+     * @param minPriceIncrement Минимальный шаг цены инструмента: уровни сетки ему кратны.
+     */
+    public GridBot(GridBotConfig config, OrderManager orderManager, BigDecimal lotSize, BigDecimal minPriceIncrement, BigDecimal initialPrice) {
+        this(config, orderManager, lotSize, minPriceIncrement, initialPrice, null);
+    }
+
+    /**
+     * @param tradeLedger Журнал, в который записываются сделки бота, включая начальную покупку.
+     */
+    public GridBot(
+            GridBotConfig config,
+            OrderManager orderManager,
+            BigDecimal lotSize,
+            BigDecimal minPriceIncrement,
+            BigDecimal initialPrice,
+            TradeLedger tradeLedger
+    ) {
         if (!StringUtils.hasLength(config.figi))
             throw new IllegalArgumentException("Invalid FIGI");
         if (config.investment == 0F)
@@ -52,8 +97,18 @@ public class GridBot implements OrdersStreamServiceListener {
         this.initialBalance = this.baseCurrencyAmount;
         this.orderManager = orderManager;
         this.lotSize = lotSize;
-        var grid = new Grid(new BigDecimal(String.valueOf(config.lowerPrice)), new BigDecimal(String.valueOf(config.upperPrice)), config.gridsNumber);
+        this.tradeLedger = tradeLedger;
+        var grid = new Grid(
+                new BigDecimal(String.valueOf(config.lowerPrice)),
+                new BigDecimal(String.valueOf(config.upperPrice)),
+                config.gridsNumber,
+                minPriceIncrement
+        );
         this.gridManager = new GridManager(grid, BigDecimal.valueOf(config.investment), lotSize);
+        this.levelsWithLimitOrders = new BitSet(config.gridsNumber);
+        this.limitOrderDirections = new Direction[config.gridsNumber];
+        this.limitOrderIds = new String[config.gridsNumber];
+        this.levelsWithPendingLimitOrders = new BitSet(config.gridsNumber);
 
         makeInitialBuyOrder(initialPrice);
 
@@ -77,21 +132,27 @@ public class GridBot implements OrdersStreamServiceListener {
             var order = orderManager.makeBuyMarketOrder(figi, lotsToBuyOnStart, lotSize);
             if (order.getOrderStatus() == OrderStatus.FILL) {
                 processOrder(
+                        null,
                         order.getFigi(),
                         order.getDirection(),
                         order.getPrice(),
                         order.getBaseCurrencyAmount(),
-                        order.getLotsNumber()
+                        order.getLotsNumber(),
+                        Instant.now()
                 );
             }
         }
     }
 
+    /**
+     * @param orderId Идентификатор ордера; null для рыночных ордеров бота.
+     */
     @Override
-    public void processOrder(String orderFigi, Direction direction, BigDecimal price, BigDecimal baseCurrencyAmount, long lotsNumber) {
+    public void processOrder(String orderId, String orderFigi, Direction direction, BigDecimal price, BigDecimal baseCurrencyAmount, long lotsNumber, Instant time) {
         if (!figi.equals(orderFigi)) return;
 
-        activePriceLevel = price;
+        var levelIndex = getLevelIndex(orderId, price);
+        activeLevelIndex = levelIndex;
         BigDecimal instrumentAmount = lotSize.multiply(BigDecimal.valueOf(lotsNumber));
         if (direction == Direction.BUY) {
             this.baseCurrencyAmount = this.baseCurrencyAmount.subtract(baseCurrencyAmount);
@@ -101,7 +162,7 @@ public class GridBot implements OrdersStreamServiceListener {
             this.instrumentAmount = this.instrumentAmount.subtract(instrumentAmount);
         }
 
-        addTransaction(direction, price, baseCurrencyAmount);
+        addTransaction(direction, price, baseCurrencyAmount, time);
 
         log.info(
                 "{} order processed (price: {}). Balance: {}, profit: {}, grid profit: {}, base currency amount: {}, instrument amount: {}",
@@ -115,27 +176,106 @@ public class GridBot implements OrdersStreamServiceListener {
         );
 
         if (!isClosing) {
+            if (levelIndex >= 0) {
+                clearLevel(levelIndex);
+            } else if (!isInitializing) {
+                log.warn("Order price {} is not a grid price level", price);
+            }
             createNewLimitOrders(price);
-            pricesWithLimitOrders.remove(price.doubleValue());
         }
     }
 
+    /**
+     * Выставляет лимитные ордера на уровнях сетки без ордеров, кроме уровня последнего исполненного ордера. Уровни без
+     * ордеров перебираются по битовой маске, поэтому после исполнения одного ордера проверяются только свободные
+     * уровни.
+     */
     public void createNewLimitOrders(BigDecimal currentPrice) {
+        if (isClosing) return;
+        if (orderManager instanceof AsyncOrderManager) {
+            createNewLimitOrdersAsync((AsyncOrderManager) orderManager, currentPrice);
+            return;
+        }
+        var priceLevels = gridManager.getGrid().getPriceLevels();
+        for (int i = levelsWithLimitOrders.nextClearBit(0); i < priceLevels.length; i = levelsWithLimitOrders.nextClearBit(i + 1)) {
+            if (i == activeLevelIndex) continue;
+            var price = priceLevels[i];
+            Order order;
+            if (price.compareTo(currentPrice) < 0) {
+                order = orderManager.makeBuyLimitOrder(figi, gridManager.getLotsPerGrid(), lotSize, price);
+            } else {
+                order = orderManager.makeSellLimitOrder(figi, gridManager.getLotsPerGrid(), lotSize, price);
+            }
+            levelsWithLimitOrders.set(i);
+            limitOrderDirections[i] = order.getDirection();
+            limitOrderIds[i] = order.getOrderId();
+        }
+    }
+
+    /**
+     * Выставляет ордера всех свободных уровней одновременно, не ожидая ответов, поэтому сетка восстанавливается за
+     * время нескольких запросов, а поток бота не занят ожиданием. До ответа уровень отмечен в
+     * levelsWithPendingLimitOrders и повторно не выставляется. Ответ обрабатывается отдельным событием бота (см.
+     * {@link AsyncOrderManager}); уровень, ордер которого выставить не удалось, остаётся свободным. Ответы, полученные
+     * после остановки бота, не учитываются.
+     */
+    private void createNewLimitOrdersAsync(AsyncOrderManager orderManager, BigDecimal currentPrice) {
         var priceLevels = gridManager.getGrid().getPriceLevels();
-        for (BigDecimal price : priceLevels) {
-            if (pricesWithLimitOrders.contains(price.doubleValue())) continue;
-            if (activePriceLevel != null && price.compareTo(activePriceLevel) == 0) continue;
+        for (int i = levelsWithLimitOrders.nextClearBit(0); i < priceLevels.length; i = levelsWithLimitOrders.nextClearBit(i + 1)) {
+            if (i == activeLevelIndex || levelsWithPendingLimitOrders.get(i)) continue;
+            var price = priceLevels[i];
+            CompletableFuture<Order> future;
             if (price.compareTo(currentPrice) < 0) {
-                orderManager.makeBuyLimitOrder(figi, gridManager.getLotsPerGrid(), lotSize, price);
+                future = orderManager.makeBuyLimitOrderAsync(figi, gridManager.getLotsPerGrid(), lotSize, price);
             } else {
-                orderManager.makeSellLimitOrder(figi, gridManager.getLotsPerGrid(), lotSize, price);
+                future = orderManager.makeSellLimitOrderAsync(figi, gridManager.getLotsPerGrid(), lotSize, price);
             }
-            pricesWithLimitOrders.add(price.doubleValue());
+            levelsWithPendingLimitOrders.set(i);
+            var levelIndex = i;
+            future.whenComplete((order, exception) -> processLimitOrderPlacement(levelIndex, order, exception));
         }
     }
 
+    private void processLimitOrderPlacement(int levelIndex, Order order, Throwable exception) {
+        levelsWithPendingLimitOrders.clear(levelIndex);
+        if (exception != null) {
+            var priceLevels = gridManager.getGrid().getPriceLevels();
+            log.error("Limit order was not placed (price: {}): {}", priceLevels[levelIndex], exception.toString());
+            return;
+        }
+        // ордер, выставленный до остановки бота, отменяется при остановке
+        if (isClosing) return;
+        levelsWithLimitOrders.set(levelIndex);
+        limitOrderDirections[levelIndex] = order.getDirection();
+        limitOrderIds[levelIndex] = order.getOrderId();
+    }
+
+    /**
+     * Уровень сетки ордера. Средняя цена исполнения может отличаться от цены лимитного ордера, поэтому уровень ищется по
+     * идентификатору ордера: сначала на уровне цены исполнения, затем среди уровней с ордерами. Если ордер не найден
+     * (рыночный ордер), возвращается уровень цены исполнения или -1.
+     */
+    private int getLevelIndex(String orderId, BigDecimal price) {
+        var priceLevelIndex = gridManager.getGrid().getPriceLevelIndex(price);
+        if (orderId == null) return priceLevelIndex;
+        if (priceLevelIndex >= 0 && orderId.equals(limitOrderIds[priceLevelIndex])) return priceLevelIndex;
+        for (int i = levelsWithLimitOrders.nextSetBit(0); i >= 0; i = levelsWithLimitOrders.nextSetBit(i + 1)) {
+            if (orderId.equals(limitOrderIds[i])) return i;
+        }
+        return priceLevelIndex;
+    }
+
+    private void clearLevel(int levelIndex) {
+        levelsWithLimitOrders.clear(levelIndex);
+        limitOrderDirections[levelIndex] = null;
+        limitOrderIds[levelIndex] = null;
+    }
+
     public void close(boolean isInstrumentShouldBeSold) {
-        orderManager.cancelOrders(figi);
+        var cancellation = orderManager.cancelOrders(figi);
+        if (!cancellation.getFailedOrderIds().isEmpty()) {
+            log.warn("Orders remain active after cancellation: {}", cancellation.getFailedOrderIds());
+        }
         isClosing = true;
         if (isInstrumentShouldBeSold && instrumentAmount.compareTo(BigDecimal.ZERO) > 0) {
             var lotsToSell = instrumentAmount.divide(lotSize, Constants.DEFAULT_SCALE, RoundingMode.DOWN).intValue();
@@ -143,11 +283,13 @@ public class GridBot implements OrdersStreamServiceListener {
             var order = orderManager.makeSellMarketOrder(figi, lotsToSell, lotSize);
             if (order.getOrderStatus() == OrderStatus.FILL) {
                 processOrder(
+                        null,
                         order.getFigi(),
                         order.getDirection(),
                         order.getPrice(),
                         order.getBaseCurrencyAmount(),
-                        order.getLotsNumber()
+                        order.getLotsNumber(),
+                        Instant.now()
                 );
             }
         }
@@ -160,7 +302,30 @@ public class GridBot implements OrdersStreamServiceListener {
     }
 
     public void clearPriceLevelsWithLimitOrders() {
-        pricesWithLimitOrders.clear();
+        levelsWithLimitOrders.clear();
+        Arrays.fill(limitOrderDirections, null);
+        Arrays.fill(limitOrderIds, null);
+    }
+
+    /**
+     * Индексы уровней сетки с выставленными лимитными ордерами.
+     */
+    public BitSet getLevelsWithLimitOrders() {
+        return (BitSet) levelsWithLimitOrders.clone();
+    }
+
+    /**
+     * Направление лимитного ордера на уровне сетки или null, если ордера на уровне нет.
+     */
+    public Direction getLimitOrderDirection(int levelIndex) {
+        return limitOrderDirections[levelIndex];
+    }
+
+    /**
+     * Идентификатор лимитного ордера на уровне сетки или null, если ордера на уровне нет.
+     */
+    public String getLimitOrderId(int levelIndex) {
+        return limitOrderIds[levelIndex];
     }
 
     public BigDecimal getBalance(BigDecimal price) {
@@ -172,56 +337,53 @@ public class GridBot implements OrdersStreamServiceListener {
         return balance.subtract(initialBalance);
     }
 
+    /**
+     * Прибыль по закрытым парам транзакций. Обновляется при закрытии пары.
+     */
     public BigDecimal getGridProfit() {
-        BigDecimal gridProfit = BigDecimal.ZERO;
-        for (TransactionPair transactionPair : transactionPairs) {
-            gridProfit = gridProfit.add(transactionPair.profit());
-        }
         return gridProfit;
     }
 
     public int getTransactionsNumber() {
-        var transactionsNumber = 0;
-        for (TransactionPair transactionPair : transactionPairs) {
-            if (transactionPair.isIncomplete()) {
-                transactionsNumber++;
-            } else {
-                transactionsNumber += 2;
-            }
-        }
         return transactionsNumber;
     }
 
     public int getArbitrageNumber() {
-        var arbitrageNumber = 0;
-        for (TransactionPair transactionPair : transactionPairs) {
-            if (!transactionPair.isIncomplete()) {
-                arbitrageNumber++;
-            }
-        }
-        return arbitrageNumber;
+        return arbitragesNumber;
     }
 
-    private TransactionPair getLastIncompleteTransactionPair() {
-        if (transactionPairs.isEmpty()) return null;
-        for (int i = transactionPairs.size() - 1; i > 0; i--) {
-            if (transactionPairs.get(i).isIncomplete()) return transactionPairs.get(i);
-        }
-        return null;
+    /**
+     * История пар транзакций. Если история не хранится ({@link Constants#KEEP_TRANSACTION_PAIRS}), список пуст.
+     */
+    public List<TransactionPair> getTransactionPairs() {
+        return Collections.unmodifiableList(transactionPairs);
     }
 
-    private void addTransaction(Direction direction, BigDecimal averageOrderPrice, BigDecimal baseCurrencyAmount) {
+    /**
+     * Транзакция закрывает последнюю открытую пару, если направления противоположны, иначе открывает новую пару.
+     * Поэтому открытые пары всегда одного направления и закрываются в обратном порядке. Первая пара (обычно начальная
+     * покупка) не закрывается.
+     */
+    private void addTransaction(Direction direction, BigDecimal averageOrderPrice, BigDecimal baseCurrencyAmount, Instant time) {
         var transaction = new Transaction(direction, averageOrderPrice, baseCurrencyAmount);
-        if (isInitializing || isClosing) {
-            transactionPairs.add(new TransactionPair(transaction));
-        } else {
-            var lastIncompleteTransactionPair = getLastIncompleteTransactionPair();
-            if (lastIncompleteTransactionPair != null && lastIncompleteTransactionPair.getOpenTransaction().getDirection() != direction) {
-                lastIncompleteTransactionPair.setCloseTransaction(transaction);
-            } else {
-                transactionPairs.add(new TransactionPair(transaction));
+        transactionsNumber++;
+        if (tradeLedger != null && !tradeLedger.append(time, direction, averageOrderPrice, baseCurrencyAmount)) {
+            log.warn("Trade ledger is closed, {} transaction not recorded (price: {})", direction, averageOrderPrice);
+        }
+        if (!isInitializing && !isClosing) {
+            var lastOpenTransactionPair = openTransactionPairs.peek();
+            if (lastOpenTransactionPair != null && lastOpenTransactionPair.getOpenTransaction().getDirection() != direction) {
+                lastOpenTransactionPair.setCloseTransaction(transaction);
+                openTransactionPairs.pop();
+                arbitragesNumber++;
+                gridProfit = gridProfit.add(lastOpenTransactionPair.profit());
+                return;
             }
         }
+        var transactionPair = new TransactionPair(transaction);
+        if (transactionPairsNumber > 0) openTransactionPairs.push(transactionPair);
+        transactionPairsNumber++;
+        if (Constants.KEEP_TRANSACTION_PAIRS) transactionPairs.add(transactionPair);
     }
 
     public GridBotStatistics getStatistics(BigDecimal price) {
@@ -249,8 +411,16 @@ public class GridBot implements OrdersStreamServiceListener {
         return figi;
     }
 
+    public BigDecimal getLotSize() {
+        return lotSize;
+    }
+
     public GridManager getGridManager() {
         return gridManager;
     }
 
+    public TradeLedger getTradeLedger() {
+        return tradeLedger;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+package com.ako2345.simplegridbot.bot;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.model.GridBotEventLoopStatistics;
+import com.ako2345.simplegridbot.util.MpscQueue;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Последовательная обработка событий бота: исполненных ордеров, событий таймера и команд. События из любых потоков
+ * добавляются в ограниченную неблокирующую очередь ({@link MpscQueue}) и выполняются по одному в порядке добавления,
+ * поэтому состояние бота изменяет только один поток за раз и бот не нуждается в блокировках.
+ *
+ * <p>Цикл не владеет потоком: при появлении событий он планирует обработку в общем пуле и обрабатывает не больше
+ * {@link Constants#GRID_BOT_EVENT_BATCH_SIZE} событий подряд, после чего уступает поток другим ботам. Поэтому много
+ * ботов обслуживаются небольшим пулом.
+ *
+ * <p>Если очередь заполнена, добавляющий поток ждёт освобождения места не дольше
+ * {@link Constants#GRID_BOT_EVENT_QUEUE_FULL_TIMEOUT_MS}, после чего событие отбрасывается с ошибкой в логе. События
+ * добавляют общие потоки стримов и таймера, поэтому неограниченное ожидание из-за одного бота остановило бы обработку
+ * ордеров всех ботов. Событие, потерю которого нужно обработать (например, исполнение ордера), добавляется методом
+ * {@link #offer(Runnable)}. Количество ожиданий и отброшенных событий и максимальный размер очереди доступны в
+ * {@link #getStatistics()}.
+ */
+@Slf4j
+public class GridBotEventLoop implements Executor {
+
+    private final String name;
+    private final Executor executor;
+    private final MpscQueue<Runnable> queue;
+    private final AtomicBoolean isScheduled = new AtomicBoolean();
+    private final AtomicInteger maxQueueSize = new AtomicInteger();
+    private final AtomicLong submittedNumber = new AtomicLong();
+    private final AtomicLong processedNumber = new AtomicLong();
+    private final AtomicLong queueFullNumber = new AtomicLong();
+    private final AtomicLong droppedNumber = new AtomicLong();
+    private volatile boolean isClosed = false;
+
+    /**
+     * @param name     Имя цикла для логирования.
+     * @param executor Пул, в котором обрабатываются события.
+     * @param capacity Ёмкость очереди, степень двойки.
+     */
+    public GridBotEventLoop(String name, Executor executor, int capacity) {
+        this.name = name;
+        this.executor = executor;
+        this.queue = new MpscQueue<>(capacity);
+    }
+
+    /**
+     * Добавляет событие в очередь. После {@link #close()} и при заполненной очереди (см. описание класса) события
+     * отбрасываются.
+     */
+    @Override
+    public void execute(Runnable event) {
+        offer(event);
+    }
+
+    /**
+     * Добавляет в очередь событие с результатом. Если событие отброшено, future завершается с
+     * {@link RejectedExecutionException}.
+     */
+    public <T> CompletableFuture<T> call(Callable<T> event) {
+        var future = new CompletableFuture<T>();
+        var isAdded = offer(() -> {
+            try {
+                future.complete(event.call());
+            } catch (Exception exception) {
+                future.completeExceptionally(exception);
+            }
+        });
+        if (!isAdded) future.completeExceptionally(new RejectedExecutionException("Event rejected by event loop " + name));
+        return future;
+    }
+
+    /**
+     * Добавляет событие в очередь, как {@link #execute(Runnable)}.
+     *
+     * @return false, если событие отброшено.
+     */
+    public boolean offer(Runnable event) {
+        if (isClosed) {
+            log.warn("Event loop {} is closed. Event dropped", name);
+            return false;
+        }
+        if (!queue.offer(event)) {
+            queueFullNumber.incrementAndGet();
+            var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Constants.GRID_BOT_EVENT_QUEUE_FULL_TIMEOUT_MS);
+            do {
+                if (System.nanoTime() - deadline >= 0) {
+                    droppedNumber.incrementAndGet();
+                    log.error("Event queue of event loop {} is full. Event dropped", name);
+                    return false;
+                }
+                LockSupport.parkNanos(Constants.GRID_BOT_EVENT_QUEUE_FULL_PARK_NANOS);
+            } while (!queue.offer(event));
+        }
+        submittedNumber.incrementAndGet();
+        maxQueueSize.accumulateAndGet(queue.size(), Math::max);
+        schedule();
+        return true;
+    }
+
+    /**
+     * Прекращает приём событий. События, уже добавленные в очередь, будут обработаны.
+     */
+    public void close() {
+        isClosed = true;
+    }
+
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    public GridBotEventLoopStatistics getStatistics() {
+        return new GridBotEventLoopStatistics(
+                queue.capacity(),
+                queue.size(),
+                maxQueueSize.get(),
+                submittedNumber.get(),
+                processedNumber.get(),
+                queueFullNumber.get(),
+                droppedNumber.get()
+        );
+    }
+
+    private void schedule() {
+        if (isScheduled.compareAndSet(false, true)) {
+            executor.execute(this::processEvents);
+        }
+    }
+
+    private void processEvents() {
+        Runnable event;
+        var processedNumber = 0;
+        try {
+            while (processedNumber < Constants.GRID_BOT_EVENT_BATCH_SIZE && (event = queue.poll()) != null) {
+                processedNumber++;
+                try {
+                    event.run();
+                } catch (RuntimeException exception) {
+                    log.error("Event processing failed (event loop {})", name, exception);
+                }
+            }
+        } finally {
+            // флаг сбрасывается и при ошибке (Error) события, иначе следующие события не были бы обработаны
+            this.processedNumber.addAndGet(processedNumber);
+            isScheduled.set(false);
+            // событие могло быть добавлено после последней проверки очереди, но до сброса флага
+            if (!queue.isEmpty()) schedule();
+        }
+    }
+
+}
@@ -1,9 +1,11 @@
 package com.ako2345.simplegridbot.bot.grid;
 
+import com.ako2345.simplegridbot.util.PriceUtils;
+
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 
-import static com.ako2345.simplegridbot.Constants.DEFAULT_SCALE;
+import static com.ako2345.simplegridbot.Constants.DEFAULT_MIN_PRICE_INCREMENT;
 
 /**
  * Ценовая сетка. Выделяет на оси цен {@link Grid#gridsNumber} уровней путём деления ценового диапазона от
@@ -14,33 +16,64 @@ import static com.ako2345.simplegridbot.Constants.DEFAULT_SCALE;
  * <p>Ценовому диапазону от 0 до {@link Grid#lowerPrice} назначается индекс -1. Диапазон от {@link Grid#lowerPrice} до
  * ({@link Grid#lowerPrice} + {@link Grid#priceStep}) имеет индекс 0 и так далее. Диапазон от {@link Grid#upperPrice}
  * до бесконечности имеет индекс ({@link Grid#gridsNumber} - 1).
+ *
+ * <p>Уровни кратны минимальному шагу цены инструмента: нижняя цена округляется вверх, верхняя – вниз, а каждый
+ * промежуточный уровень округляется до ближайшей кратной цены отдельно. Поэтому ошибка округления не накапливается и
+ * расстояния между соседними уровнями отличаются не более чем на один минимальный шаг цены. Уровни хранятся в тиках
+ * (см. {@link PriceUtils}), поэтому цены ордеров в бэктесте и при реальной торговле совпадают, а определение индекса
+ * диапазона по цене в тиках не создаёт объектов.
  */
 public class Grid {
 
-    private final BigDecimal lowerPrice;
-    private final BigDecimal upperPrice;
+    private final long lowerPrice;
+    private final long upperPrice;
     private final int gridsNumber;
-    private final BigDecimal priceStep;
-    private final BigDecimal[] priceLevels;
+    private final long priceStep;
+    private final long[] priceLevels;
+    private final int scale;
+    private final BigDecimal[] decimalPriceLevels;
 
+    /**
+     * Сетка с шагом цены {@link com.ako2345.simplegridbot.Constants#DEFAULT_MIN_PRICE_INCREMENT}.
+     */
     public Grid(BigDecimal lowerPrice, BigDecimal upperPrice, int gridsNumber) {
+        this(lowerPrice, upperPrice, gridsNumber, DEFAULT_MIN_PRICE_INCREMENT);
+    }
+
+    /**
+     * @param minPriceIncrement Минимальный шаг цены инструмента.
+     */
+    public Grid(BigDecimal lowerPrice, BigDecimal upperPrice, int gridsNumber, BigDecimal minPriceIncrement) {
         if (lowerPrice.signum() != 1 || upperPrice.signum() != 1)
             throw new IllegalArgumentException("Price must be positive");
         if (lowerPrice.compareTo(upperPrice) >= 0)
             throw new IllegalArgumentException("Lower price must be less than upper price");
         if (gridsNumber < 2)
             throw new IllegalArgumentException("Grids number must be more than 1");
+        if (minPriceIncrement.signum() != 1 || !PriceUtils.isTickAligned(minPriceIncrement))
+            throw new IllegalArgumentException("Invalid min price increment: " + minPriceIncrement);
 
-        this.lowerPrice = lowerPrice;
-        this.upperPrice = upperPrice;
+        var increment = PriceUtils.toTicks(minPriceIncrement);
+        this.lowerPrice = ceil(PriceUtils.toTicks(lowerPrice, RoundingMode.CEILING), increment);
+        this.upperPrice = floor(PriceUtils.toTicks(upperPrice, RoundingMode.FLOOR), increment);
         this.gridsNumber = gridsNumber;
+        this.priceStep = floor((this.upperPrice - this.lowerPrice) / (gridsNumber - 1), increment);
+        if (priceStep <= 0)
+            throw new IllegalArgumentException("Price step must be at least min price increment " + minPriceIncrement);
+
+        // i-й уровень: lowerPrice + i * (upperPrice - lowerPrice) / (gridsNumber - 1), округлённое до increment
+        var increments = (this.upperPrice - this.lowerPrice) / increment;
+        priceLevels = new long[gridsNumber];
+        for (int i = 0; i < gridsNumber; i++) {
+            var levelIncrements = (2 * i * increments + gridsNumber - 1) / (2L * (gridsNumber - 1));
+            priceLevels[i] = this.lowerPrice + levelIncrements * increment;
+        }
 
-        priceLevels = new BigDecimal[gridsNumber];
-        priceStep = upperPrice.subtract(lowerPrice).divide(BigDecimal.valueOf(gridsNumber - 1), DEFAULT_SCALE, RoundingMode.DOWN);
-        for (int i = 0; i < gridsNumber - 1; i++) {
-            priceLevels[i] = lowerPrice.add(priceStep.multiply(BigDecimal.valueOf(i)));
+        scale = Math.max(0, minPriceIncrement.stripTrailingZeros().scale());
+        decimalPriceLevels = new BigDecimal[gridsNumber];
+        for (int i = 0; i < gridsNumber; i++) {
+            decimalPriceLevels[i] = toDecimal(priceLevels[i]);
         }
-        priceLevels[gridsNumber - 1] = upperPrice;
     }
 
     /**
@@ -52,29 +85,83 @@ public class Grid {
      */
     public int getPriceRangeIndex(BigDecimal price) {
         if (price.signum() == -1) throw new IllegalArgumentException("Price must be positive");
-        if (price.compareTo(lowerPrice) < 0) return -1;
-        if (price.compareTo(upperPrice) > 0) return gridsNumber - 1;
-        return price.subtract(lowerPrice).divide(priceStep, RoundingMode.DOWN).intValue();
+        return getPriceRangeIndex(PriceUtils.toTicks(price, RoundingMode.FLOOR));
     }
 
-    public BigDecimal[] getPriceLevels() {
+    /**
+     * Аналог {@link #getPriceRangeIndex(BigDecimal)} для цены в тиках, без создания объектов.
+     */
+    public int getPriceRangeIndex(long price) {
+        if (price < lowerPrice) return -1;
+        if (price >= upperPrice) return gridsNumber - 1;
+        // расстояния между уровнями различаются не более чем на минимальный шаг цены, поэтому оценка по среднему шагу
+        // отличается от индекса не больше чем на единицу; цена ниже последнего уровня, поэтому диапазон не выше
+        // предпоследнего
+        var index = (int) Math.min((double) (price - lowerPrice) * (gridsNumber - 1) / (upperPrice - lowerPrice), gridsNumber - 2);
+        while (index > 0 && price < priceLevels[index]) index--;
+        while (index < gridsNumber - 2 && price >= priceLevels[index + 1]) index++;
+        return index;
+    }
+
+    /**
+     * Возвращает индекс уровня сетки, цена которого равна price.
+     *
+     * @return От 0 до ({@link Grid#gridsNumber} - 1) или -1, если цена не совпадает ни с одним уровнем.
+     */
+    public int getPriceLevelIndex(BigDecimal price) {
+        if (price.signum() != 1 || !PriceUtils.isTickAligned(price)) return -1;
+        return getPriceLevelIndex(PriceUtils.toTicks(price));
+    }
+
+    /**
+     * Аналог {@link #getPriceLevelIndex(BigDecimal)} для цены в тиках.
+     */
+    public int getPriceLevelIndex(long price) {
+        var priceRangeIndex = getPriceRangeIndex(price);
+        return priceRangeIndex >= 0 && priceLevels[priceRangeIndex] == price ? priceRangeIndex : -1;
+    }
+
+    /**
+     * Уровни сетки в тиках. Массив не копируется и не должен изменяться.
+     */
+    public long[] getPriceLevelTicks() {
         return priceLevels;
     }
 
+    public BigDecimal[] getPriceLevels() {
+        return decimalPriceLevels;
+    }
+
     public BigDecimal getLowerPrice() {
-        return lowerPrice;
+        return decimalPriceLevels[0];
     }
 
     public BigDecimal getUpperPrice() {
-        return upperPrice;
+        return decimalPriceLevels[gridsNumber - 1];
     }
 
     public int getGridsNumber() {
         return gridsNumber;
     }
 
+    /**
+     * Шаг сетки, округлённый вниз до минимального шага цены. Расстояние между соседними уровнями может быть больше на
+     * один минимальный шаг цены.
+     */
     public BigDecimal getPriceStep() {
-        return priceStep;
+        return toDecimal(priceStep);
+    }
+
+    private BigDecimal toDecimal(long price) {
+        return PriceUtils.fromTicks(price).setScale(scale, RoundingMode.UNNECESSARY);
+    }
+
+    private static long ceil(long price, long increment) {
+        return Math.floorDiv(price + increment - 1, increment) * increment;
+    }
+
+    private static long floor(long price, long increment) {
+        return Math.floorDiv(price, increment) * increment;
     }
 
-}
\ No newline at end of file
+}
@@ -30,6 +30,7 @@ public class GridManager {
                 .divide(BigDecimal.valueOf(2), DEFAULT_SCALE, RoundingMode.DOWN);
         return investment.divide(
                 averageBuyPrice.multiply(lotSize).multiply(BigDecimal.valueOf(gridsNumber - 1)),
+                0,
                 RoundingMode.DOWN
         ).intValue();
     }
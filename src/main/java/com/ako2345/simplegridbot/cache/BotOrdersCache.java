@@ -0,0 +1,171 @@
+package com.ako2345.simplegridbot.cache;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.service.OrdersStreamServiceListener;
+import lombok.Data;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Лимитные ордера ботов по идентификаторам ордеров. Ордер добавляется при выставлении и удаляется после исполнения,
+ * поэтому исполненный ордер передаётся только выставившему его боту, независимо от количества работающих ботов.
+ *
+ * <p>Ордер добавляется после ответа на запрос выставления, а исполниться может раньше. Поэтому исполнение ордера,
+ * которого ещё нет в кэше, откладывается (см. {@link #getOrDefer(String, Runnable)}) и выполняется при добавлении
+ * ордера, если прошло не больше {@link Constants#BOT_ORDERS_PENDING_EXECUTION_TTL_MS}.
+ *
+ * <p>О добавлении и удалении ордеров сообщается подписчикам ({@link #addChangeListener(Consumer)}) с FIGI ордера.
+ */
+@Service
+public class BotOrdersCache {
+
+    private final Map<String, BotOrder> orders = new ConcurrentHashMap<>();
+    private final Map<String, PendingExecution> pendingExecutions = new HashMap<>();
+    private final List<Consumer<String>> changeListeners = new CopyOnWriteArrayList<>();
+    private final LongSupplier currentTimeMillis;
+
+    public BotOrdersCache() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param currentTimeMillis Текущее время для срока хранения отложенных исполнений.
+     */
+    BotOrdersCache(LongSupplier currentTimeMillis) {
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    /**
+     * Добавляет ордер. Отложенное исполнение ордера выполняется в вызывающем потоке, если его срок хранения не истёк.
+     *
+     * @param price Цена лимитного ордера.
+     */
+    public void add(
+            String orderId,
+            OrdersStreamServiceListener listener,
+            String figi,
+            Direction direction,
+            BigDecimal price,
+            long lotsNumber
+    ) {
+        PendingExecution pendingExecution;
+        synchronized (this) {
+            orders.put(orderId, new BotOrder(listener, figi, direction, price, lotsNumber, System.nanoTime()));
+            pendingExecution = pendingExecutions.remove(orderId);
+            if (pendingExecution != null && pendingExecution.isExpired(currentTimeMillis.getAsLong())) pendingExecution = null;
+        }
+        notifyChangeListeners(figi);
+        if (pendingExecution != null) pendingExecution.execution.run();
+    }
+
+    /**
+     * Ордер бота или null, если ордер выставлен не ботом или уже исполнен.
+     */
+    public BotOrder get(String orderId) {
+        return orders.get(orderId);
+    }
+
+    /**
+     * Аналог {@link #get(String)}. Если ордера нет в кэше, execution выполняется при добавлении ордера, если он будет
+     * добавлен в течение {@link Constants#BOT_ORDERS_PENDING_EXECUTION_TTL_MS}. Из нескольких отложенных исполнений
+     * ордера выполняется последнее.
+     */
+    public synchronized BotOrder getOrDefer(String orderId, Runnable execution) {
+        var botOrder = orders.get(orderId);
+        if (botOrder != null) return botOrder;
+        var time = currentTimeMillis.getAsLong();
+        pendingExecutions.values().removeIf(pendingExecution -> pendingExecution.isExpired(time));
+        pendingExecutions.put(orderId, new PendingExecution(time, execution));
+        return null;
+    }
+
+    /**
+     * @return false, если ордера нет в кэше: например, он уже удалён другим потоком.
+     */
+    public boolean remove(String orderId) {
+        var botOrder = orders.remove(orderId);
+        if (botOrder == null) return false;
+        notifyChangeListeners(botOrder.getFigi());
+        return true;
+    }
+
+    /**
+     * Неисполненные ордера ботов на инструменте по идентификаторам.
+     */
+    public Map<String, BotOrder> getOrders(String figi) {
+        var figiOrders = new HashMap<String, BotOrder>();
+        for (var entry : orders.entrySet()) {
+            if (entry.getValue().getFigi().equals(figi)) figiOrders.put(entry.getKey(), entry.getValue());
+        }
+        return figiOrders;
+    }
+
+    public void addChangeListener(Consumer<String> changeListener) {
+        changeListeners.add(changeListener);
+    }
+
+    /**
+     * Удаляет ордера остановленного бота. Исполнения удалённых ордеров боту не передаются.
+     *
+     * @return Идентификаторы удалённых ордеров.
+     */
+    public Set<String> removeListener(OrdersStreamServiceListener listener) {
+        var orderIds = new HashSet<String>();
+        var figis = new HashSet<String>();
+        for (var entry : orders.entrySet()) {
+            if (entry.getValue().getListener() == listener && orders.remove(entry.getKey(), entry.getValue())) {
+                orderIds.add(entry.getKey());
+                figis.add(entry.getValue().getFigi());
+            }
+        }
+        figis.forEach(this::notifyChangeListeners);
+        return orderIds;
+    }
+
+    private void notifyChangeListeners(String figi) {
+        for (Consumer<String> changeListener : changeListeners) {
+            changeListener.accept(figi);
+        }
+    }
+
+    @Data
+    public static class BotOrder {
+
+        private final OrdersStreamServiceListener listener;
+        private final String figi;
+        private final Direction direction;
+        private final BigDecimal price;
+        private final long lotsNumber;
+        // время добавления, System.nanoTime()
+        private final long addTime;
+
+    }
+
+    private static class PendingExecution {
+
+        private final long time;
+        private final Runnable execution;
+
+        PendingExecution(long time, Runnable execution) {
+            this.time = time;
+            this.execution = execution;
+        }
+
+        boolean isExpired(long currentTime) {
+            return currentTime - time > Constants.BOT_ORDERS_PENDING_EXECUTION_TTL_MS;
+        }
+
+    }
+
+}
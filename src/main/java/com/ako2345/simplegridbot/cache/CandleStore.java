@@ -0,0 +1,160 @@
+package com.ako2345.simplegridbot.cache;
+
+import com.ako2345.simplegridbot.model.CandleSeries;
+import com.ako2345.simplegridbot.service.ConfigService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.piapi.contract.v1.CandleInterval;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Хранилище свечей на диске. Хранятся только свечи за завершённые дни (UTC): они больше не меняются, поэтому повторно
+ * не загружаются.
+ *
+ * <p>Свечи по инструменту и интервалу хранятся в файлах по месяцам: {@code <figi>/<interval>/<yyyy-MM>.candles}. Файл
+ * сжат GZIP и начинается с индекса сохранённых дней (день месяца и количество свечей), за которым следуют свечи этих
+ * дней: время открытия в секундах и цены open, low, high и close в тиках. День без торгов сохраняется с нулём свечей.
+ *
+ * <p>Если каталог хранилища не задан, хранилище отключено.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CandleStore {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String CHUNK_FILE_EXTENSION = ".candles";
+
+    private final ConfigService configService;
+
+    public boolean isEnabled() {
+        return configService.getCandleStoreDir() != null;
+    }
+
+    /**
+     * Возвращает сохранённые свечи за дни от startDay включительно до endDay не включительно. Дни, которых нет в
+     * хранилище, в результат не попадают.
+     */
+    public synchronized Map<LocalDate, CandleSeries> getDays(String figi, CandleInterval candleInterval, LocalDate startDay, LocalDate endDay) {
+        var days = new HashMap<LocalDate, CandleSeries>();
+        if (!isEnabled()) return days;
+
+        for (var month = YearMonth.from(startDay); !month.atDay(1).isAfter(endDay); month = month.plusMonths(1)) {
+            var chunk = readChunk(getChunkPath(figi, candleInterval, month));
+            for (Map.Entry<Integer, CandleSeries> entry : chunk.entrySet()) {
+                var day = month.atDay(entry.getKey());
+                if (!day.isBefore(startDay) && day.isBefore(endDay)) {
+                    days.put(day, entry.getValue());
+                }
+            }
+        }
+        return days;
+    }
+
+    /**
+     * Сохраняет свечи за завершённые дни. Каждый файл месяца перезаписывается целиком один раз.
+     */
+    public synchronized void putDays(String figi, CandleInterval candleInterval, Map<LocalDate, CandleSeries> days) {
+        if (!isEnabled() || days.isEmpty()) return;
+
+        var daysByMonth = new TreeMap<YearMonth, Map<LocalDate, CandleSeries>>();
+        for (Map.Entry<LocalDate, CandleSeries> entry : days.entrySet()) {
+            daysByMonth.computeIfAbsent(YearMonth.from(entry.getKey()), k -> new HashMap<>()).put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<YearMonth, Map<LocalDate, CandleSeries>> entry : daysByMonth.entrySet()) {
+            var path = getChunkPath(figi, candleInterval, entry.getKey());
+            var chunk = readChunk(path);
+            for (Map.Entry<LocalDate, CandleSeries> dayEntry : entry.getValue().entrySet()) {
+                chunk.put(dayEntry.getKey().getDayOfMonth(), dayEntry.getValue());
+            }
+            writeChunk(path, chunk);
+        }
+        log.info("{} days of candles stored (FIGI: {}, candleInterval: {})", days.size(), figi, candleInterval);
+    }
+
+    private Path getChunkPath(String figi, CandleInterval candleInterval, YearMonth month) {
+        return Paths.get(configService.getCandleStoreDir(), figi, candleInterval.name(), month + CHUNK_FILE_EXTENSION);
+    }
+
+    /**
+     * Читает файл месяца. Возвращает свечи по дням месяца; если файла нет или он повреждён – пустой результат.
+     */
+    private TreeMap<Integer, CandleSeries> readChunk(Path path) {
+        var chunk = new TreeMap<Integer, CandleSeries>();
+        if (!Files.exists(path)) return chunk;
+
+        try (var input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+            var formatVersion = input.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                log.warn("Unsupported candle chunk format version {} ({}). Chunk ignored", formatVersion, path);
+                return chunk;
+            }
+            var daysNumber = input.readInt();
+            var daysOfMonth = new int[daysNumber];
+            var candlesNumbers = new int[daysNumber];
+            for (int i = 0; i < daysNumber; i++) {
+                daysOfMonth[i] = input.readInt();
+                candlesNumbers[i] = input.readInt();
+            }
+            for (int i = 0; i < daysNumber; i++) {
+                var builder = CandleSeries.builder();
+                for (int j = 0; j < candlesNumbers[i]; j++) {
+                    builder.add(input.readLong(), input.readLong(), input.readLong(), input.readLong(), input.readLong());
+                }
+                chunk.put(daysOfMonth[i], builder.build(false));
+            }
+        } catch (IOException exception) {
+            log.warn("Can not read candle chunk {}: {}. Chunk ignored", path, exception.toString());
+            chunk.clear();
+        }
+        return chunk;
+    }
+
+    /**
+     * Записывает файл месяца через временный файл, чтобы при сбое не оставить повреждённый файл.
+     */
+    private void writeChunk(Path path, TreeMap<Integer, CandleSeries> chunk) {
+        try {
+            Files.createDirectories(path.getParent());
+            var temporaryPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            try (var output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temporaryPath))))) {
+                output.writeInt(FORMAT_VERSION);
+                output.writeInt(chunk.size());
+                for (Map.Entry<Integer, CandleSeries> entry : chunk.entrySet()) {
+                    output.writeInt(entry.getKey());
+                    output.writeInt(entry.getValue().size());
+                }
+                for (CandleSeries candles : chunk.values()) {
+                    for (int i = 0; i < candles.size(); i++) {
+                        output.writeLong(candles.getTimestamp(i));
+                        output.writeLong(candles.getOpen(i));
+                        output.writeLong(candles.getLow(i));
+                        output.writeLong(candles.getHigh(i));
+                        output.writeLong(candles.getClose(i));
+                    }
+                }
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            log.warn("Can not write candle chunk {}: {}", path, exception.toString());
+        }
+    }
+
+}
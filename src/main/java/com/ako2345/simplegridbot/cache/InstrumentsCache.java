@@ -1,10 +1,12 @@
 package com.ako2345.simplegridbot.cache;
 
+import com.ako2345.simplegridbot.Constants;
 import com.ako2345.simplegridbot.service.SdkService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.tinkoff.piapi.contract.v1.Instrument;
+import ru.tinkoff.piapi.core.utils.MapperUtils;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
@@ -47,4 +49,18 @@ public class InstrumentsCache {
         return lotSize;
     }
 
+    /**
+     * Минимальный шаг цены инструмента. Если шаг не задан, используется
+     * {@link Constants#DEFAULT_MIN_PRICE_INCREMENT}.
+     */
+    public BigDecimal getMinPriceIncrement(String figi) {
+        var instrument = getInstrument(figi);
+        var minPriceIncrement = MapperUtils.quotationToBigDecimal(instrument.getMinPriceIncrement());
+        if (minPriceIncrement.signum() <= 0) {
+            log.warn("Min price increment is not set. Using {}. FIGI: {}", Constants.DEFAULT_MIN_PRICE_INCREMENT, figi);
+            return Constants.DEFAULT_MIN_PRICE_INCREMENT;
+        }
+        return minPriceIncrement;
+    }
+
 }
\ No newline at end of file
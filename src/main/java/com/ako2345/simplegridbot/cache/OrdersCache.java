@@ -4,18 +4,18 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @Slf4j
 public class OrdersCache {
 
-    private final Map<String, Long> executedLotsNumberMap = new HashMap<>();
-    private final Map<String, BigDecimal> baseCurrencyAmountMap = new HashMap<>();
+    private final Map<String, Long> executedLotsNumberMap = new ConcurrentHashMap<>();
+    private final Map<String, BigDecimal> baseCurrencyAmountMap = new ConcurrentHashMap<>();
 
     public long getExecutedLotsNumber(String orderId) {
-        return executedLotsNumberMap.get(orderId);
+        return executedLotsNumberMap.getOrDefault(orderId, 0L);
     }
 
     public BigDecimal getBaseCurrencyAmount(String orderId) {
@@ -34,4 +34,9 @@ public class OrdersCache {
         baseCurrencyAmountMap.put(orderId, newBaseCurrencyAmount);
     }
 
+    public void remove(String orderId) {
+        executedLotsNumberMap.remove(orderId);
+        baseCurrencyAmountMap.remove(orderId);
+    }
+
 }
\ No newline at end of file
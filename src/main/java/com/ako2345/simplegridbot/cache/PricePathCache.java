@@ -0,0 +1,70 @@
+package com.ako2345.simplegridbot.cache;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.model.CandleSeries;
+import com.ako2345.simplegridbot.simulation.PricePath;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.piapi.contract.v1.CandleInterval;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш путей цены для повторных анализов на тех же свечах. Хранится не больше {@link Constants#PRICE_PATH_CACHE_SIZE}
+ * путей, давно не использованные пути вытесняются.
+ *
+ * <p>Путь определяется инструментом, интервалом и временем первой и последней свечи. Меняться может только последняя,
+ * ещё не закрытая свеча, поэтому её цены также входят в ключ.
+ */
+@Service
+@Slf4j
+public class PricePathCache {
+
+    private final Map<Key, PricePath> pricePaths = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, PricePath> eldest) {
+            return size() > Constants.PRICE_PATH_CACHE_SIZE;
+        }
+    };
+
+    public synchronized PricePath getPricePath(String figi, CandleInterval candleInterval, CandleSeries candles) {
+        var lastIndex = candles.size() - 1;
+        var key = new Key(
+                figi,
+                candleInterval,
+                candles.getTimestamp(0),
+                candles.getTimestamp(lastIndex),
+                candles.size(),
+                candles.getOpen(lastIndex),
+                candles.getLow(lastIndex),
+                candles.getHigh(lastIndex),
+                candles.getClose(lastIndex)
+        );
+        var pricePath = pricePaths.get(key);
+        if (pricePath == null) {
+            pricePath = PricePath.of(candles);
+            pricePaths.put(key, pricePath);
+        } else {
+            log.info("Price path found in cache (FIGI: {}, candleInterval: {}, candles: {})", figi, candleInterval, candles.size());
+        }
+        return pricePath;
+    }
+
+    @Data
+    private static class Key {
+
+        private final String figi;
+        private final CandleInterval candleInterval;
+        private final long startTimestamp;
+        private final long endTimestamp;
+        private final int candlesNumber;
+        private final long lastOpen;
+        private final long lastLow;
+        private final long lastHigh;
+        private final long lastClose;
+
+    }
+
+}
@@ -0,0 +1,240 @@
+package com.ako2345.simplegridbot.cache;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.bot.GridBotStatistics;
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+import com.ako2345.simplegridbot.model.SimulationCacheStatistics;
+import com.ako2345.simplegridbot.service.ConfigService;
+import com.ako2345.simplegridbot.simulation.PricePath;
+import com.ako2345.simplegridbot.simulation.SimulationMode;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш результатов симуляций для повторных анализов. Хранится не больше {@link Constants#SIMULATION_RESULT_CACHE_SIZE}
+ * результатов, давно не использованные результаты вытесняются.
+ *
+ * <p>Результат определяется двумя независимыми хэшами цен пути (см. {@link PricePath#getFingerprint()} и
+ * {@link PricePath#getChecksum()}), количеством свечей, первой и последней ценой пути, параметрами сетки без FIGI, размером лота, минимальным шагом цены, начальной ценой и способом имитации изменения цены. Время свечей и
+ * инструмент в ключ не входят: симуляция от них не зависит.
+ *
+ * <p>Если задан каталог кэша ({@link ConfigService#getSimulationCacheDir()}), результаты загружаются при запуске
+ * приложения и сохраняются при остановке.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SimulationResultCache {
+
+    private static final int FORMAT_VERSION = 3;
+    private static final String FILE_NAME = "simulation-results.bin";
+
+    private final ConfigService configService;
+    private final Map<Key, GridBotStatistics> results = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, GridBotStatistics> eldest) {
+            return size() > Constants.SIMULATION_RESULT_CACHE_SIZE;
+        }
+    };
+    private final AtomicLong hitsNumber = new AtomicLong();
+    private final AtomicLong missesNumber = new AtomicLong();
+    private boolean changed = false;
+
+    /**
+     * Возвращает сохранённый результат симуляции или выполняет симуляцию и сохраняет её результат. Симуляция
+     * выполняется без блокировки кэша, поэтому одинаковые симуляции в разных потоках могут выполниться дважды с
+     * одинаковым результатом.
+     */
+    public GridBotStatistics getStatistics(
+            GridBotConfig gridBotConfig,
+            BigDecimal lotSize,
+            BigDecimal minPriceIncrement,
+            BigDecimal initialPrice,
+            PricePath pricePath,
+            SimulationMode simulationMode,
+            Supplier<GridBotStatistics> simulation
+    ) {
+        var prices = pricePath.getPrices();
+        var key = new Key(
+                pricePath.getFingerprint(),
+                pricePath.getChecksum(),
+                pricePath.getCandlesNumber(),
+                prices[0],
+                prices[prices.length - 1],
+                gridBotConfig.lowerPrice,
+                gridBotConfig.upperPrice,
+                gridBotConfig.gridsNumber,
+                gridBotConfig.investment,
+                lotSize.stripTrailingZeros(),
+                minPriceIncrement.stripTrailingZeros(),
+                initialPrice.stripTrailingZeros(),
+                simulationMode
+        );
+        synchronized (this) {
+            var statistics = results.get(key);
+            if (statistics != null) {
+                hitsNumber.incrementAndGet();
+                return statistics;
+            }
+        }
+        missesNumber.incrementAndGet();
+        var statistics = simulation.get();
+        synchronized (this) {
+            results.put(key, statistics);
+            changed = true;
+        }
+        return statistics;
+    }
+
+    public long getHitsNumber() {
+        return hitsNumber.get();
+    }
+
+    public long getMissesNumber() {
+        return missesNumber.get();
+    }
+
+    public synchronized SimulationCacheStatistics getCacheStatistics() {
+        return new SimulationCacheStatistics(results.size(), getHitsNumber(), getMissesNumber());
+    }
+
+    @PostConstruct
+    public synchronized void load() {
+        var path = getPath();
+        if (path == null || !Files.exists(path)) return;
+
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            var formatVersion = input.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                log.warn("Unsupported simulation results format version {} ({}). Results ignored", formatVersion, path);
+                return;
+            }
+            var resultsNumber = input.readInt();
+            for (int i = 0; i < resultsNumber; i++) {
+                var key = new Key(
+                        input.readLong(),
+                        input.readLong(),
+                        input.readInt(),
+                        input.readLong(),
+                        input.readLong(),
+                        input.readFloat(),
+                        input.readFloat(),
+                        input.readInt(),
+                        input.readFloat(),
+                        new BigDecimal(input.readUTF()),
+                        new BigDecimal(input.readUTF()),
+                        new BigDecimal(input.readUTF()),
+                        SimulationMode.valueOf(input.readUTF())
+                );
+                var statistics = new GridBotStatistics(
+                        new BigDecimal(input.readUTF()),
+                        new BigDecimal(input.readUTF()),
+                        new BigDecimal(input.readUTF()),
+                        new BigDecimal(input.readUTF()),
+                        new BigDecimal(input.readUTF()),
+                        new BigDecimal(input.readUTF()),
+                        input.readInt(),
+                        input.readInt()
+                );
+                results.put(key, statistics);
+            }
+            log.info("{} simulation results loaded from {}", results.size(), path);
+        } catch (IOException | IllegalArgumentException exception) {
+            log.warn("Can not read simulation results {}: {}. Results ignored", path, exception.toString());
+            results.clear();
+        }
+    }
+
+    /**
+     * Сохраняет результаты через временный файл, чтобы при сбое не оставить повреждённый файл. Результаты
+     * сохраняются в порядке использования, поэтому при загрузке сохраняется и порядок вытеснения.
+     */
+    @PreDestroy
+    public synchronized void save() {
+        var path = getPath();
+        if (path == null || !changed) return;
+
+        try {
+            Files.createDirectories(path.getParent());
+            var temporaryPath = Files.createTempFile(path.getParent(), FILE_NAME, ".tmp");
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+                output.writeInt(FORMAT_VERSION);
+                output.writeInt(results.size());
+                for (Map.Entry<Key, GridBotStatistics> entry : results.entrySet()) {
+                    var key = entry.getKey();
+                    output.writeLong(key.fingerprint);
+                    output.writeLong(key.checksum);
+                    output.writeInt(key.candlesNumber);
+                    output.writeLong(key.firstPrice);
+                    output.writeLong(key.lastPrice);
+                    output.writeFloat(key.lowerPrice);
+                    output.writeFloat(key.upperPrice);
+                    output.writeInt(key.gridsNumber);
+                    output.writeFloat(key.investment);
+                    output.writeUTF(key.lotSize.toString());
+                    output.writeUTF(key.minPriceIncrement.toString());
+                    output.writeUTF(key.initialPrice.toString());
+                    output.writeUTF(key.simulationMode.name());
+                    var statistics = entry.getValue();
+                    output.writeUTF(statistics.getTotalProfitPercentage().toString());
+                    output.writeUTF(statistics.getTotalProfit().toString());
+                    output.writeUTF(statistics.getGridProfitPercentage().toString());
+                    output.writeUTF(statistics.getGridProfit().toString());
+                    output.writeUTF(statistics.getUnrealizedProfitPercentage().toString());
+                    output.writeUTF(statistics.getUnrealizedProfit().toString());
+                    output.writeInt(statistics.getTransactionsNumber());
+                    output.writeInt(statistics.getArbitragesNumber());
+                }
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            changed = false;
+            log.info("{} simulation results saved to {}", results.size(), path);
+        } catch (IOException exception) {
+            log.warn("Can not write simulation results {}: {}", path, exception.toString());
+        }
+    }
+
+    private Path getPath() {
+        var simulationCacheDir = configService.getSimulationCacheDir();
+        return simulationCacheDir != null ? Paths.get(simulationCacheDir, FILE_NAME) : null;
+    }
+
+    @Data
+    private static class Key {
+
+        private final long fingerprint;
+        private final long checksum;
+        private final int candlesNumber;
+        private final long firstPrice;
+        private final long lastPrice;
+        private final float lowerPrice;
+        private final float upperPrice;
+        private final int gridsNumber;
+        private final float investment;
+        private final BigDecimal lotSize;
+        private final BigDecimal minPriceIncrement;
+        private final BigDecimal initialPrice;
+        private final SimulationMode simulationMode;
+
+    }
+
+}
@@ -1,178 +1,190 @@
 package com.ako2345.simplegridbot.controller;
 
 import com.ako2345.simplegridbot.Constants;
-import com.ako2345.simplegridbot.bot.GridBot;
-import com.ako2345.simplegridbot.cache.InstrumentsCache;
-import com.ako2345.simplegridbot.cache.TradingScheduleCache;
+import com.ako2345.simplegridbot.cache.SimulationResultCache;
 import com.ako2345.simplegridbot.controller.config.AnalysisConfig;
 import com.ako2345.simplegridbot.controller.config.BacktestConfig;
 import com.ako2345.simplegridbot.controller.config.CloseGridBotParams;
 import com.ako2345.simplegridbot.controller.config.GridBotConfig;
-import com.ako2345.simplegridbot.order.TrueOrderManager;
+import com.ako2345.simplegridbot.controller.config.ScreenerConfig;
+import com.ako2345.simplegridbot.job.Job;
+import com.ako2345.simplegridbot.job.JobInfo;
+import com.ako2345.simplegridbot.ledger.TradeLedger;
+import com.ako2345.simplegridbot.model.GridBotInfo;
+import com.ako2345.simplegridbot.model.SimulationCacheStatistics;
+import com.ako2345.simplegridbot.model.TradeLedgerPage;
+import com.ako2345.simplegridbot.model.TradeLedgerSummary;
 import com.ako2345.simplegridbot.service.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RestController;
-import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
-import ru.tinkoff.piapi.core.stream.StreamProcessor;
-import ru.tinkoff.piapi.core.utils.MapperUtils;
-
-import java.math.RoundingMode;
-import java.sql.Date;
-import java.time.LocalDate;
-import java.util.Timer;
-import java.util.TimerTask;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 @RestController
 @Slf4j
 @RequiredArgsConstructor
 public class ApplicationController {
 
-    private final ConfigService configService;
-    private final RealOrdersStreamService realOrdersStreamService;
-    private final SandboxOrdersStreamService sandboxOrdersStreamService;
-    private final InfoService infoService;
-    private final RealOrderService realAccountService;
-    private final SandboxOrderService sandboxAccountService;
-    private final AnalysisService analysisService;
-    private final BacktestService backtestService;
-    private final InstrumentsCache instrumentsCache;
-    private final TradingScheduleCache tradingScheduleCache;
-    private GridBot gridBot;
-    private Timer timer;
+    private final GridBotRegistry gridBotRegistry;
+    private final JobService jobService;
+    private final SimulationResultCache simulationResultCache;
+    private final TradeLedgerService tradeLedgerService;
 
     @GetMapping("/")
     public ResponseEntity<String> statistics() {
-        if (gridBot == null) {
+        var bots = gridBotRegistry.getBots();
+        if (bots.isEmpty()) {
             var noRunningBotsString = "There is no running bots at the moment";
             log.info(noRunningBotsString);
             return new ResponseEntity<>(noRunningBotsString, HttpStatus.OK);
         }
-        var figi = gridBot.getFigi();
-        var currentPrice = infoService.getLastPrice(figi);
-        var gridBotStatistics = gridBot.getStatistics(currentPrice);
-        var statisticsString = "Grid bot is active. " +
-                "Instrument name: " + instrumentsCache.getName(figi) + " (FIGI: " + figi + "). " +
-                "Statistics: " + gridBotStatistics.toString();
-        log.info(statisticsString);
-        return new ResponseEntity<>(statisticsString, HttpStatus.OK);
+        var statisticsString = new StringBuilder("Grid bots are active: " + bots.size() + ".");
+        for (GridBotInfo bot : bots) {
+            statisticsString.append(" Grid bot ").append(bot.getBotId()).append(". ")
+                    .append("Instrument name: ").append(bot.getInstrumentName())
+                    .append(" (FIGI: ").append(bot.getConfig().figi).append("). ")
+                    .append("Statistics: ").append(bot.getStatistics()).append(".");
+        }
+        log.info(statisticsString.toString());
+        return new ResponseEntity<>(statisticsString.toString(), HttpStatus.OK);
     }
 
     @PostMapping("/grid_bot/analyze")
-    public void analyze(@RequestBody AnalysisConfig config) {
-        analysisService.analyze(config);
+    public ResponseEntity<JobInfo> analyze(@RequestBody AnalysisConfig config) {
+        return submitJob(() -> jobService.submitAnalysis(config));
     }
 
     @PostMapping("/grid_bot/backtest")
-    public void backtest(@RequestBody BacktestConfig config) {
-        backtestService.backtest(config);
+    public ResponseEntity<JobInfo> backtest(@RequestBody BacktestConfig config) {
+        return submitJob(() -> jobService.submitBacktest(config));
     }
 
-    @PostMapping("/grid_bot/init")
-    public void initGridBot(@RequestBody GridBotConfig config) {
-        var orderManager = new TrueOrderManager(getAccountService());
+    @PostMapping("/grid_bot/screen")
+    public ResponseEntity<JobInfo> screen(@RequestBody ScreenerConfig config) {
+        return submitJob(() -> jobService.submitScreening(config));
+    }
 
-        // проверка активного бота
-        if (gridBot != null) {
-            log.error("Running grid bot should be closed first");
-            return;
-        }
+    @GetMapping("/grid_bot/jobs/{jobId}")
+    public ResponseEntity<JobInfo> job(@PathVariable String jobId) {
+        return new ResponseEntity<>(getJob(jobId).getInfo(), HttpStatus.OK);
+    }
 
-        // проверка доступности тогрговли
-        if (!infoService.isInstrumentAvailableForTrading(config.figi)) {
-            log.error("Grid bot cannot be created");
-            return;
-        }
-        gridBot = new GridBot(config, orderManager, instrumentsCache.getLotSize(config.figi), infoService.getLastPrice(config.figi));
+    @GetMapping(path = "/grid_bot/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter jobEvents(@PathVariable String jobId) {
+        return getJob(jobId).subscribe();
+    }
+
+    @GetMapping("/grid_bot/simulation_cache")
+    public ResponseEntity<SimulationCacheStatistics> simulationCache() {
+        return new ResponseEntity<>(simulationResultCache.getCacheStatistics(), HttpStatus.OK);
+    }
 
-        // подписка на информацию об ордерах
-        if (configService.getSandboxMode()) {
-            sandboxOrdersStreamService.addListener(gridBot);
-        } else {
-            realOrdersStreamService.addListener(gridBot);
+    @GetMapping("/grid_bot/ledger/{figi}")
+    public ResponseEntity<TradeLedgerPage> ledger(
+            @PathVariable String figi,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size
+    ) {
+        if (page < 0 || size <= 0 || size > Constants.TRADE_LEDGER_MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page or page size");
         }
+        var ledger = getTradeLedger(figi);
+        var fromTimestamp = toTimestamp(from, Long.MIN_VALUE);
+        var toTimestamp = toTimestamp(to, Long.MAX_VALUE);
+        var entries = ledger.find(fromTimestamp, toTimestamp, (long) page * size, size);
+        var ledgerPage = new TradeLedgerPage(page, size, ledger.count(fromTimestamp, toTimestamp), entries);
+        return new ResponseEntity<>(ledgerPage, HttpStatus.OK);
+    }
 
-        // планирование обновления ордеров в следующей торговой сессии
-        scheduleLimitOrdersUpdate(config.figi);
-
-        // логирование изменения цены
-        if (Constants.LOG_NEW_PRICE) {
-            StreamProcessor<MarketDataResponse> processor = response -> {
-                var figi = response.getLastPrice().getFigi();
-                if (response.hasLastPrice() && figi.equals(config.figi)) {
-                    var lastPriceQuotation = response.getLastPrice().getPrice();
-                    var lastPrice = MapperUtils.quotationToBigDecimal(lastPriceQuotation);
-                    log.info("Price for FIGI {}: {}", figi, lastPrice.setScale(4, RoundingMode.DOWN));
-                }
-            };
-            infoService.subscribePrice(config.figi, processor);
+    @GetMapping("/grid_bot/ledger/{figi}/summary")
+    public ResponseEntity<TradeLedgerSummary> ledgerSummary(
+            @PathVariable String figi,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to
+    ) {
+        var summary = getTradeLedger(figi).aggregate(toTimestamp(from, Long.MIN_VALUE), toTimestamp(to, Long.MAX_VALUE));
+        return new ResponseEntity<>(summary, HttpStatus.OK);
+    }
+
+    @PostMapping("/grid_bot/init")
+    public ResponseEntity<GridBotInfo> initGridBot(@RequestBody GridBotConfig config) {
+        try {
+            return new ResponseEntity<>(gridBotRegistry.create(config), HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            log.error("Grid bot cannot be created: {}", exception.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, exception.getMessage());
         }
     }
 
+    /**
+     * Останавливает всех ботов.
+     */
     @PostMapping("/grid_bot/close")
     public void closeGridBot(@RequestBody CloseGridBotParams params) {
-        // проверка активного бота
-        if (gridBot == null) {
-            log.warn("Grid bot is not initialized");
-            return;
-        }
+        gridBotRegistry.closeAll(params.isInstrumentShouldBeSold());
+    }
 
-        // отмена обновления ордеров в следующей торговой сессии
-        timer.cancel();
+    @GetMapping("/grid_bot/bots")
+    public ResponseEntity<List<GridBotInfo>> gridBots() {
+        return new ResponseEntity<>(gridBotRegistry.getBots(), HttpStatus.OK);
+    }
 
-        // отписка от информации о цене
-        if (Constants.LOG_NEW_PRICE) {
-            infoService.unsubscribePrice(gridBot.getFigi());
+    @GetMapping("/grid_bot/bots/{botId}")
+    public ResponseEntity<GridBotInfo> gridBot(@PathVariable String botId) {
+        var bot = gridBotRegistry.getBot(botId);
+        if (bot == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Grid bot not found");
+        return new ResponseEntity<>(bot, HttpStatus.OK);
+    }
+
+    @PostMapping("/grid_bot/bots/{botId}/close")
+    public void closeGridBot(@PathVariable String botId, @RequestBody CloseGridBotParams params) {
+        if (!gridBotRegistry.close(botId, params.isInstrumentShouldBeSold())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Grid bot not found");
         }
+    }
 
-        // отписка от информации об ордерах
-        if (configService.getSandboxMode()) {
-            sandboxOrdersStreamService.removeListener(gridBot);
-        } else {
-            realOrdersStreamService.removeListener(gridBot);
+    private ResponseEntity<JobInfo> submitJob(Supplier<Job> submitter) {
+        try {
+            var jobInfo = submitter.get().getInfo();
+            var status = jobInfo.getStatus().isFinished() ? HttpStatus.OK : HttpStatus.ACCEPTED;
+            return new ResponseEntity<>(jobInfo, status);
+        } catch (RejectedExecutionException exception) {
+            log.warn("Job queue is full");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Job queue is full");
         }
+    }
+
+    private Job getJob(String jobId) {
+        var job = jobService.getJob(jobId);
+        if (job == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Job not found");
+        return job;
+    }
 
-        // закрытие бота
-        gridBot.close(params.isInstrumentShouldBeSold());
-        gridBot = null;
-    }
-
-    private void scheduleLimitOrdersUpdate(String figi) {
-        var date = LocalDate.now();
-        var exchange = instrumentsCache.getExchange(figi);
-        while (true) {
-            date = date.plusDays(1);
-            var exchangeScheduleForDate = tradingScheduleCache.getExchangeScheduleForDate(exchange, date);
-            if (exchangeScheduleForDate.isTradingDay()) {
-                var nextTradeSessionOpenTime = exchangeScheduleForDate.getOpenTime();
-                log.info("Scheduling orders update at {}...", nextTradeSessionOpenTime);
-                var createLimitOrdersTask = new TimerTask() {
-                    @Override
-                    public void run() {
-                        log.info("Creating limit orders for this trade session...");
-                        if (gridBot != null) {
-                            gridBot.clearPriceLevelsWithLimitOrders();
-                            gridBot.createNewLimitOrders(infoService.getLastPrice(figi));
-                            scheduleLimitOrdersUpdate(figi);
-                        } else {
-                            log.error("Grid bot is null");
-                        }
-                    }
-                };
-                timer = new Timer();
-                timer.schedule(createLimitOrdersTask, Date.from(nextTradeSessionOpenTime));
-                break;
-            }
+    private TradeLedger getTradeLedger(String figi) {
+        TradeLedger ledger;
+        try {
+            ledger = tradeLedgerService.findLedger(figi);
+        } catch (IllegalArgumentException exception) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, exception.getMessage());
         }
+        if (ledger == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Trade ledger not found");
+        return ledger;
     }
 
-    private OrderService getAccountService() {
-        return configService.getSandboxMode() ? sandboxAccountService : realAccountService;
+    private static long toTimestamp(Instant time, long defaultTimestamp) {
+        if (time == null) return defaultTimestamp;
+        return time.getEpochSecond() * 1_000_000_000L + time.getNano();
     }
 
 }
\ No newline at end of file
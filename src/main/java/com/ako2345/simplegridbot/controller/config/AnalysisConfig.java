@@ -1,5 +1,7 @@
 package com.ako2345.simplegridbot.controller.config;
 
+import com.ako2345.simplegridbot.analysis.SearchMode;
+import com.ako2345.simplegridbot.simulation.SimulationMode;
 import lombok.Data;
 
 @Data
@@ -8,5 +10,7 @@ public class AnalysisConfig {
     public final String figi;
     public final int days;
     public final float fee;
+    public final SimulationMode simulationMode;
+    public final SearchMode searchMode;
 
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.ako2345.simplegridbot.controller.config;
 
+import com.ako2345.simplegridbot.simulation.SimulationMode;
 import lombok.Data;
 
 @Data
@@ -8,5 +9,7 @@ public class BacktestConfig {
     public final GridBotConfig gridBotConfig;
     public final int days;
     public final float fee;
+    public final SimulationMode simulationMode;
+    public final String tickLog;
 
 }
\ No newline at end of file
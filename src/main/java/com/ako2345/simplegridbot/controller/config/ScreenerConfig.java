@@ -0,0 +1,21 @@
+package com.ako2345.simplegridbot.controller.config;
+
+import com.ako2345.simplegridbot.analysis.SearchMode;
+import com.ako2345.simplegridbot.model.InstrumentType;
+import com.ako2345.simplegridbot.simulation.SimulationMode;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ScreenerConfig {
+
+    public final List<InstrumentType> instrumentTypes;
+    public final String currency;
+    public final int days;
+    public final float fee;
+    public final SimulationMode simulationMode;
+    public final SearchMode searchMode;
+    public final Integer resultsNumber;
+
+}
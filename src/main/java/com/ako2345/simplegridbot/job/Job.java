@@ -0,0 +1,171 @@
+package com.ako2345.simplegridbot.job;
+
+import com.ako2345.simplegridbot.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Задача бэктеста или анализа. Хранит состояние, прогресс и результат задачи и рассылает их изменения подписчикам
+ * SSE.
+ *
+ * <p>События SSE: status – состояние задачи при подписке, progress – прогресс этапа (не чаще раза в
+ * {@link Constants#JOB_PROGRESS_INTERVAL_MS} мс), partial – промежуточный результат, result – состояние завершённой
+ * задачи. После события result поток событий закрывается.
+ *
+ * <p>События отправляются вне блокировки задачи, чтобы медленный клиент не задерживал выполнение задачи и запросы её
+ * состояния.
+ */
+@Slf4j
+public class Job implements JobProgressListener {
+
+    private final String id = UUID.randomUUID().toString();
+    private final JobType type;
+    private final Object request;
+    private final Instant createdTime = Instant.now();
+    private final List<SseEmitter> emitters = new ArrayList<>();
+    private JobStatus status = JobStatus.QUEUED;
+    private Instant finishedTime;
+    private JobProgress progress;
+    private long progressSentTime;
+    private Object partialResult;
+    private Object result;
+    private String error;
+
+    public Job(JobType type, Object request) {
+        this.type = type;
+        this.request = request;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Object getRequest() {
+        return request;
+    }
+
+    public synchronized JobStatus getStatus() {
+        return status;
+    }
+
+    public synchronized Instant getFinishedTime() {
+        return finishedTime;
+    }
+
+    public synchronized JobInfo getInfo() {
+        return new JobInfo(id, type, status, createdTime, finishedTime, progress, partialResult, result, error);
+    }
+
+    public synchronized void start() {
+        status = JobStatus.RUNNING;
+    }
+
+    public void complete(Object result) {
+        List<SseEmitter> subscribedEmitters;
+        synchronized (this) {
+            this.result = result;
+            subscribedEmitters = finish(JobStatus.COMPLETED);
+        }
+        sendResult(subscribedEmitters);
+    }
+
+    public void fail(Throwable throwable) {
+        List<SseEmitter> subscribedEmitters;
+        synchronized (this) {
+            this.error = throwable.toString();
+            subscribedEmitters = finish(JobStatus.FAILED);
+        }
+        sendResult(subscribedEmitters);
+    }
+
+    @Override
+    public void onProgress(String stage, long completed, long total) {
+        var progress = new JobProgress(stage, completed, total);
+        List<SseEmitter> subscribedEmitters;
+        synchronized (this) {
+            this.progress = progress;
+            var now = System.currentTimeMillis();
+            if (completed < total && now - progressSentTime < Constants.JOB_PROGRESS_INTERVAL_MS) return;
+            progressSentTime = now;
+            subscribedEmitters = new ArrayList<>(emitters);
+        }
+        send(subscribedEmitters, "progress", progress);
+    }
+
+    @Override
+    public void onPartialResult(Object partialResult) {
+        List<SseEmitter> subscribedEmitters;
+        synchronized (this) {
+            this.partialResult = partialResult;
+            subscribedEmitters = new ArrayList<>(emitters);
+        }
+        send(subscribedEmitters, "partial", partialResult);
+    }
+
+    /**
+     * Подписывает клиента на события задачи. Клиент сразу получает текущее состояние задачи: до возврата эмиттера
+     * события только буферизуются, поэтому отправляются под блокировкой.
+     */
+    public synchronized SseEmitter subscribe() {
+        var emitter = new SseEmitter(Constants.JOB_EVENTS_TIMEOUT_MS);
+        emitter.onCompletion(() -> removeEmitter(emitter));
+        emitter.onTimeout(() -> removeEmitter(emitter));
+        if (status.isFinished()) {
+            send(emitter, "result", getInfo());
+            emitter.complete();
+        } else {
+            send(emitter, "status", getInfo());
+            emitters.add(emitter);
+        }
+        return emitter;
+    }
+
+    /**
+     * @return Подписчики, которым нужно отправить событие result. Новые подписчики получат его при подписке.
+     */
+    private List<SseEmitter> finish(JobStatus status) {
+        this.status = status;
+        this.finishedTime = Instant.now();
+        var subscribedEmitters = new ArrayList<>(emitters);
+        emitters.clear();
+        return subscribedEmitters;
+    }
+
+    private void sendResult(List<SseEmitter> subscribedEmitters) {
+        var info = getInfo();
+        for (SseEmitter emitter : subscribedEmitters) {
+            if (send(emitter, "result", info)) emitter.complete();
+        }
+    }
+
+    private synchronized void removeEmitter(SseEmitter emitter) {
+        emitters.remove(emitter);
+    }
+
+    private void send(List<SseEmitter> subscribedEmitters, String eventName, Object data) {
+        for (SseEmitter emitter : subscribedEmitters) {
+            if (!send(emitter, eventName, data)) removeEmitter(emitter);
+        }
+    }
+
+    /**
+     * @return false, если клиент отключился.
+     */
+    private boolean send(SseEmitter emitter, String eventName, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data));
+            return true;
+        } catch (IOException | IllegalStateException exception) {
+            log.debug("Job {} event subscriber disconnected: {}", id, exception.toString());
+            emitter.completeWithError(exception);
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.ako2345.simplegridbot.job;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Состояние задачи для ответа клиенту.
+ */
+@Data
+public class JobInfo {
+
+    private final String jobId;
+    private final JobType type;
+    private final JobStatus status;
+    private final Instant createdTime;
+    private final Instant finishedTime;
+    private final JobProgress progress;
+    private final Object partialResult;
+    private final Object result;
+    private final String error;
+
+}
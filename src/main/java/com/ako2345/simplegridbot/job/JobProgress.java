@@ -0,0 +1,12 @@
+package com.ako2345.simplegridbot.job;
+
+import lombok.Data;
+
+@Data
+public class JobProgress {
+
+    private final String stage;
+    private final long completed;
+    private final long total;
+
+}
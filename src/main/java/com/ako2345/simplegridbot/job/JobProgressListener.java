@@ -0,0 +1,30 @@
+package com.ako2345.simplegridbot.job;
+
+/**
+ * Получатель прогресса длительной операции (бэктеста или анализа).
+ */
+public interface JobProgressListener {
+
+    JobProgressListener NONE = new JobProgressListener() {
+        @Override
+        public void onProgress(String stage, long completed, long total) {
+        }
+
+        @Override
+        public void onPartialResult(Object partialResult) {
+        }
+    };
+
+    /**
+     * @param stage     Этап операции, например загрузка свечей или симуляция.
+     * @param completed Количество выполненных шагов этапа.
+     * @param total     Количество шагов этапа, известное на данный момент.
+     */
+    void onProgress(String stage, long completed, long total);
+
+    /**
+     * Промежуточный результат, например лучшие из уже оценённых конфигураций.
+     */
+    void onPartialResult(Object partialResult);
+
+}
@@ -0,0 +1,14 @@
+package com.ako2345.simplegridbot.job;
+
+public enum JobStatus {
+
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == FAILED;
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.ako2345.simplegridbot.job;
+
+public enum JobType {
+
+    BACKTEST,
+    ANALYSIS,
+    SCREENING
+
+}
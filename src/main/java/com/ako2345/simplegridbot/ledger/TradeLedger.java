@@ -0,0 +1,320 @@
+package com.ako2345.simplegridbot.ledger;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.model.TradeLedgerEntry;
+import com.ako2345.simplegridbot.model.TradeLedgerSummary;
+import com.ako2345.simplegridbot.util.PriceUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Журнал сделок бота: только добавление записей, хранение по столбцам вне кучи.
+ *
+ * <p>Записи хранятся блоками по {@link Constants#TRADE_LEDGER_BLOCK_SIZE}. Блок состоит из столбцов: время в
+ * наносекундах от начала эпохи (long), цена в тиках (long), сумма сделки в базовой валюте в тиках (long) и направление
+ * (byte, порядковый номер {@link Direction}). Время записей не убывает, поэтому записи за период находятся двоичным
+ * поиском, а агрегаты считаются проходом по столбцам без создания объектов.
+ *
+ * <p>Журнал в памяти ({@link #inMemory()}) хранит блоки в direct-буферах. Журнал в файле ({@link #open(Path)})
+ * отображает блоки в память, поэтому записи сохраняются между запусками, а неиспользуемые блоки вытесняются
+ * операционной системой на диск. Файл начинается с заголовка размером {@link #HEADER_SIZE}: int – {@link #MAGIC}, int
+ * – версия формата, int – размер блока, long (смещение 16) – количество записей. Порядок байтов – little-endian.
+ *
+ * <p>Методы синхронизированы: записи добавляет поток бота, читают – запросы к API. После закрытия записи не
+ * добавляются ({@link #append(long, Direction, long, long)} возвращает false), а чтение бросает
+ * IllegalStateException.
+ */
+public class TradeLedger implements AutoCloseable {
+
+    public static final String FILE_EXTENSION = ".ledger";
+
+    private static final int MAGIC = 0x47444C54;
+    private static final int VERSION = 1;
+    private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int BLOCK_SIZE_OFFSET = 8;
+    private static final int RECORDS_NUMBER_OFFSET = 16;
+    private static final int HEADER_SIZE = 64;
+
+    private static final int BLOCK_SIZE = Constants.TRADE_LEDGER_BLOCK_SIZE;
+    private static final int TIMESTAMPS_OFFSET = 0;
+    private static final int PRICES_OFFSET = 8 * BLOCK_SIZE;
+    private static final int AMOUNTS_OFFSET = 16 * BLOCK_SIZE;
+    private static final int DIRECTIONS_OFFSET = 24 * BLOCK_SIZE;
+    private static final int BLOCK_BYTES = 25 * BLOCK_SIZE;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final List<ByteBuffer> blocks = new ArrayList<>();
+    private long recordsNumber;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private boolean isClosed = false;
+
+    private TradeLedger(FileChannel channel, MappedByteBuffer header) {
+        this.channel = channel;
+        this.header = header;
+    }
+
+    public static TradeLedger inMemory() {
+        return new TradeLedger(null, null);
+    }
+
+    /**
+     * Открывает журнал в файле. Если файла нет, создаётся пустой журнал.
+     */
+    public static TradeLedger open(Path file) {
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            var isNew = channel.size() == 0;
+            var header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(BYTE_ORDER);
+            if (isNew) {
+                header.putInt(MAGIC_OFFSET, MAGIC);
+                header.putInt(VERSION_OFFSET, VERSION);
+                header.putInt(BLOCK_SIZE_OFFSET, BLOCK_SIZE);
+                header.putLong(RECORDS_NUMBER_OFFSET, 0);
+            } else if (header.getInt(MAGIC_OFFSET) != MAGIC ||
+                    header.getInt(VERSION_OFFSET) != VERSION ||
+                    header.getInt(BLOCK_SIZE_OFFSET) != BLOCK_SIZE) {
+                throw new IllegalArgumentException("Unsupported trade ledger: " + file);
+            }
+            var ledger = new TradeLedger(channel, header);
+            ledger.load(header.getLong(RECORDS_NUMBER_OFFSET));
+            return ledger;
+        } catch (IOException exception) {
+            closeQuietly(channel);
+            throw new UncheckedIOException(exception);
+        } catch (RuntimeException exception) {
+            closeQuietly(channel);
+            throw exception;
+        }
+    }
+
+    private void load(long recordsNumber) {
+        var blocksNumber = (recordsNumber + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        for (int i = 0; i < blocksNumber; i++) {
+            addBlock();
+        }
+        this.recordsNumber = recordsNumber;
+        if (recordsNumber > 0) lastTimestamp = getTimestamp(recordsNumber - 1);
+    }
+
+    /**
+     * Добавляет запись. Время меньше времени предыдущей записи заменяется временем предыдущей записи.
+     *
+     * @param timestamp Время в наносекундах от начала эпохи.
+     * @param price     Цена в тиках.
+     * @param amount    Сумма сделки в базовой валюте в тиках.
+     * @return false, если журнал закрыт и запись не добавлена.
+     */
+    public synchronized boolean append(long timestamp, Direction direction, long price, long amount) {
+        if (isClosed) return false;
+        var index = (int) (recordsNumber % BLOCK_SIZE);
+        if (index == 0) addBlock();
+        var block = blocks.get(blocks.size() - 1);
+        lastTimestamp = Math.max(timestamp, lastTimestamp);
+        block.putLong(TIMESTAMPS_OFFSET + index * 8, lastTimestamp);
+        block.putLong(PRICES_OFFSET + index * 8, price);
+        block.putLong(AMOUNTS_OFFSET + index * 8, amount);
+        block.put(DIRECTIONS_OFFSET + index, (byte) direction.ordinal());
+        recordsNumber++;
+        // количество записей обновляется последним: запись за его пределами считается незаполненной
+        if (header != null) header.putLong(RECORDS_NUMBER_OFFSET, recordsNumber);
+        return true;
+    }
+
+    public boolean append(Instant time, Direction direction, BigDecimal price, BigDecimal amount) {
+        return append(
+                time.getEpochSecond() * 1_000_000_000L + time.getNano(),
+                direction,
+                PriceUtils.toTicks(price, RoundingMode.HALF_UP),
+                PriceUtils.toTicks(amount, RoundingMode.HALF_UP)
+        );
+    }
+
+    public synchronized long size() {
+        return recordsNumber;
+    }
+
+    /**
+     * Количество записей за период.
+     *
+     * @param from Начало периода включительно, в наносекундах от начала эпохи.
+     * @param to   Конец периода не включительно.
+     */
+    public synchronized long count(long from, long to) {
+        checkOpen();
+        return Math.max(0, lowerBound(to) - lowerBound(from));
+    }
+
+    /**
+     * Записи за период в порядке добавления, начиная с записи offset периода, не больше limit.
+     */
+    public synchronized List<TradeLedgerEntry> find(long from, long to, long offset, int limit) {
+        checkOpen();
+        var first = lowerBound(from) + Math.max(0, offset);
+        var last = Math.min(lowerBound(to), first + Math.max(0, limit));
+        var entries = new ArrayList<TradeLedgerEntry>((int) Math.max(0, last - first));
+        for (long i = first; i < last; i++) {
+            var block = blocks.get((int) (i / BLOCK_SIZE));
+            var index = (int) (i % BLOCK_SIZE);
+            var timestamp = block.getLong(TIMESTAMPS_OFFSET + index * 8);
+            entries.add(new TradeLedgerEntry(
+                    Instant.ofEpochSecond(0, timestamp),
+                    DIRECTIONS[block.get(DIRECTIONS_OFFSET + index)],
+                    PriceUtils.fromTicks(block.getLong(PRICES_OFFSET + index * 8)),
+                    PriceUtils.fromTicks(block.getLong(AMOUNTS_OFFSET + index * 8))
+            ));
+        }
+        return entries;
+    }
+
+    /**
+     * Агрегаты записей за период (см. {@link #count(long, long)}).
+     */
+    public synchronized TradeLedgerSummary aggregate(long from, long to) {
+        checkOpen();
+        var first = lowerBound(from);
+        var last = lowerBound(to);
+        var buyAmount = new Sum();
+        var sellAmount = new Sum();
+        var buysNumber = 0L;
+        var minPrice = Long.MAX_VALUE;
+        var maxPrice = Long.MIN_VALUE;
+        for (long i = first; i < last; i++) {
+            var block = blocks.get((int) (i / BLOCK_SIZE));
+            var index = (int) (i % BLOCK_SIZE);
+            var price = block.getLong(PRICES_OFFSET + index * 8);
+            var amount = block.getLong(AMOUNTS_OFFSET + index * 8);
+            if (DIRECTIONS[block.get(DIRECTIONS_OFFSET + index)] == Direction.BUY) {
+                buyAmount.add(amount);
+                buysNumber++;
+            } else {
+                sellAmount.add(amount);
+            }
+            minPrice = Math.min(minPrice, price);
+            maxPrice = Math.max(maxPrice, price);
+        }
+        var tradesNumber = Math.max(0, last - first);
+        return new TradeLedgerSummary(
+                tradesNumber,
+                buysNumber,
+                tradesNumber - buysNumber,
+                buyAmount.get(),
+                sellAmount.get(),
+                tradesNumber > 0 ? PriceUtils.fromTicks(minPrice) : null,
+                tradesNumber > 0 ? PriceUtils.fromTicks(maxPrice) : null
+        );
+    }
+
+    /**
+     * Сбрасывает записи журнала в файле на диск.
+     */
+    public synchronized void flush() {
+        if (channel == null || isClosed) return;
+        for (ByteBuffer block : blocks) {
+            ((MappedByteBuffer) block).force();
+        }
+        header.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (isClosed) return;
+        flush();
+        isClosed = true;
+        blocks.clear();
+        closeQuietly(channel);
+    }
+
+    private void checkOpen() {
+        if (isClosed) throw new IllegalStateException("Trade ledger is closed");
+    }
+
+    /**
+     * Индекс первой записи со временем не меньше timestamp.
+     */
+    private long lowerBound(long timestamp) {
+        var low = 0L;
+        var high = recordsNumber;
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (getTimestamp(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long getTimestamp(long i) {
+        return blocks.get((int) (i / BLOCK_SIZE)).getLong(TIMESTAMPS_OFFSET + (int) (i % BLOCK_SIZE) * 8);
+    }
+
+    private void addBlock() {
+        if (channel == null) {
+            blocks.add(ByteBuffer.allocateDirect(BLOCK_BYTES).order(BYTE_ORDER));
+            return;
+        }
+        try {
+            var position = HEADER_SIZE + (long) blocks.size() * BLOCK_BYTES;
+            blocks.add(channel.map(FileChannel.MapMode.READ_WRITE, position, BLOCK_BYTES).order(BYTE_ORDER));
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // журнал закрывается, ошибка закрытия файла ни на что не влияет
+        }
+    }
+
+    /**
+     * Сумма тиков без переполнения: long-сумма переносится в BigInteger только при переполнении.
+     */
+    private static class Sum {
+
+        private long sum;
+        private BigInteger total = BigInteger.ZERO;
+
+        void add(long value) {
+            var next = sum + value;
+            if (((sum ^ next) & (value ^ next)) < 0) {
+                total = total.add(BigInteger.valueOf(sum));
+                next = value;
+            }
+            sum = next;
+        }
+
+        BigDecimal get() {
+            return new BigDecimal(total.add(BigInteger.valueOf(sum)), Constants.TICK_SCALE);
+        }
+
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.ako2345.simplegridbot.model;
+
+import com.ako2345.simplegridbot.analysis.SearchMode;
+import com.ako2345.simplegridbot.simulation.SimulationMode;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+public class AnalysisResult {
+
+    private final String figi;
+    private final int days;
+    private final SimulationMode simulationMode;
+    private final SearchMode searchMode;
+    private final BigDecimal initialPrice;
+    private final BigDecimal finalPrice;
+    private final float minPrice;
+    private final float maxPrice;
+    private final long simulationsNumber;
+    private final List<ConfigResult> bestResults;
+
+}
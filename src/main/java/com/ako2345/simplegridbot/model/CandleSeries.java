@@ -0,0 +1,254 @@
+package com.ako2345.simplegridbot.model;
+
+import com.ako2345.simplegridbot.util.PriceUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Ряд свечей в колоночном представлении. Время открытия свечи (в секундах) и цены open, low, high и close в тиках
+ * (см. {@link PriceUtils}) хранятся в отдельных колонках примитивов: в куче или вне её. Свеча занимает 40 байт, доступ
+ * к свече по индексу не требует перехода по ссылкам.
+ *
+ * <p>Свечи упорядочены по времени, поиск свечи по времени выполняется двоичным поиском. Срез
+ * ({@link #slice(int, int)}) использует те же колонки без копирования.
+ */
+public class CandleSeries {
+
+    private final LongBuffer timestamps;
+    private final LongBuffer opens;
+    private final LongBuffer lows;
+    private final LongBuffer highs;
+    private final LongBuffer closes;
+    private final int offset;
+    private final int size;
+
+    private CandleSeries(LongBuffer timestamps, LongBuffer opens, LongBuffer lows, LongBuffer highs, LongBuffer closes, int offset, int size) {
+        this.timestamps = timestamps;
+        this.opens = opens;
+        this.lows = lows;
+        this.highs = highs;
+        this.closes = closes;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Время открытия свечи в секундах.
+     */
+    public long getTimestamp(int index) {
+        return timestamps.get(offset + checkIndex(index));
+    }
+
+    public long getOpen(int index) {
+        return opens.get(offset + checkIndex(index));
+    }
+
+    public long getLow(int index) {
+        return lows.get(offset + checkIndex(index));
+    }
+
+    public long getHigh(int index) {
+        return highs.get(offset + checkIndex(index));
+    }
+
+    public long getClose(int index) {
+        return closes.get(offset + checkIndex(index));
+    }
+
+    /**
+     * Минимальная цена low в тиках.
+     */
+    public long getLowest() {
+        if (isEmpty()) throw new IllegalStateException("Candle series is empty");
+        var lowest = Long.MAX_VALUE;
+        for (int i = offset; i < offset + size; i++) {
+            lowest = Math.min(lowest, lows.get(i));
+        }
+        return lowest;
+    }
+
+    /**
+     * Максимальная цена high в тиках.
+     */
+    public long getHighest() {
+        if (isEmpty()) throw new IllegalStateException("Candle series is empty");
+        var highest = Long.MIN_VALUE;
+        for (int i = offset; i < offset + size; i++) {
+            highest = Math.max(highest, highs.get(i));
+        }
+        return highest;
+    }
+
+    /**
+     * Индекс первой свечи, открывшейся не раньше time. Если таких свечей нет, возвращается {@link #size()}.
+     */
+    public int indexOf(Instant time) {
+        var seconds = time.getEpochSecond();
+        var low = 0;
+        var high = size;
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (timestamps.get(offset + middle) < seconds) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Срез со свечами от fromIndex включительно до toIndex не включительно. Колонки не копируются.
+     */
+    public CandleSeries slice(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Invalid slice [" + fromIndex + ", " + toIndex + ") of " + size);
+        }
+        return new CandleSeries(timestamps, opens, lows, highs, closes, offset + fromIndex, toIndex - fromIndex);
+    }
+
+    /**
+     * Срез со свечами, открывшимися от startTime включительно до endTime не включительно. Колонки не копируются.
+     */
+    public CandleSeries slice(Instant startTime, Instant endTime) {
+        var fromIndex = indexOf(startTime);
+        return slice(fromIndex, Math.max(fromIndex, indexOf(endTime)));
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+        return index;
+    }
+
+    /**
+     * Накапливает свечи в произвольном порядке. При сборке ряда свечи упорядочиваются по времени, из свечей с
+     * одинаковым временем остаётся добавленная первой.
+     */
+    public static class Builder {
+
+        private static final int INITIAL_CAPACITY = 256;
+
+        private long[] timestamps = new long[INITIAL_CAPACITY];
+        private long[] opens = new long[INITIAL_CAPACITY];
+        private long[] lows = new long[INITIAL_CAPACITY];
+        private long[] highs = new long[INITIAL_CAPACITY];
+        private long[] closes = new long[INITIAL_CAPACITY];
+        private int size = 0;
+
+        private Builder() {
+        }
+
+        public Builder add(long timestamp, long open, long low, long high, long close) {
+            if (size == timestamps.length) {
+                var capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                opens = Arrays.copyOf(opens, capacity);
+                lows = Arrays.copyOf(lows, capacity);
+                highs = Arrays.copyOf(highs, capacity);
+                closes = Arrays.copyOf(closes, capacity);
+            }
+            timestamps[size] = timestamp;
+            opens[size] = open;
+            lows[size] = low;
+            highs[size] = high;
+            closes[size] = close;
+            size++;
+            return this;
+        }
+
+        public Builder add(CachedCandle candle) {
+            return add(
+                    candle.getTimestamp().getSeconds(),
+                    PriceUtils.toTicks(candle.getOpen()),
+                    PriceUtils.toTicks(candle.getLow()),
+                    PriceUtils.toTicks(candle.getHigh()),
+                    PriceUtils.toTicks(candle.getClose())
+            );
+        }
+
+        public Builder addAll(Collection<CachedCandle> candles) {
+            for (CachedCandle candle : candles) {
+                add(candle);
+            }
+            return this;
+        }
+
+        public Builder addAll(CandleSeries candles) {
+            for (int i = 0; i < candles.size(); i++) {
+                add(candles.getTimestamp(i), candles.getOpen(i), candles.getLow(i), candles.getHigh(i), candles.getClose(i));
+            }
+            return this;
+        }
+
+        /**
+         * @param offHeap Признак хранения колонок вне кучи.
+         */
+        public CandleSeries build(boolean offHeap) {
+            var order = sortedUniqueOrder();
+            var candlesNumber = order.length;
+            var timestampsColumn = allocate(candlesNumber, offHeap);
+            var opensColumn = allocate(candlesNumber, offHeap);
+            var lowsColumn = allocate(candlesNumber, offHeap);
+            var highsColumn = allocate(candlesNumber, offHeap);
+            var closesColumn = allocate(candlesNumber, offHeap);
+            for (int i = 0; i < candlesNumber; i++) {
+                var index = order[i];
+                timestampsColumn.put(i, timestamps[index]);
+                opensColumn.put(i, opens[index]);
+                lowsColumn.put(i, lows[index]);
+                highsColumn.put(i, highs[index]);
+                closesColumn.put(i, closes[index]);
+            }
+            return new CandleSeries(timestampsColumn, opensColumn, lowsColumn, highsColumn, closesColumn, 0, candlesNumber);
+        }
+
+        /**
+         * Индексы добавленных свечей, упорядоченные по времени, без повторов времени.
+         */
+        private int[] sortedUniqueOrder() {
+            if (size == 0) return new int[0];
+            var minTimestamp = Long.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                minTimestamp = Math.min(minTimestamp, timestamps[i]);
+            }
+            // ключ сортировки: смещение времени в старших битах, порядок добавления в младших
+            var keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((timestamps[i] - minTimestamp) << 32) | i;
+            }
+            Arrays.sort(keys);
+            var order = new int[size];
+            var uniqueNumber = 0;
+            for (int i = 0; i < size; i++) {
+                var index = (int) keys[i];
+                if (uniqueNumber > 0 && timestamps[order[uniqueNumber - 1]] == timestamps[index]) continue;
+                order[uniqueNumber++] = index;
+            }
+            return Arrays.copyOf(order, uniqueNumber);
+        }
+
+        private static LongBuffer allocate(int size, boolean offHeap) {
+            if (!offHeap) return LongBuffer.allocate(size);
+            return ByteBuffer.allocateDirect(size * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.ako2345.simplegridbot.model;
+
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Конфигурация бота и её общая доходность.
+ */
+@Data
+public class ConfigResult {
+
+    private final GridBotConfig gridBotConfig;
+    private final BigDecimal totalProfitPercentage;
+
+}
@@ -0,0 +1,21 @@
+package com.ako2345.simplegridbot.model;
+
+import lombok.Data;
+
+/**
+ * Состояние очереди событий бота: ёмкость, текущий и максимальный размер, количество добавленных и обработанных
+ * событий, количество случаев, когда добавляющему потоку пришлось ждать освобождения места, и количество событий,
+ * отброшенных из-за заполненной очереди.
+ */
+@Data
+public class GridBotEventLoopStatistics {
+
+    private final int queueCapacity;
+    private final int queueSize;
+    private final int maxQueueSize;
+    private final long submittedNumber;
+    private final long processedNumber;
+    private final long queueFullNumber;
+    private final long droppedNumber;
+
+}
@@ -0,0 +1,22 @@
+package com.ako2345.simplegridbot.model;
+
+import com.ako2345.simplegridbot.bot.GridBotStatistics;
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+import lombok.Data;
+
+/**
+ * Работающий бот: идентификатор, инструмент, конфигурация, статистика по текущей цене и состояние очереди событий.
+ * Бот, исполнение ордера которого было отброшено из-за заполненной очереди событий, отмечается как failed: его сетка и
+ * баланс больше не соответствуют счёту, поэтому его нужно остановить.
+ */
+@Data
+public class GridBotInfo {
+
+    private final String botId;
+    private final String instrumentName;
+    private final GridBotConfig config;
+    private final GridBotStatistics statistics;
+    private final GridBotEventLoopStatistics eventLoop;
+    private final boolean failed;
+
+}
@@ -0,0 +1,21 @@
+package com.ako2345.simplegridbot.model;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Краткие сведения об инструменте, достаточные для его анализа.
+ */
+@Data
+public class InstrumentInfo {
+
+    private final String figi;
+    private final String ticker;
+    private final String name;
+    private final InstrumentType type;
+    private final String currency;
+    private final BigDecimal lotSize;
+    private final BigDecimal minPriceIncrement;
+
+}
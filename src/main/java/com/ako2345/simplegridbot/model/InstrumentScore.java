@@ -0,0 +1,24 @@
+package com.ako2345.simplegridbot.model;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Результат анализа инструмента в отчёте скринера: лучшая найденная конфигурация бота и её доходность.
+ */
+@Data
+public class InstrumentScore {
+
+    private final String figi;
+    private final String ticker;
+    private final String name;
+    private final InstrumentType type;
+    private final int candlesNumber;
+    private final BigDecimal initialPrice;
+    private final BigDecimal finalPrice;
+    private final float minPrice;
+    private final float maxPrice;
+    private final ConfigResult bestResult;
+
+}
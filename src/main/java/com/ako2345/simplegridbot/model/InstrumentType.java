@@ -0,0 +1,8 @@
+package com.ako2345.simplegridbot.model;
+
+public enum InstrumentType {
+
+    SHARE,
+    ETF
+
+}
@@ -0,0 +1,17 @@
+package com.ako2345.simplegridbot.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Результат отмены ордеров: количество отменённых ордеров и идентификаторы ордеров, которые после отмены остались
+ * активными.
+ */
+@Data
+public class OrdersCancellation {
+
+    private final int cancelledNumber;
+    private final List<String> failedOrderIds;
+
+}
@@ -0,0 +1,16 @@
+package com.ako2345.simplegridbot.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ScreenerReport {
+
+    private final int instrumentsNumber;
+    private final int analyzedNumber;
+    private final int skippedNumber;
+    private final int failedNumber;
+    private final List<InstrumentScore> results;
+
+}
@@ -0,0 +1,15 @@
+package com.ako2345.simplegridbot.model;
+
+import lombok.Data;
+
+/**
+ * Состояние кэша результатов симуляций: количество сохранённых результатов, попаданий и промахов.
+ */
+@Data
+public class SimulationCacheStatistics {
+
+    private final int size;
+    private final long hitsNumber;
+    private final long missesNumber;
+
+}
@@ -0,0 +1,19 @@
+package com.ako2345.simplegridbot.model;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Сделка из журнала сделок бота.
+ */
+@Data
+public class TradeLedgerEntry {
+
+    private final Instant time;
+    private final Direction direction;
+    private final BigDecimal price;
+    private final BigDecimal baseCurrencyAmount;
+
+}
@@ -0,0 +1,18 @@
+package com.ako2345.simplegridbot.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Страница журнала сделок: номер страницы, размер страницы, количество сделок за период и сделки страницы.
+ */
+@Data
+public class TradeLedgerPage {
+
+    private final int page;
+    private final int size;
+    private final long totalNumber;
+    private final List<TradeLedgerEntry> entries;
+
+}
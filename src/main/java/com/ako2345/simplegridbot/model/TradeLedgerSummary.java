@@ -0,0 +1,22 @@
+package com.ako2345.simplegridbot.model;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Агрегаты журнала сделок за период: количество сделок, суммы покупок и продаж в базовой валюте, диапазон цен. Если
+ * сделок нет, цены не заданы.
+ */
+@Data
+public class TradeLedgerSummary {
+
+    private final long tradesNumber;
+    private final long buysNumber;
+    private final long sellsNumber;
+    private final BigDecimal buyAmount;
+    private final BigDecimal sellAmount;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+
+}
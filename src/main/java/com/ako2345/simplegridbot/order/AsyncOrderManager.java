@@ -0,0 +1,21 @@
+package com.ako2345.simplegridbot.order;
+
+import com.ako2345.simplegridbot.model.Order;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Обработчик ордеров, выставляющий лимитные ордера асинхронно: несколько ордеров выставляются одновременно, не ожидая
+ * ответа на предыдущий запрос.
+ *
+ * <p>Результаты передаются в потоке бота: действия, добавленные к возвращённому future в потоке бота, выполняются
+ * отдельными событиями бота. Выставленный ордер передаётся боту раньше информации о его исполнении.
+ */
+public interface AsyncOrderManager extends OrderManager {
+
+    CompletableFuture<Order> makeBuyLimitOrderAsync(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price);
+
+    CompletableFuture<Order> makeSellLimitOrderAsync(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price);
+
+}
@@ -0,0 +1,176 @@
+package com.ako2345.simplegridbot.order;
+
+import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.model.Order;
+import com.ako2345.simplegridbot.util.PriceUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Книга лимитных ордеров для бэктеста. Ордера на покупку и на продажу хранятся раздельно в массивах, упорядоченных по
+ * цене в тиках (см. {@link PriceUtils}), поэтому ордера из ценового диапазона находятся двоичным поиском и удаляются
+ * одним сдвигом массива.
+ *
+ * <p>Ордера, исполняемые одновременно, возвращаются в порядке их выставления.
+ */
+public class FakeOrderBook {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Side buySide = new Side();
+    private final Side sellSide = new Side();
+    private long nextSequenceNumber = 0;
+    private Order[] collectedOrders = new Order[INITIAL_CAPACITY];
+    private long[] collectedSequenceNumbers = new long[INITIAL_CAPACITY];
+    private int collectedOrdersNumber = 0;
+
+    public void add(Order order) {
+        var side = order.getDirection() == Direction.BUY ? buySide : sellSide;
+        side.add(PriceUtils.toTicks(order.getPrice()), nextSequenceNumber++, order);
+    }
+
+    /**
+     * Удаляет из книги ордера с ценой от fromPrice до toPrice включительно (в тиках) и добавляет их в orders в порядке
+     * выставления.
+     */
+    public void collect(long fromPrice, long toPrice, List<Order> orders) {
+        if (fromPrice > toPrice) return;
+
+        buySide.collect(fromPrice, toPrice);
+        sellSide.collect(fromPrice, toPrice);
+
+        // сортировка вставками: одновременно исполняется не больше нескольких ордеров
+        for (int i = 1; i < collectedOrdersNumber; i++) {
+            var order = collectedOrders[i];
+            var sequenceNumber = collectedSequenceNumbers[i];
+            var j = i - 1;
+            while (j >= 0 && collectedSequenceNumbers[j] > sequenceNumber) {
+                collectedOrders[j + 1] = collectedOrders[j];
+                collectedSequenceNumbers[j + 1] = collectedSequenceNumbers[j];
+                j--;
+            }
+            collectedOrders[j + 1] = order;
+            collectedSequenceNumbers[j + 1] = sequenceNumber;
+        }
+        for (int i = 0; i < collectedOrdersNumber; i++) {
+            orders.add(collectedOrders[i]);
+            collectedOrders[i] = null;
+        }
+        collectedOrdersNumber = 0;
+    }
+
+    /**
+     * Удаляет из книги все ордера по инструменту.
+     */
+    public void remove(String figi) {
+        buySide.remove(figi);
+        sellSide.remove(figi);
+    }
+
+    public int size() {
+        return buySide.size + sellSide.size;
+    }
+
+    private void addCollectedOrder(Order order, long sequenceNumber) {
+        if (collectedOrdersNumber == collectedOrders.length) {
+            collectedOrders = Arrays.copyOf(collectedOrders, collectedOrdersNumber * 2);
+            collectedSequenceNumbers = Arrays.copyOf(collectedSequenceNumbers, collectedOrdersNumber * 2);
+        }
+        collectedOrders[collectedOrdersNumber] = order;
+        collectedSequenceNumbers[collectedOrdersNumber] = sequenceNumber;
+        collectedOrdersNumber++;
+    }
+
+    /**
+     * Ордера одного направления, упорядоченные по цене, а при равной цене – по порядку выставления.
+     */
+    private class Side {
+
+        private long[] prices = new long[INITIAL_CAPACITY];
+        private long[] sequenceNumbers = new long[INITIAL_CAPACITY];
+        private Order[] orders = new Order[INITIAL_CAPACITY];
+        private int size = 0;
+
+        private void add(long price, long sequenceNumber, Order order) {
+            if (size == prices.length) {
+                prices = Arrays.copyOf(prices, size * 2);
+                sequenceNumbers = Arrays.copyOf(sequenceNumbers, size * 2);
+                orders = Arrays.copyOf(orders, size * 2);
+            }
+            var index = upperBound(price);
+            System.arraycopy(prices, index, prices, index + 1, size - index);
+            System.arraycopy(sequenceNumbers, index, sequenceNumbers, index + 1, size - index);
+            System.arraycopy(orders, index, orders, index + 1, size - index);
+            prices[index] = price;
+            sequenceNumbers[index] = sequenceNumber;
+            orders[index] = order;
+            size++;
+        }
+
+        private void collect(long fromPrice, long toPrice) {
+            var fromIndex = lowerBound(fromPrice);
+            var toIndex = upperBound(toPrice);
+            if (fromIndex >= toIndex) return;
+
+            for (int i = fromIndex; i < toIndex; i++) {
+                addCollectedOrder(orders[i], sequenceNumbers[i]);
+            }
+            var removedNumber = toIndex - fromIndex;
+            System.arraycopy(prices, toIndex, prices, fromIndex, size - toIndex);
+            System.arraycopy(sequenceNumbers, toIndex, sequenceNumbers, fromIndex, size - toIndex);
+            System.arraycopy(orders, toIndex, orders, fromIndex, size - toIndex);
+            Arrays.fill(orders, size - removedNumber, size, null);
+            size -= removedNumber;
+        }
+
+        private void remove(String figi) {
+            var remainingNumber = 0;
+            for (int i = 0; i < size; i++) {
+                if (figi.equals(orders[i].getFigi())) continue;
+                prices[remainingNumber] = prices[i];
+                sequenceNumbers[remainingNumber] = sequenceNumbers[i];
+                orders[remainingNumber] = orders[i];
+                remainingNumber++;
+            }
+            Arrays.fill(orders, remainingNumber, size, null);
+            size = remainingNumber;
+        }
+
+        /**
+         * Индекс первого ордера с ценой не меньше price.
+         */
+        private int lowerBound(long price) {
+            var low = 0;
+            var high = size;
+            while (low < high) {
+                var middle = (low + high) >>> 1;
+                if (prices[middle] < price) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Индекс первого ордера с ценой больше price.
+         */
+        private int upperBound(long price) {
+            var low = 0;
+            var high = size;
+            while (low < high) {
+                var middle = (low + high) >>> 1;
+                if (prices[middle] <= price) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+    }
+
+}
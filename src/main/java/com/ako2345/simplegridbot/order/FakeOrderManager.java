@@ -4,8 +4,11 @@ import com.ako2345.simplegridbot.bot.grid.Grid;
 import com.ako2345.simplegridbot.model.Direction;
 import com.ako2345.simplegridbot.model.Order;
 import com.ako2345.simplegridbot.model.OrderStatus;
+import com.ako2345.simplegridbot.model.OrdersCancellation;
+import com.ako2345.simplegridbot.util.PriceUtils;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,7 +17,7 @@ import java.util.List;
  */
 public class FakeOrderManager implements OrderManager {
 
-    private final List<Order> fakeOrders = new ArrayList<>();
+    private final FakeOrderBook fakeOrderBook = new FakeOrderBook();
     private BigDecimal simulatedPrice;
 
     @Override
@@ -35,7 +38,7 @@ public class FakeOrderManager implements OrderManager {
     public Order makeBuyLimitOrder(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
         var baseCurrencyAmount = price.multiply(lotSize).multiply(BigDecimal.valueOf(lotsNumber));
         var order = new Order("", figi, price, Direction.BUY, lotsNumber, baseCurrencyAmount, OrderStatus.FILL);
-        fakeOrders.add(order);
+        fakeOrderBook.add(order);
         return order;
     }
 
@@ -43,7 +46,7 @@ public class FakeOrderManager implements OrderManager {
     public Order makeSellLimitOrder(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
         var baseCurrencyAmount = price.multiply(lotSize).multiply(BigDecimal.valueOf(lotsNumber));
         var order = new Order("", figi, price, Direction.SELL, lotsNumber, baseCurrencyAmount, OrderStatus.FILL);
-        fakeOrders.add(order);
+        fakeOrderBook.add(order);
         return order;
     }
 
@@ -55,23 +58,47 @@ public class FakeOrderManager implements OrderManager {
         var currentPriceRangeIndex = grid.getPriceRangeIndex(currentPrice);
         var previousPriceRangeIndex = grid.getPriceRangeIndex(previousPrice);
         if (currentPriceRangeIndex != previousPriceRangeIndex) {
-            for (Order fakeOrder : fakeOrders) {
-                var price = fakeOrder.getPrice();
-                if (price.compareTo(previousPrice) < 0 && price.compareTo(currentPrice) >= 0) {
-                    ordersToExecute.add(fakeOrder);
-                } else if (price.compareTo(previousPrice) > 0 && price.compareTo(currentPrice) <= 0) {
-                    ordersToExecute.add(fakeOrder);
-                }
-            }
-            for (Order orderToExecute : ordersToExecute) {
-                fakeOrders.remove(orderToExecute);
+            if (currentPrice.compareTo(previousPrice) < 0) {
+                // цены ордеров из [currentPrice, previousPrice)
+                var fromPrice = PriceUtils.toTicks(currentPrice, RoundingMode.CEILING);
+                var toPrice = PriceUtils.toTicks(previousPrice, RoundingMode.CEILING) - 1;
+                fakeOrderBook.collect(fromPrice, toPrice, ordersToExecute);
+            } else {
+                // цены ордеров из (previousPrice, currentPrice]
+                var fromPrice = PriceUtils.toTicks(previousPrice, RoundingMode.FLOOR) + 1;
+                var toPrice = PriceUtils.toTicks(currentPrice, RoundingMode.FLOOR);
+                fakeOrderBook.collect(fromPrice, toPrice, ordersToExecute);
             }
         }
         return ordersToExecute;
     }
 
+    /**
+     * Аналог {@link #getOrdersToExecute(BigDecimal, BigDecimal, Grid)} для цен в тиках (см. {@link PriceUtils}).
+     * Проверку смены ценового диапазона выполняет вызывающая сторона. Исполненные ордера добавляются в
+     * ordersToExecute, новые объекты при этом не создаются.
+     **/
+    public void collectOrdersToExecute(long currentPrice, long previousPrice, List<Order> ordersToExecute) {
+        if (currentPrice < previousPrice) {
+            fakeOrderBook.collect(currentPrice, previousPrice - 1, ordersToExecute);
+        } else {
+            fakeOrderBook.collect(previousPrice + 1, currentPrice, ordersToExecute);
+        }
+    }
+
+    /**
+     * Возвращает ордера, выставленные по цене price (в тиках), удаляя их из книги ордеров. Ордера добавляются в
+     * ordersToExecute.
+     **/
+    public void collectOrdersAt(long price, List<Order> ordersToExecute) {
+        fakeOrderBook.collect(price, price, ordersToExecute);
+    }
+
     @Override
-    public void cancelOrders(String figi) {
+    public OrdersCancellation cancelOrders(String figi) {
+        var ordersNumber = fakeOrderBook.size();
+        fakeOrderBook.remove(figi);
+        return new OrdersCancellation(ordersNumber - fakeOrderBook.size(), List.of());
     }
 
     public void setSimulatedPrice(BigDecimal simulatedPrice) {
@@ -1,6 +1,7 @@
 package com.ako2345.simplegridbot.order;
 
 import com.ako2345.simplegridbot.model.Order;
+import com.ako2345.simplegridbot.model.OrdersCancellation;
 
 import java.math.BigDecimal;
 
@@ -14,6 +15,6 @@ public interface OrderManager {
 
     Order makeSellLimitOrder(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price);
 
-    void cancelOrders(String figi);
+    OrdersCancellation cancelOrders(String figi);
 
 }
\ No newline at end of file
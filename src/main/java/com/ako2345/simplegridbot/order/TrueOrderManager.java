@@ -1,47 +1,184 @@
 package com.ako2345.simplegridbot.order;
 
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.cache.BotOrdersCache;
 import com.ako2345.simplegridbot.model.Order;
+import com.ako2345.simplegridbot.model.OrdersCancellation;
 import com.ako2345.simplegridbot.service.OrderService;
+import com.ako2345.simplegridbot.service.OrdersStreamServiceListener;
+import com.ako2345.simplegridbot.util.TokenBucket;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import ru.tinkoff.piapi.contract.v1.OrderDirection;
 import ru.tinkoff.piapi.contract.v1.OrderType;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
+/**
+ * Выставление ордеров бота. Лимитные ордера добавляются в {@link BotOrdersCache} с получателем owner, поэтому
+ * исполнение ордера передаётся только этому получателю, а при остановке бота отменяются только его ордера.
+ *
+ * <p>Асинхронные лимитные ордера выставляются в пуле orderExecutor: количество одновременных запросов ограничено
+ * размером пула. Все запросы выставления ордеров проходят через ordersRateLimit. Пул и ограничение частоты общие для
+ * всех ботов счёта. Результаты передаются боту через callbackExecutor – цикл событий бота, поэтому поток бота не ждёт
+ * ответов. Ордер, выставленный после {@link #cancelOrders(String)}, сразу отменяется.
+ */
 @Slf4j
 @RequiredArgsConstructor
-public class TrueOrderManager implements OrderManager {
+public class TrueOrderManager implements AsyncOrderManager {
 
     private final OrderService orderService;
+    private final BotOrdersCache botOrdersCache;
+    private final OrdersStreamServiceListener owner;
+    private final Executor callbackExecutor;
+    private final Executor orderExecutor;
+    private final TokenBucket ordersRateLimit;
+    private boolean isClosed = false;
+    // ордера, удалённые из кэша, отмена которых ещё не подтверждена
+    private final Set<String> unconfirmedOrderIds = new HashSet<>();
 
     @Override
     public Order makeBuyMarketOrder(String figi, int lotsNumber, BigDecimal lotSize) {
-        return orderService.makeOrder(UUID.randomUUID().toString(), figi, OrderDirection.ORDER_DIRECTION_BUY, lotsNumber, OrderType.ORDER_TYPE_MARKET, null);
+        return makeOrder(figi, OrderDirection.ORDER_DIRECTION_BUY, lotsNumber, OrderType.ORDER_TYPE_MARKET, null);
     }
 
     @Override
     public Order makeSellMarketOrder(String figi, int lotsNumber, BigDecimal lotSize) {
-        return orderService.makeOrder(UUID.randomUUID().toString(), figi, OrderDirection.ORDER_DIRECTION_SELL, lotsNumber, OrderType.ORDER_TYPE_MARKET, null);
+        return makeOrder(figi, OrderDirection.ORDER_DIRECTION_SELL, lotsNumber, OrderType.ORDER_TYPE_MARKET, null);
     }
 
     @Override
     public Order makeBuyLimitOrder(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
-        return orderService.makeOrder(UUID.randomUUID().toString(), figi, OrderDirection.ORDER_DIRECTION_BUY, lotsNumber, OrderType.ORDER_TYPE_LIMIT, price);
+        var order = makeOrder(figi, OrderDirection.ORDER_DIRECTION_BUY, lotsNumber, OrderType.ORDER_TYPE_LIMIT, price);
+        addBotOrder(figi, order, price, lotsNumber);
+        return order;
     }
 
     @Override
     public Order makeSellLimitOrder(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
-        return orderService.makeOrder(UUID.randomUUID().toString(), figi, OrderDirection.ORDER_DIRECTION_SELL, lotsNumber, OrderType.ORDER_TYPE_LIMIT, price);
+        var order = makeOrder(figi, OrderDirection.ORDER_DIRECTION_SELL, lotsNumber, OrderType.ORDER_TYPE_LIMIT, price);
+        addBotOrder(figi, order, price, lotsNumber);
+        return order;
     }
 
     @Override
-    public void cancelOrders(String figi) {
-        var orders = orderService.getOrders(figi);
-        orders.stream()
-                .map(Order::getOrderId)
-                .forEach(orderService::cancelOrder);
+    public CompletableFuture<Order> makeBuyLimitOrderAsync(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
+        return makeLimitOrderAsync(figi, OrderDirection.ORDER_DIRECTION_BUY, lotsNumber, price);
+    }
+
+    @Override
+    public CompletableFuture<Order> makeSellLimitOrderAsync(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
+        return makeLimitOrderAsync(figi, OrderDirection.ORDER_DIRECTION_SELL, lotsNumber, price);
+    }
+
+    private CompletableFuture<Order> makeLimitOrderAsync(String figi, OrderDirection orderDirection, int lotsNumber, BigDecimal price) {
+        var future = new CompletableFuture<Order>();
+        orderExecutor.execute(() -> {
+            Order order;
+            try {
+                order = makeOrder(figi, orderDirection, lotsNumber, OrderType.ORDER_TYPE_LIMIT, price);
+            } catch (RuntimeException exception) {
+                callbackExecutor.execute(() -> future.completeExceptionally(exception));
+                return;
+            }
+            synchronized (this) {
+                if (!isClosed) {
+                    // результат передаётся боту раньше, чем исполнение: исполнение передаётся после добавления в кэш
+                    callbackExecutor.execute(() -> future.complete(order));
+                    addBotOrder(figi, order, price, lotsNumber);
+                    return;
+                }
+            }
+            log.warn("Limit order {} made after the orders were cancelled. Cancelling...", order.getOrderId());
+            try {
+                orderService.cancelOrder(order.getOrderId());
+            } catch (RuntimeException exception) {
+                log.error("Order {} was not cancelled: {}", order.getOrderId(), exception.toString());
+            }
+            callbackExecutor.execute(() -> future.cancel(false));
+        });
+        return future;
+    }
+
+    private void addBotOrder(String figi, Order order, BigDecimal price, int lotsNumber) {
+        botOrdersCache.add(order.getOrderId(), owner, figi, order.getDirection(), price, lotsNumber);
+    }
+
+    /**
+     * @throws RuntimeException Поток прерван во время ожидания ограничения частоты запросов; флаг прерывания
+     *                          восстанавливается, ордер не выставляется.
+     */
+    private Order makeOrder(String figi, OrderDirection orderDirection, int lotsNumber, OrderType orderType, BigDecimal price) {
+        try {
+            ordersRateLimit.acquire();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Order request interrupted", exception);
+        }
+        return orderService.makeOrder(UUID.randomUUID().toString(), figi, orderDirection, lotsNumber, orderType, price);
+    }
+
+    /**
+     * Отменяет ордера бота асинхронными запросами, не больше {@link Constants#ORDERS_CANCEL_MAX_IN_FLIGHT} одновременно,
+     * поэтому отмена всех ордеров бота обычно занимает время одного запроса. Отмена не проходит через пул и
+     * ограничение частоты выставления ордеров, поэтому не ждёт выставления ордеров других ботов. После отмены одним
+     * запросом ордеров проверяется, какие ордера бота остались активными: они возвращаются в
+     * {@link OrdersCancellation#getFailedOrderIds()}. Ошибка отмены ордера, который уже неактивен (исполнен или отменён
+     * ранее), не считается неудачей.
+     */
+    @Override
+    public OrdersCancellation cancelOrders(String figi) {
+        // ордера удаляются из кэша до отмены: иначе отменённый ордер может быть принят за исполненный (в "песочнице"
+        // исчезновение ордера из списка активных считается исполнением). При повторном вызове (предыдущая остановка
+        // бота не удалась) снова отменяются ордера, отмена которых не подтверждена
+        Set<String> orderIds;
+        synchronized (this) {
+            isClosed = true;
+            unconfirmedOrderIds.addAll(botOrdersCache.removeListener(owner));
+            orderIds = new HashSet<>(unconfirmedOrderIds);
+        }
+        var orderIdsList = new ArrayList<>(orderIds);
+        var cancelledNumber = 0;
+        for (int from = 0; from < orderIdsList.size(); from += Constants.ORDERS_CANCEL_MAX_IN_FLIGHT) {
+            var to = Math.min(from + Constants.ORDERS_CANCEL_MAX_IN_FLIGHT, orderIdsList.size());
+            var cancellations = new ArrayList<CompletableFuture<Instant>>(to - from);
+            for (int i = from; i < to; i++) {
+                cancellations.add(cancelOrderAsync(orderIdsList.get(i)));
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    cancellations.get(i - from).join();
+                    cancelledNumber++;
+                } catch (CompletionException exception) {
+                    log.warn("Order {} was not cancelled: {}", orderIdsList.get(i), exception.getCause().toString());
+                }
+            }
+        }
+        var failedOrderIds = new ArrayList<String>();
+        for (Order order : orderService.getOrders(figi)) {
+            if (orderIds.contains(order.getOrderId())) failedOrderIds.add(order.getOrderId());
+        }
+        synchronized (this) {
+            unconfirmedOrderIds.retainAll(failedOrderIds);
+        }
+        return new OrdersCancellation(cancelledNumber, failedOrderIds);
+    }
+
+    private CompletableFuture<Instant> cancelOrderAsync(String orderId) {
+        try {
+            return orderService.cancelOrderAsync(orderId);
+        } catch (RuntimeException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
     }
 
 }
\ No newline at end of file
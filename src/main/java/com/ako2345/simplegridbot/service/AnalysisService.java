@@ -1,12 +1,24 @@
 package com.ako2345.simplegridbot.service;
 
 import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.analysis.ConfigEvaluator;
+import com.ako2345.simplegridbot.analysis.SearchSpace;
+import com.ako2345.simplegridbot.analysis.SearchStrategy;
+import com.ako2345.simplegridbot.analysis.TopResults;
 import com.ako2345.simplegridbot.bot.GridBot;
 import com.ako2345.simplegridbot.cache.InstrumentsCache;
+import com.ako2345.simplegridbot.cache.PricePathCache;
+import com.ako2345.simplegridbot.cache.SimulationResultCache;
 import com.ako2345.simplegridbot.controller.config.AnalysisConfig;
 import com.ako2345.simplegridbot.controller.config.GridBotConfig;
-import com.ako2345.simplegridbot.model.CachedCandle;
+import com.ako2345.simplegridbot.job.JobProgressListener;
+import com.ako2345.simplegridbot.model.AnalysisResult;
+import com.ako2345.simplegridbot.model.CandleSeries;
+import com.ako2345.simplegridbot.model.ConfigResult;
 import com.ako2345.simplegridbot.order.FakeOrderManager;
+import com.ako2345.simplegridbot.simulation.PricePath;
+import com.ako2345.simplegridbot.simulation.SimulationMode;
+import com.ako2345.simplegridbot.util.PriceUtils;
 import com.ako2345.simplegridbot.util.TextUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,56 +27,76 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.OffsetDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class AnalysisService {
 
-    private final InfoService infoService;
+    private static final int RESULTS_NUMBER = 5;
+
+    private final CandleHistoryService candleHistoryService;
     private final BacktestService backtestService;
     private final InstrumentsCache instrumentsCache;
+    private final ConfigService configService;
+    private final PricePathCache pricePathCache;
+    private final SimulationResultCache simulationResultCache;
 
-    public void analyze(AnalysisConfig config) {
+    public AnalysisResult analyze(AnalysisConfig config, JobProgressListener listener) {
         log.info("Starting analysis for {} days. FIGI: {}", config.days, config.figi);
 
         // Загрузка данных об изменении цены
         var endTime = OffsetDateTime.now().toInstant();
         var lotSize = instrumentsCache.getLotSize(config.figi);
-        Set<CachedCandle> candles = new TreeSet<>(Comparator.comparingLong(candle -> candle.getTimestamp().getSeconds()));
-        for (int i = 0; i < config.days; i++) {
-            var candlesForADay = infoService.getCandles(
-                    config.figi,
-                    endTime.minus(1, ChronoUnit.DAYS),
-                    endTime,
-                    Constants.DEFAULT_CANDLE_INTERVAL
-            );
-            candles.addAll(candlesForADay);
-            endTime = endTime.minus(1, ChronoUnit.DAYS);
-        }
+        var minPriceIncrement = instrumentsCache.getMinPriceIncrement(config.figi);
+        var candles = candleHistoryService.getCandleSeries(config.figi, endTime, config.days, Constants.DEFAULT_CANDLE_INTERVAL, listener);
         log.info("Candles received (FIGI: {}, candleInterval: {}, size: {})", config.figi, Constants.DEFAULT_CANDLE_INTERVAL, candles.size());
 
         // Анализ данных
-        var initialPrice = candles.stream().findFirst().get().getOpen();
-        var finalPrice = candles.stream().reduce((prev, next) -> next).get().getClose();
-        var minPrice = candles.stream().min(Comparator.comparing(CachedCandle::getLow)).get().getLow().floatValue();
-        var maxPrice = candles.stream().max(Comparator.comparing(CachedCandle::getHigh)).get().getHigh().floatValue();
-        var fakeOrderManager = new FakeOrderManager();
-
-        var simulationResults = new HashMap<GridBotConfig, BigDecimal>();
-        for (float lowerPrice = minPrice; lowerPrice < minPrice + (maxPrice - minPrice) / 2; lowerPrice += (maxPrice - minPrice) / 16) {
-            for (float upperPrice = maxPrice - (maxPrice - minPrice) / 2; upperPrice <= maxPrice; upperPrice += (maxPrice - minPrice) / 16) {
-                for (int gridsNumber = 2; gridsNumber < 50; gridsNumber++) {
-                    var gridBotConfig = new GridBotConfig(config.figi, lowerPrice, upperPrice, gridsNumber, 10000000);
-                    fakeOrderManager.setSimulatedPrice(initialPrice);
-                    var gridBot = new GridBot(gridBotConfig, fakeOrderManager, lotSize, initialPrice);
-                    var gridBotStatistics = backtestService.simulatePriceChanging(gridBot, fakeOrderManager, initialPrice, candles);
-                    simulationResults.put(gridBotConfig, gridBotStatistics.getTotalProfitPercentage());
-                }
-            }
-        }
+        var pricePath = pricePathCache.getPricePath(config.figi, Constants.DEFAULT_CANDLE_INTERVAL, candles);
+        return analyze(config, candles, pricePath, lotSize, minPriceIncrement, configService.getAnalysisParallelism(), listener);
+    }
+
+    /**
+     * Поиск оптимальных параметров бота на загруженных свечах.
+     *
+     * @param pricePath         Путь цены, подготовленный по candles.
+     * @param minPriceIncrement Минимальный шаг цены инструмента.
+     * @param parallelism       Количество потоков для симуляций (1 – симуляции выполняются в вызывающем потоке).
+     */
+    public AnalysisResult analyze(
+            AnalysisConfig config,
+            CandleSeries candles,
+            PricePath pricePath,
+            BigDecimal lotSize,
+            BigDecimal minPriceIncrement,
+            int parallelism,
+            JobProgressListener listener
+    ) {
+        var initialPrice = PriceUtils.fromTicks(candles.getOpen(0));
+        var finalPrice = PriceUtils.fromTicks(candles.getClose(candles.size() - 1));
+        var minPrice = PriceUtils.fromTicks(candles.getLowest()).floatValue();
+        var maxPrice = PriceUtils.fromTicks(candles.getHighest()).floatValue();
+        var simulationMode = config.simulationMode != null ? config.simulationMode : Constants.DEFAULT_SIMULATION_MODE;
+
+        var searchMode = config.searchMode != null ? config.searchMode : Constants.DEFAULT_SEARCH_MODE;
+
+        var searchSpace = new SearchSpace(config.figi, minPrice, maxPrice, 10000000);
+        var configEvaluator = new SimulationEvaluator(candles, pricePath, lotSize, minPriceIncrement, initialPrice, simulationMode, parallelism, listener);
+        var bestResults = SearchStrategy.of(searchMode).search(searchSpace, configEvaluator, RESULTS_NUMBER);
+        log.info(
+                "Search ({}) complete. Simulations: {} (cached: {}), equivalent full-history simulations: {}",
+                searchMode,
+                configEvaluator.simulationsNumber,
+                configEvaluator.simulationsNumber - configEvaluator.cacheMissesNumber.sum(),
+                configEvaluator.simulatedCandlesNumber / candles.size()
+        );
         log.info(
                 "Analysis for FIGI {} complete. Initial price: {}, final price: {}. Min price: {}, max price: {}. Best results:",
                 config.figi,
@@ -73,18 +105,192 @@ public class AnalysisService {
                 minPrice,
                 maxPrice
         );
-        simulationResults
-                .entrySet()
-                .stream()
-                .sorted(Collections.reverseOrder(Map.Entry.comparingByValue()))
-                .limit(5)
-                .forEach(entry -> log.info(
+        bestResults.forEach(entry -> log.info(
                         "Total profit: {} (lower price: {}, upper price: {}, grids number: {})",
                         TextUtils.formatProfitPercentage(entry.getValue()),
                         entry.getKey().lowerPrice,
                         entry.getKey().upperPrice,
                         entry.getKey().gridsNumber
                 ));
+        return new AnalysisResult(
+                config.figi,
+                config.days,
+                simulationMode,
+                searchMode,
+                initialPrice,
+                finalPrice,
+                minPrice,
+                maxPrice,
+                configEvaluator.simulationsNumber,
+                toConfigResults(bestResults)
+        );
+    }
+
+    private static List<ConfigResult> toConfigResults(List<Map.Entry<GridBotConfig, BigDecimal>> results) {
+        var configResults = new ArrayList<ConfigResult>(results.size());
+        for (Map.Entry<GridBotConfig, BigDecimal> entry : results) {
+            configResults.add(new ConfigResult(entry.getKey(), entry.getValue()));
+        }
+        return configResults;
+    }
+
+    /**
+     * Параллельная симуляция работы ботов с разными конфигурациями. Каждая симуляция использует собственные
+     * {@link FakeOrderManager} и {@link GridBot}, путь цены подготовлен один раз и используется всеми симуляциями
+     * только для чтения.
+     *
+     * @param completedSimulationsNumber Количество симуляций, выполненных ранее в этом анализе, для передачи прогресса
+     *                                   в listener.
+     * @param resultConsumer             Получает доходность каждой конфигурации сразу после её симуляции.
+     * @param cacheMissesNumber          Увеличивается на каждую симуляцию, результата которой нет в кэше.
+     * @return Общая доходность в порядке конфигураций в gridBotConfigs, поэтому результаты не зависят от количества
+     * потоков.
+     */
+    private List<BigDecimal> simulate(
+            List<GridBotConfig> gridBotConfigs,
+            BigDecimal lotSize,
+            BigDecimal minPriceIncrement,
+            BigDecimal initialPrice,
+            PricePath pricePath,
+            SimulationMode simulationMode,
+            int parallelism,
+            JobProgressListener listener,
+            long completedSimulationsNumber,
+            BiConsumer<GridBotConfig, BigDecimal> resultConsumer,
+            LongAdder cacheMissesNumber
+    ) {
+        log.info("Simulating {} grid bot configs using {} threads...", gridBotConfigs.size(), parallelism);
+        var submittedSimulationsNumber = completedSimulationsNumber + gridBotConfigs.size();
+        if (parallelism == 1) {
+            var profits = new ArrayList<BigDecimal>(gridBotConfigs.size());
+            for (GridBotConfig gridBotConfig : gridBotConfigs) {
+                var profit = simulate(gridBotConfig, lotSize, minPriceIncrement, initialPrice, pricePath, simulationMode, cacheMissesNumber);
+                profits.add(profit);
+                listener.onProgress("simulation", completedSimulationsNumber + profits.size(), submittedSimulationsNumber);
+                resultConsumer.accept(gridBotConfig, profit);
+            }
+            return profits;
+        }
+        var executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            var futures = new ArrayList<Future<BigDecimal>>(gridBotConfigs.size());
+            for (GridBotConfig gridBotConfig : gridBotConfigs) {
+                futures.add(executor.submit(() -> simulate(gridBotConfig, lotSize, minPriceIncrement, initialPrice, pricePath, simulationMode, cacheMissesNumber)));
+            }
+            var profits = new ArrayList<BigDecimal>(gridBotConfigs.size());
+            for (int i = 0; i < futures.size(); i++) {
+                var profit = futures.get(i).get();
+                profits.add(profit);
+                listener.onProgress("simulation", completedSimulationsNumber + profits.size(), submittedSimulationsNumber);
+                resultConsumer.accept(gridBotConfigs.get(i), profit);
+            }
+            return profits;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Analysis interrupted", exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException) throw (RuntimeException) exception.getCause();
+            throw new RuntimeException(exception.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Симуляция конфигурации. Результат берётся из {@link SimulationResultCache}, если та же конфигурация уже
+     * симулировалась на пути с теми же ценами.
+     */
+    private BigDecimal simulate(
+            GridBotConfig gridBotConfig,
+            BigDecimal lotSize,
+            BigDecimal minPriceIncrement,
+            BigDecimal initialPrice,
+            PricePath pricePath,
+            SimulationMode simulationMode,
+            LongAdder cacheMissesNumber
+    ) {
+        var gridBotStatistics = simulationResultCache.getStatistics(gridBotConfig, lotSize, minPriceIncrement, initialPrice, pricePath, simulationMode, () -> {
+            cacheMissesNumber.increment();
+            var fakeOrderManager = new FakeOrderManager();
+            fakeOrderManager.setSimulatedPrice(initialPrice);
+            var gridBot = new GridBot(gridBotConfig, fakeOrderManager, lotSize, minPriceIncrement, initialPrice);
+            return backtestService.simulatePriceChanging(gridBot, fakeOrderManager, initialPrice, pricePath, simulationMode);
+        });
+        return gridBotStatistics.getTotalProfitPercentage();
+    }
+
+    /**
+     * Оценка конфигураций параллельной симуляцией. Пути цены для начальных частей свечей подготавливаются по одному
+     * разу. Лучшие из конфигураций, оценённых на всех свечах, передаются в listener как промежуточный результат по мере
+     * симуляции конфигураций, не чаще раза в {@link Constants#JOB_PROGRESS_INTERVAL_MS} мс, и по окончании оценки.
+     */
+    private class SimulationEvaluator implements ConfigEvaluator {
+
+        private final CandleSeries candles;
+        private final BigDecimal lotSize;
+        private final BigDecimal minPriceIncrement;
+        private final BigDecimal initialPrice;
+        private final SimulationMode simulationMode;
+        private final int parallelism;
+        private final JobProgressListener listener;
+        private final TopResults bestResults = new TopResults(RESULTS_NUMBER);
+        private final Map<Integer, PricePath> pricePaths = new HashMap<>();
+        // симуляции этого анализа, выполненные без кэша; счётчики кэша общие для всех анализов
+        private final LongAdder cacheMissesNumber = new LongAdder();
+        private long simulationsNumber = 0;
+        private long simulatedCandlesNumber = 0;
+        private long partialResultSentTime;
+        private boolean isPartialResultChanged = false;
+
+        private SimulationEvaluator(
+                CandleSeries candles,
+                PricePath pricePath,
+                BigDecimal lotSize,
+                BigDecimal minPriceIncrement,
+                BigDecimal initialPrice,
+                SimulationMode simulationMode,
+                int parallelism,
+                JobProgressListener listener
+        ) {
+            this.candles = candles;
+            this.lotSize = lotSize;
+            this.minPriceIncrement = minPriceIncrement;
+            this.initialPrice = initialPrice;
+            this.simulationMode = simulationMode;
+            this.parallelism = parallelism;
+            this.listener = listener;
+            pricePaths.put(candles.size(), pricePath);
+        }
+
+        @Override
+        public int getCandlesNumber() {
+            return candles.size();
+        }
+
+        @Override
+        public List<BigDecimal> evaluate(List<GridBotConfig> configs, int candlesNumber) {
+            var pricePath = pricePaths.computeIfAbsent(candlesNumber, k -> PricePath.of(candles.slice(0, candlesNumber)));
+            BiConsumer<GridBotConfig, BigDecimal> resultConsumer = candlesNumber == candles.size() ? this::addResult : (config, profit) -> {};
+            var profits = simulate(configs, lotSize, minPriceIncrement, initialPrice, pricePath, simulationMode, parallelism, listener, simulationsNumber, resultConsumer, cacheMissesNumber);
+            simulationsNumber += configs.size();
+            simulatedCandlesNumber += (long) configs.size() * candlesNumber;
+            if (isPartialResultChanged) sendPartialResult(System.currentTimeMillis());
+            return profits;
+        }
+
+        private void addResult(GridBotConfig config, BigDecimal profit) {
+            bestResults.add(config, profit);
+            isPartialResultChanged = true;
+            var now = System.currentTimeMillis();
+            if (now - partialResultSentTime >= Constants.JOB_PROGRESS_INTERVAL_MS) sendPartialResult(now);
+        }
+
+        private void sendPartialResult(long now) {
+            partialResultSentTime = now;
+            isPartialResultChanged = false;
+            listener.onPartialResult(toConfigResults(bestResults.getResults()));
+        }
+
     }
 
 }
\ No newline at end of file
@@ -5,118 +5,210 @@ import com.ako2345.simplegridbot.bot.GridBot;
 import com.ako2345.simplegridbot.bot.GridBotStatistics;
 import com.ako2345.simplegridbot.cache.InstrumentsCache;
 import com.ako2345.simplegridbot.controller.config.BacktestConfig;
-import com.ako2345.simplegridbot.model.CachedCandle;
+import com.ako2345.simplegridbot.job.JobProgressListener;
+import com.ako2345.simplegridbot.model.CandleSeries;
 import com.ako2345.simplegridbot.model.Order;
 import com.ako2345.simplegridbot.order.FakeOrderManager;
+import com.ako2345.simplegridbot.simulation.LevelCrossingSimulator;
+import com.ako2345.simplegridbot.simulation.PricePath;
+import com.ako2345.simplegridbot.simulation.SimulationMode;
+import com.ako2345.simplegridbot.simulation.TickReplaySimulator;
+import com.ako2345.simplegridbot.simulation.TickSimulator;
+import com.ako2345.simplegridbot.ticklog.TickLog;
+import com.ako2345.simplegridbot.ticklog.TickLogReader;
+import com.ako2345.simplegridbot.util.PriceUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.OffsetDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.Comparator;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class BacktestService {
 
-
-    private final InfoService infoService;
+    private final CandleHistoryService candleHistoryService;
     private final InstrumentsCache instrumentsCache;
-    private BigDecimal processedPrice;
+    private final ConfigService configService;
 
-    public void backtest(BacktestConfig config) {
+    public GridBotStatistics backtest(BacktestConfig config, JobProgressListener listener) {
+        if (config.tickLog != null) return replayTicks(config, listener);
         log.info("Starting backtest for {} days. Bot config: {}", config.days, config.gridBotConfig);
 
         // Загрузка данных об изменении цены
         var figi = config.gridBotConfig.figi;
         var endTime = OffsetDateTime.now().toInstant();
         var lotSize = instrumentsCache.getLotSize(figi);
-        Set<CachedCandle> candles = new TreeSet<>(Comparator.comparingLong(candle -> candle.getTimestamp().getSeconds()));
-        for (int i = 0; i < config.days; i++) {
-            var candlesForADay = infoService.getCandles(
-                    figi,
-                    endTime.minus(1, ChronoUnit.DAYS),
-                    endTime,
-                    Constants.DEFAULT_CANDLE_INTERVAL
-            );
-            candles.addAll(candlesForADay);
-            endTime = endTime.minus(1, ChronoUnit.DAYS);
-        }
+        var minPriceIncrement = instrumentsCache.getMinPriceIncrement(figi);
+        var candles = candleHistoryService.getCandleSeries(figi, endTime, config.days, Constants.DEFAULT_CANDLE_INTERVAL, listener);
         log.info("Candles received (FIGI: {}, candleInterval: {}, size: {})", figi, Constants.DEFAULT_CANDLE_INTERVAL, candles.size());
 
         // Проверка работы алгоритма
-        var initialPrice = candles.stream().findFirst().get().getOpen();
+        var initialPrice = PriceUtils.fromTicks(candles.getOpen(0));
         var fakeOrderManager = new FakeOrderManager();
         fakeOrderManager.setSimulatedPrice(initialPrice);
-        var gridBot = new GridBot(config.gridBotConfig, fakeOrderManager, lotSize, initialPrice);
+        var gridBot = new GridBot(config.gridBotConfig, fakeOrderManager, lotSize, minPriceIncrement, initialPrice);
 
-        var gridBotStatistics = simulatePriceChanging(gridBot, fakeOrderManager, initialPrice, candles);
+        var simulationMode = config.simulationMode != null ? config.simulationMode : Constants.DEFAULT_SIMULATION_MODE;
+        var gridBotStatistics = simulatePriceChanging(gridBot, fakeOrderManager, initialPrice, candles, simulationMode);
 
         log.info("Backtest complete. Statistics: {}", gridBotStatistics);
+        return gridBotStatistics;
+    }
+
+    /**
+     * Бэктест по записанным последним ценам инструмента (см. {@link TickLog}) вместо свечей. Цены обрабатываются с
+     * максимальной скоростью, количество дней не учитывается.
+     */
+    private GridBotStatistics replayTicks(BacktestConfig config, JobProgressListener listener) {
+        log.info("Starting tick replay backtest. Tick log: {}. Bot config: {}", config.tickLog, config.gridBotConfig);
+
+        var figi = config.gridBotConfig.figi;
+        var tickLogReader = new TickLogReader(resolveTickLog(configService.getTickLogDir(), config.tickLog));
+        var firstPrice = tickLogReader.getFirstPrice(figi);
+        if (firstPrice.isEmpty()) {
+            throw new IllegalArgumentException("There are no prices for FIGI " + figi + " in tick log " + config.tickLog);
+        }
+
+        var initialPrice = PriceUtils.fromTicks(firstPrice.getAsLong());
+        var fakeOrderManager = new FakeOrderManager();
+        fakeOrderManager.setSimulatedPrice(initialPrice);
+        var gridBot = new GridBot(
+                config.gridBotConfig,
+                fakeOrderManager,
+                instrumentsCache.getLotSize(figi),
+                instrumentsCache.getMinPriceIncrement(figi),
+                initialPrice
+        );
+
+        var startTime = System.nanoTime();
+        var tickReplaySimulator = new TickReplaySimulator(tickLogReader, figi);
+        var gridBotStatistics = tickReplaySimulator.simulate(gridBot, fakeOrderManager, initialPrice, listener);
+        log.info(
+                "Tick replay backtest complete in {} ms ({} prices, {} segments). Statistics: {}",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime),
+                tickReplaySimulator.getTicksNumber(),
+                tickLogReader.getSegments().size(),
+                gridBotStatistics
+        );
+        return gridBotStatistics;
+    }
+
+    /**
+     * Путь к журналу последних цен из запроса. Путь задаётся относительно каталога журнала
+     * ({@link ConfigService#getTickLogDir()}) и не может выходить за его пределы, поэтому через запрос нельзя прочитать
+     * произвольный файл.
+     *
+     * @throws IllegalArgumentException Каталог журнала не задан, путь абсолютный или содержит "..".
+     */
+    static Path resolveTickLog(String tickLogDir, String tickLog) {
+        if (tickLogDir == null) throw new IllegalArgumentException("Tick log directory is not configured");
+        var path = Paths.get(tickLog);
+        if (path.isAbsolute() || path.getRoot() != null) {
+            throw new IllegalArgumentException("Tick log path must be relative to the tick log directory: " + tickLog);
+        }
+        for (Path name : path) {
+            if (name.toString().equals("..")) throw new IllegalArgumentException("Tick log path must not contain '..': " + tickLog);
+        }
+        return Paths.get(tickLogDir).resolve(path).normalize();
     }
 
-    public GridBotStatistics simulatePriceChanging(GridBot gridBot, FakeOrderManager fakeOrderManager, BigDecimal initialPrice, Set<CachedCandle> candles) {
-        processedPrice = initialPrice;
-        for (CachedCandle candle : candles) {
+    public GridBotStatistics simulatePriceChanging(GridBot gridBot, FakeOrderManager fakeOrderManager, BigDecimal initialPrice, CandleSeries candles) {
+        return simulatePriceChanging(gridBot, fakeOrderManager, initialPrice, candles, Constants.DEFAULT_SIMULATION_MODE);
+    }
+
+    public GridBotStatistics simulatePriceChanging(GridBot gridBot, FakeOrderManager fakeOrderManager, BigDecimal initialPrice, CandleSeries candles, SimulationMode simulationMode) {
+        return simulatePriceChanging(gridBot, fakeOrderManager, initialPrice, PricePath.of(candles), simulationMode);
+    }
+
+    /**
+     * Симуляция по заранее подготовленному пути цены. Путь не изменяется и может использоваться несколькими симуляциями
+     * одновременно.
+     */
+    public GridBotStatistics simulatePriceChanging(GridBot gridBot, FakeOrderManager fakeOrderManager, BigDecimal initialPrice, PricePath pricePath, SimulationMode simulationMode) {
+        if (simulationMode != SimulationMode.REFERENCE) {
+            if (PricePath.isApplicable(initialPrice)) {
+                if (simulationMode == SimulationMode.LEVEL_CROSSING) {
+                    return new LevelCrossingSimulator(pricePath).simulate(gridBot, fakeOrderManager, initialPrice);
+                }
+                return new TickSimulator(pricePath).simulate(gridBot, fakeOrderManager, initialPrice);
+            }
+            log.warn("Prices can not be converted to ticks without loss of precision. Using reference simulation");
+        }
+
+        // эталонная реализация на BigDecimal
+        var processedPrice = initialPrice;
+        var prices = pricePath.getPrices();
+        for (int i = 0; i < prices.length; i += PricePath.PRICES_PER_CANDLE) {
+            var open = PriceUtils.fromTicks(prices[i]);
+            var low = PriceUtils.fromTicks(prices[i + 1]);
+            var high = PriceUtils.fromTicks(prices[i + 2]);
+            var close = PriceUtils.fromTicks(prices[i + 3]);
+
             // имитация изменения цены
-            BigDecimal price = candle.getOpen();
-            processPrice(gridBot, fakeOrderManager, price);
+            BigDecimal price = open;
+            processedPrice = processPrice(gridBot, fakeOrderManager, price, processedPrice);
             while (true) {
                 price = price.subtract(Constants.BACKTEST_PRICE_STEP);
-                if (price.compareTo(candle.getLow()) < 0) break;
-                processPrice(gridBot, fakeOrderManager, price);
+                if (price.compareTo(low) < 0) break;
+                processedPrice = processPrice(gridBot, fakeOrderManager, price, processedPrice);
             }
 
-            price = candle.getLow();
-            processPrice(gridBot, fakeOrderManager, price);
+            price = low;
+            processedPrice = processPrice(gridBot, fakeOrderManager, price, processedPrice);
             while (true) {
                 price = price.add(Constants.BACKTEST_PRICE_STEP);
-                if (price.compareTo(candle.getHigh()) > 0) break;
-                processPrice(gridBot, fakeOrderManager, price);
+                if (price.compareTo(high) > 0) break;
+                processedPrice = processPrice(gridBot, fakeOrderManager, price, processedPrice);
             }
 
-            price = candle.getHigh();
-            processPrice(gridBot, fakeOrderManager, price);
+            price = high;
+            processedPrice = processPrice(gridBot, fakeOrderManager, price, processedPrice);
             while (true) {
                 price = price.subtract(Constants.BACKTEST_PRICE_STEP);
-                if (price.compareTo(candle.getClose()) < 0) break;
-                processPrice(gridBot, fakeOrderManager, price);
+                if (price.compareTo(close) < 0) break;
+                processedPrice = processPrice(gridBot, fakeOrderManager, price, processedPrice);
             }
 
-            price = candle.getClose();
-            processPrice(gridBot, fakeOrderManager, price);
+            price = close;
+            processedPrice = processPrice(gridBot, fakeOrderManager, price, processedPrice);
         }
 
-        var finalPrice = candles.stream().reduce((prev, next) -> next).get().getClose();
-        return gridBot.getStatistics(finalPrice);
+        return gridBot.getStatistics(pricePath.getFinalPrice());
     }
 
-    private void processPrice(GridBot gridBot, FakeOrderManager fakeOrderManager, BigDecimal price) {
+    /**
+     * Исполняет ордера, цену которых пересекло изменение цены от processedPrice до price. Возвращает новую обработанную
+     * цену.
+     */
+    private BigDecimal processPrice(GridBot gridBot, FakeOrderManager fakeOrderManager, BigDecimal price, BigDecimal processedPrice) {
         fakeOrderManager.setSimulatedPrice(price);
         var ordersToExecute = fakeOrderManager.getOrdersToExecute(price, processedPrice, gridBot.getGridManager().getGrid());
         if (!ordersToExecute.isEmpty()) {
             for (Order orderToExecute : ordersToExecute) {
                 var figi = orderToExecute.getFigi();
                 var orderPrice = orderToExecute.getPrice();
-                var lotSize = instrumentsCache.getLotSize(figi);
+                var lotSize = gridBot.getLotSize();
                 var lotsNumber = orderToExecute.getLotsNumber();
                 var direction = orderToExecute.getDirection();
                 var baseCurrencyAmount = price.multiply(lotSize).multiply(BigDecimal.valueOf(lotsNumber));
                 gridBot.processOrder(
+                        orderToExecute.getOrderId(),
                         figi,
                         direction,
                         orderPrice,
                         baseCurrencyAmount,
-                        lotsNumber
+                        lotsNumber,
+                        null
                 );
             }
         }
-        processedPrice = price;
+        return price;
     }
 
 }
\ No newline at end of file
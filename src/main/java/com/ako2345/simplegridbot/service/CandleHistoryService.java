@@ -0,0 +1,197 @@
+package com.ako2345.simplegridbot.service;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.cache.CandleStore;
+import com.ako2345.simplegridbot.model.CachedCandle;
+import com.ako2345.simplegridbot.job.JobProgressListener;
+import com.ako2345.simplegridbot.model.CandleSeries;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.piapi.contract.v1.CandleInterval;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Загрузка истории свечей для бэктеста и анализа.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CandleHistoryService {
+
+    private final InfoService infoService;
+    private final CandleStore candleStore;
+    private final ConfigService configService;
+
+    /**
+     * Возвращает свечи за days дней, предшествующих endTime. Свечи за завершённые дни (UTC) берутся из
+     * {@link CandleStore}, недостающие дни загружаются и сохраняются. Свечи за текущий день всегда загружаются заново.
+     */
+    public CandleSeries getCandleSeries(String figi, Instant endTime, int days, CandleInterval candleInterval) {
+        return getCandleSeries(figi, endTime, days, candleInterval, JobProgressListener.NONE);
+    }
+
+    /**
+     * То же, что {@link #getCandleSeries(String, Instant, int, CandleInterval)}, с передачей прогресса загрузки дней в
+     * listener.
+     */
+    public CandleSeries getCandleSeries(String figi, Instant endTime, int days, CandleInterval candleInterval, JobProgressListener listener) {
+        var startTime = endTime.minus(days, ChronoUnit.DAYS);
+        var startDay = LocalDate.ofInstant(startTime, ZoneOffset.UTC);
+        var endDay = LocalDate.ofInstant(endTime, ZoneOffset.UTC);
+        // день завершён, если закончился к текущему моменту
+        var firstIncompleteDay = LocalDate.ofInstant(Instant.now(), ZoneOffset.UTC);
+        if (firstIncompleteDay.isBefore(endDay)) endDay = firstIncompleteDay;
+
+        var storedDays = candleStore.getDays(figi, candleInterval, startDay, endDay);
+        var missingDays = new ArrayList<LocalDate>();
+        for (var day = startDay; day.isBefore(endDay); day = day.plusDays(1)) {
+            if (!storedDays.containsKey(day)) missingDays.add(day);
+        }
+        var downloadedDays = downloadDays(figi, candleInterval, missingDays, listener);
+        candleStore.putDays(figi, candleInterval, downloadedDays);
+
+        var builder = CandleSeries.builder();
+        for (var day = startDay; day.isBefore(endDay); day = day.plusDays(1)) {
+            var candlesForADay = storedDays.get(day);
+            builder.addAll(candlesForADay != null ? candlesForADay : downloadedDays.get(day));
+        }
+        var incompleteDayStartTime = endDay.atStartOfDay().toInstant(ZoneOffset.UTC);
+        if (incompleteDayStartTime.isBefore(startTime)) incompleteDayStartTime = startTime;
+        if (incompleteDayStartTime.isBefore(endTime)) {
+            builder.addAll(infoService.getCandles(figi, incompleteDayStartTime, endTime, candleInterval));
+        }
+        log.info("Candles for {} days loaded (FIGI: {}, stored days: {}, downloaded days: {})", days, figi, storedDays.size(), downloadedDays.size());
+        return builder.build(Constants.CANDLE_SERIES_OFF_HEAP).slice(startTime, endTime);
+    }
+
+    /**
+     * Параллельно загружает свечи за дни. Подряд идущие дни объединяются в окна не длиннее максимального периода,
+     * который API позволяет запросить для интервала.
+     */
+    private Map<LocalDate, CandleSeries> downloadDays(String figi, CandleInterval candleInterval, List<LocalDate> days, JobProgressListener listener) {
+        var downloadedDays = new HashMap<LocalDate, CandleSeries>();
+        if (days.isEmpty()) return downloadedDays;
+
+        var windows = new ArrayList<Window>();
+        var maxWindowDays = getMaxWindowDays(candleInterval);
+        for (LocalDate day : days) {
+            var lastWindow = windows.isEmpty() ? null : windows.get(windows.size() - 1);
+            if (lastWindow != null && lastWindow.endDay.equals(day) && lastWindow.getDaysNumber() < maxWindowDays) {
+                lastWindow.endDay = day.plusDays(1);
+            } else {
+                windows.add(new Window(day, day.plusDays(1)));
+            }
+        }
+
+        var parallelism = Math.min(configService.getCandlesDownloadParallelism(), windows.size());
+        log.info("Downloading candles for {} days in {} requests (FIGI: {}, candleInterval: {})", days.size(), windows.size(), figi, candleInterval);
+        var executor = Executors.newFixedThreadPool(parallelism);
+        var downloadedDaysNumber = new AtomicInteger();
+        try {
+            var futures = new ArrayList<Future<Map<LocalDate, CandleSeries>>>(windows.size());
+            for (Window window : windows) {
+                futures.add(executor.submit(() -> {
+                    var candles = downloadWindow(figi, candleInterval, window);
+                    var daysNumber = downloadedDaysNumber.addAndGet(window.getDaysNumber());
+                    reportProgress(figi, daysNumber, window.getDaysNumber(), days.size());
+                    listener.onProgress("candles", daysNumber, days.size());
+                    return candles;
+                }));
+            }
+            for (Future<Map<LocalDate, CandleSeries>> future : futures) {
+                downloadedDays.putAll(future.get());
+            }
+            return downloadedDays;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Candles download interrupted", exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException) throw (RuntimeException) exception.getCause();
+            throw new RuntimeException(exception.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Загружает свечи за окно одним запросом и раскладывает их по дням.
+     */
+    private Map<LocalDate, CandleSeries> downloadWindow(String figi, CandleInterval candleInterval, Window window) {
+        var startTime = window.startDay.atStartOfDay().toInstant(ZoneOffset.UTC);
+        var endTime = window.endDay.atStartOfDay().toInstant(ZoneOffset.UTC);
+        var candles = infoService.getCandles(figi, startTime, endTime, candleInterval);
+
+        var builders = new HashMap<LocalDate, CandleSeries.Builder>();
+        for (var day = window.startDay; day.isBefore(window.endDay); day = day.plusDays(1)) {
+            builders.put(day, CandleSeries.builder());
+        }
+        for (CachedCandle candle : candles) {
+            var day = LocalDate.ofEpochDay(Math.floorDiv(candle.getTimestamp().getSeconds(), ChronoUnit.DAYS.getDuration().getSeconds()));
+            var builder = builders.get(day);
+            if (builder != null) builder.add(candle);
+        }
+        var candlesByDay = new HashMap<LocalDate, CandleSeries>();
+        for (Map.Entry<LocalDate, CandleSeries.Builder> entry : builders.entrySet()) {
+            candlesByDay.put(entry.getKey(), entry.getValue().build(false));
+        }
+        return candlesByDay;
+    }
+
+    /**
+     * Выводит прогресс загрузки при прохождении каждых 10%.
+     */
+    private void reportProgress(String figi, int downloadedDaysNumber, int windowDaysNumber, int totalDaysNumber) {
+        var previousDecile = (downloadedDaysNumber - windowDaysNumber) * 10 / totalDaysNumber;
+        var decile = downloadedDaysNumber * 10 / totalDaysNumber;
+        if (decile > previousDecile) {
+            log.info("Candles download progress (FIGI: {}): {}/{} days", figi, downloadedDaysNumber, totalDaysNumber);
+        }
+    }
+
+    /**
+     * Максимальный период одного запроса свечей в днях.
+     */
+    private static int getMaxWindowDays(CandleInterval candleInterval) {
+        switch (candleInterval) {
+            case CANDLE_INTERVAL_HOUR:
+                return 7;
+            case CANDLE_INTERVAL_DAY:
+                return 365;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Дни от startDay включительно до endDay не включительно.
+     */
+    private static class Window {
+
+        private final LocalDate startDay;
+        private LocalDate endDay;
+
+        private Window(LocalDate startDay, LocalDate endDay) {
+            this.startDay = startDay;
+            this.endDay = endDay;
+        }
+
+        private int getDaysNumber() {
+            return (int) ChronoUnit.DAYS.between(startDay, endDay);
+        }
+
+    }
+
+}
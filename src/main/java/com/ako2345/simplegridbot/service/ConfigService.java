@@ -27,6 +27,54 @@ public class ConfigService {
     @Value("${app.config.sandbox-token}")
     private String sandBoxToken;
 
+    @Value("${app.config.analysis-parallelism:0}")
+    private int analysisParallelism;
+
+    @Value("${app.config.candle-store-dir:}")
+    private String candleStoreDir;
+
+    @Value("${app.config.simulation-cache-dir:}")
+    private String simulationCacheDir;
+
+    @Value("${app.config.candles-download-parallelism:4}")
+    private int candlesDownloadParallelism;
+
+    @Value("${app.config.candles-requests-per-minute:250}")
+    private int candlesRequestsPerMinute;
+
+    @Value("${app.config.jobs-parallelism:2}")
+    private int jobsParallelism;
+
+    @Value("${app.config.jobs-queue-size:16}")
+    private int jobsQueueSize;
+
+    @Value("${app.config.tick-log-dir:}")
+    private String tickLogDir;
+
+    @Value("${app.config.trade-ledger-dir:}")
+    private String tradeLedgerDir;
+
+    @Value("${app.config.bot-workers:2}")
+    private int botWorkersNumber;
+
+    @Value("${app.config.price-workers:2}")
+    private int priceWorkersNumber;
+
+    @Value("${app.config.orders-in-flight:8}")
+    private int ordersInFlight;
+
+    @Value("${app.config.orders-requests-per-minute:100}")
+    private int ordersRequestsPerMinute;
+
+    @Value("${app.config.orders-requests-burst:8}")
+    private int ordersRequestsBurst;
+
+    @Value("${app.config.screener-parallelism:0}")
+    private int screenerParallelism;
+
+    @Value("${app.config.screener-memory-budget-mb:256}")
+    private int screenerMemoryBudgetMb;
+
     public boolean getSandboxMode() {
         return sandBoxMode;
     }
@@ -51,4 +99,109 @@ public class ConfigService {
         return token;
     }
 
+    /**
+     * Количество потоков для анализа. Если параметр не задан, используются все доступные процессоры.
+     */
+    public int getAnalysisParallelism() {
+        return analysisParallelism > 0 ? analysisParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Каталог хранилища свечей. Если параметр не задан, возвращается null и свечи не сохраняются.
+     */
+    public String getCandleStoreDir() {
+        return StringUtils.hasText(candleStoreDir) ? candleStoreDir : null;
+    }
+
+    /**
+     * Каталог для сохранения результатов симуляций. Если параметр не задан, возвращается null и результаты хранятся
+     * только в памяти.
+     */
+    public String getSimulationCacheDir() {
+        return StringUtils.hasText(simulationCacheDir) ? simulationCacheDir : null;
+    }
+
+    public int getCandlesDownloadParallelism() {
+        return Math.max(1, candlesDownloadParallelism);
+    }
+
+    public int getCandlesRequestsPerMinute() {
+        return candlesRequestsPerMinute;
+    }
+
+    /**
+     * Количество одновременно выполняемых бэктестов и анализов.
+     */
+    public int getJobsParallelism() {
+        return Math.max(1, jobsParallelism);
+    }
+
+    /**
+     * Количество бэктестов и анализов, ожидающих выполнения. Запросы сверх этого количества отклоняются.
+     */
+    public int getJobsQueueSize() {
+        return Math.max(1, jobsQueueSize);
+    }
+
+    /**
+     * Каталог журнала последних цен. Если параметр не задан, возвращается null и цены не записываются.
+     */
+    public String getTickLogDir() {
+        return StringUtils.hasText(tickLogDir) ? tickLogDir : null;
+    }
+
+    /**
+     * Каталог журналов сделок ботов. Если параметр не задан, возвращается null и журналы хранятся только в памяти.
+     */
+    public String getTradeLedgerDir() {
+        return StringUtils.hasText(tradeLedgerDir) ? tradeLedgerDir : null;
+    }
+
+    /**
+     * Количество потоков, обрабатывающих события всех работающих ботов.
+     */
+    public int getBotWorkersNumber() {
+        return Math.max(1, botWorkersNumber);
+    }
+
+    /**
+     * Количество потоков, передающих цены подписчикам с объединением цен (см. {@link PriceStreamMultiplexer}).
+     */
+    public int getPriceWorkersNumber() {
+        return Math.max(1, priceWorkersNumber);
+    }
+
+    /**
+     * Количество одновременных запросов выставления лимитных ордеров.
+     */
+    public int getOrdersInFlight() {
+        return Math.max(1, ordersInFlight);
+    }
+
+    public int getOrdersRequestsPerMinute() {
+        return ordersRequestsPerMinute;
+    }
+
+    /**
+     * Количество запросов выставления ордеров подряд без ожидания ограничения частоты.
+     */
+    public int getOrdersRequestsBurst() {
+        return Math.max(1, ordersRequestsBurst);
+    }
+
+    /**
+     * Количество инструментов, одновременно анализируемых скринером. Если параметр не задан, используются все
+     * доступные процессоры.
+     */
+    public int getScreenerParallelism() {
+        return screenerParallelism > 0 ? screenerParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Объём памяти для свечей и путей цены инструментов, одновременно анализируемых скринером.
+     */
+    public int getScreenerMemoryBudgetMb() {
+        return Math.max(1, screenerMemoryBudgetMb);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,362 @@
+package com.ako2345.simplegridbot.service;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.bot.GridBot;
+import com.ako2345.simplegridbot.bot.GridBotEventLoop;
+import com.ako2345.simplegridbot.cache.BotOrdersCache;
+import com.ako2345.simplegridbot.cache.InstrumentsCache;
+import com.ako2345.simplegridbot.cache.TradingScheduleCache;
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.model.GridBotInfo;
+import com.ako2345.simplegridbot.order.TrueOrderManager;
+import com.ako2345.simplegridbot.util.TokenBucket;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.core.stream.StreamProcessor;
+import ru.tinkoff.piapi.core.utils.MapperUtils;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Работающие боты по идентификаторам. Ботов может быть несколько, в том числе на одном инструменте.
+ *
+ * <p>Лимитные ордера бота при выставлении добавляются в {@link BotOrdersCache}, поэтому сервисы информирования об
+ * исполнении ордеров находят бота по идентификатору ордера, не перебирая ботов.
+ *
+ * <p>Состояние бота изменяется только событиями его цикла ({@link GridBotEventLoop}): исполнения ордеров из стримов,
+ * обновление ордеров по таймеру, остановка и запрос статистики из API. Циклы всех ботов обслуживает общий пул из
+ * {@link ConfigService#getBotWorkersNumber()} потоков. Лимитные ордера всех ботов выставляются общим пулом из
+ * {@link ConfigService#getOrdersInFlight()} потоков с общим ограничением частоты запросов.
+ */
+@Service
+@Slf4j
+public class GridBotRegistry {
+
+    private final ConfigService configService;
+    private final SandboxOrdersStreamService sandboxOrdersStreamService;
+    private final InfoService infoService;
+    private final RealOrderService realOrderService;
+    private final SandboxOrderService sandboxOrderService;
+    private final InstrumentsCache instrumentsCache;
+    private final TradingScheduleCache tradingScheduleCache;
+    private final TradeLedgerService tradeLedgerService;
+    private final BotOrdersCache botOrdersCache;
+    private final Map<String, RegisteredGridBot> bots = new ConcurrentHashMap<>();
+    private final Timer timer = new Timer("grid-bot-scheduler", true);
+    private final ExecutorService executor;
+    private final ExecutorService orderExecutor;
+    private final TokenBucket ordersRateLimit;
+
+    public GridBotRegistry(
+            ConfigService configService,
+            SandboxOrdersStreamService sandboxOrdersStreamService,
+            InfoService infoService,
+            RealOrderService realOrderService,
+            SandboxOrderService sandboxOrderService,
+            InstrumentsCache instrumentsCache,
+            TradingScheduleCache tradingScheduleCache,
+            TradeLedgerService tradeLedgerService,
+            BotOrdersCache botOrdersCache
+    ) {
+        this.configService = configService;
+        this.sandboxOrdersStreamService = sandboxOrdersStreamService;
+        this.infoService = infoService;
+        this.realOrderService = realOrderService;
+        this.sandboxOrderService = sandboxOrderService;
+        this.instrumentsCache = instrumentsCache;
+        this.tradingScheduleCache = tradingScheduleCache;
+        this.tradeLedgerService = tradeLedgerService;
+        this.botOrdersCache = botOrdersCache;
+        this.executor = Executors.newFixedThreadPool(configService.getBotWorkersNumber());
+        this.orderExecutor = Executors.newFixedThreadPool(configService.getOrdersInFlight());
+        this.ordersRateLimit = new TokenBucket(configService.getOrdersRequestsBurst(), configService.getOrdersRequestsPerMinute());
+    }
+
+    /**
+     * Создаёт и запускает бота.
+     *
+     * @throws IllegalArgumentException Инструмент недоступен для торговли или конфигурация бота неверна.
+     */
+    public GridBotInfo create(GridBotConfig config) {
+        // проверка доступности тогрговли
+        if (!infoService.isInstrumentAvailableForTrading(config.figi)) {
+            throw new IllegalArgumentException("Instrument " + config.figi + " is not available for trading");
+        }
+
+        // бот регистрируется до создания: лимитные ордера выставляются в конструкторе бота
+        var botId = UUID.randomUUID().toString();
+        var eventLoop = new GridBotEventLoop(botId, executor, Constants.GRID_BOT_EVENT_QUEUE_SIZE);
+        var registeredGridBot = new RegisteredGridBot(botId, config, eventLoop);
+        var orderManager = new TrueOrderManager(
+                getOrderService(),
+                botOrdersCache,
+                registeredGridBot,
+                eventLoop,
+                orderExecutor,
+                ordersRateLimit
+        );
+        var lotSize = instrumentsCache.getLotSize(config.figi);
+        var minPriceIncrement = instrumentsCache.getMinPriceIncrement(config.figi);
+        var initialPrice = infoService.getLastPrice(config.figi);
+        var tradeLedger = tradeLedgerService.getLedger(config.figi);
+        // бот создаётся первым событием своего цикла, поэтому исполнения его ордеров обрабатываются после создания
+        try {
+            await(eventLoop.call(() -> registeredGridBot.gridBot = new GridBot(
+                    config,
+                    orderManager,
+                    lotSize,
+                    minPriceIncrement,
+                    initialPrice,
+                    tradeLedger
+            )));
+        } catch (RuntimeException exception) {
+            eventLoop.close();
+            // по истечении времени ожидания бот продолжает создаваться и выставлять ордера: выставленные ордера
+            // отменяются, а ордера, выставленные после отмены, отменяются сразу (см. TrueOrderManager)
+            try {
+                var cancellation = orderManager.cancelOrders(config.figi);
+                if (!cancellation.getFailedOrderIds().isEmpty()) {
+                    log.error("Orders of grid bot {} remain active after failed creation: {}", botId, cancellation.getFailedOrderIds());
+                }
+            } catch (RuntimeException cancellationException) {
+                exception.addSuppressed(cancellationException);
+            }
+            botOrdersCache.removeListener(registeredGridBot);
+            throw exception;
+        }
+        bots.put(registeredGridBot.botId, registeredGridBot);
+        log.info("Grid bot {} created (FIGI: {})", registeredGridBot.botId, config.figi);
+
+        // в "песочнице" исполнение ордеров отслеживается по изменению цены и периодическим запросам ордеров
+        if (configService.getSandboxMode()) {
+            sandboxOrdersStreamService.addBot(registeredGridBot.gridBot);
+        }
+
+        // планирование обновления ордеров в следующей торговой сессии
+        scheduleLimitOrdersUpdate(registeredGridBot);
+
+        // логирование изменения цены
+        if (Constants.LOG_NEW_PRICE) {
+            infoService.subscribeConflatedPrice(config.figi, registeredGridBot.priceLogProcessor);
+        }
+
+        return getInfo(registeredGridBot, infoService.getLastPrice(config.figi));
+    }
+
+    /**
+     * Останавливает бота. Бот удаляется из реестра только после успешного закрытия: если закрытие не удалось (например,
+     * не отменены ордера или не продан инструмент), исключение пробрасывается, а бота можно остановить повторно.
+     *
+     * @return false, если бота с таким идентификатором нет.
+     */
+    public boolean close(String botId, boolean isInstrumentShouldBeSold) {
+        var registeredGridBot = bots.get(botId);
+        if (registeredGridBot == null) return false;
+
+        // закрытие бота: отменяются только ордера этого бота
+        var eventLoop = registeredGridBot.eventLoop;
+        synchronized (registeredGridBot) {
+            if (bots.get(botId) != registeredGridBot) return false;
+            await(eventLoop.call(() -> {
+                registeredGridBot.gridBot.close(isInstrumentShouldBeSold);
+                return null;
+            }));
+            bots.remove(botId);
+        }
+        eventLoop.close();
+
+        // отмена обновления ордеров в следующей торговой сессии
+        registeredGridBot.cancelLimitOrdersUpdate();
+
+        // отписка от информации о цене
+        if (Constants.LOG_NEW_PRICE) {
+            infoService.unsubscribePrice(registeredGridBot.config.figi, registeredGridBot.priceLogProcessor);
+        }
+
+        // отписка от информации об ордерах
+        if (configService.getSandboxMode()) {
+            sandboxOrdersStreamService.removeBot(registeredGridBot.gridBot);
+        }
+        log.info("Grid bot {} closed", botId);
+        return true;
+    }
+
+    /**
+     * Останавливает всех ботов.
+     */
+    public void closeAll(boolean isInstrumentShouldBeSold) {
+        for (String botId : new ArrayList<>(bots.keySet())) {
+            close(botId, isInstrumentShouldBeSold);
+        }
+    }
+
+    /**
+     * Бот со статистикой по текущей цене или null, если бота с таким идентификатором нет.
+     */
+    public GridBotInfo getBot(String botId) {
+        var registeredGridBot = bots.get(botId);
+        if (registeredGridBot == null) return null;
+        return getInfo(registeredGridBot, infoService.getLastPrice(registeredGridBot.config.figi));
+    }
+
+    /**
+     * Боты со статистикой по текущей цене. Цена каждого инструмента запрашивается один раз.
+     */
+    public List<GridBotInfo> getBots() {
+        var lastPrices = new HashMap<String, BigDecimal>();
+        var infos = new ArrayList<GridBotInfo>();
+        for (RegisteredGridBot registeredGridBot : bots.values()) {
+            var lastPrice = lastPrices.computeIfAbsent(registeredGridBot.config.figi, infoService::getLastPrice);
+            infos.add(getInfo(registeredGridBot, lastPrice));
+        }
+        return infos;
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.cancel();
+        executor.shutdown();
+        orderExecutor.shutdown();
+    }
+
+    /**
+     * Статистика запрашивается событием цикла бота, чтобы не читать состояние бота во время его изменения.
+     */
+    private GridBotInfo getInfo(RegisteredGridBot registeredGridBot, BigDecimal lastPrice) {
+        var figi = registeredGridBot.config.figi;
+        var statistics = await(registeredGridBot.eventLoop.call(() -> registeredGridBot.gridBot.getStatistics(lastPrice)));
+        return new GridBotInfo(
+                registeredGridBot.botId,
+                instrumentsCache.getName(figi),
+                registeredGridBot.config,
+                statistics,
+                registeredGridBot.eventLoop.getStatistics(),
+                registeredGridBot.isFailed
+        );
+    }
+
+    /**
+     * Ожидает результат события цикла бота. Исключение события пробрасывается вызывающему потоку.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(Constants.GRID_BOT_EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException exception) {
+            var cause = exception.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(exception);
+        } catch (TimeoutException exception) {
+            throw new RuntimeException("Grid bot event timed out", exception);
+        }
+    }
+
+    private void scheduleLimitOrdersUpdate(RegisteredGridBot registeredGridBot) {
+        var figi = registeredGridBot.config.figi;
+        var date = LocalDate.now();
+        var exchange = instrumentsCache.getExchange(figi);
+        while (true) {
+            date = date.plusDays(1);
+            var exchangeScheduleForDate = tradingScheduleCache.getExchangeScheduleForDate(exchange, date);
+            if (exchangeScheduleForDate.isTradingDay()) {
+                var nextTradeSessionOpenTime = exchangeScheduleForDate.getOpenTime();
+                log.info("Scheduling orders update for grid bot {} at {}...", registeredGridBot.botId, nextTradeSessionOpenTime);
+                var createLimitOrdersTask = new TimerTask() {
+                    @Override
+                    public void run() {
+                        if (!bots.containsKey(registeredGridBot.botId)) return;
+                        log.info("Creating limit orders for this trade session (grid bot {})...", registeredGridBot.botId);
+                        var lastPrice = infoService.getLastPrice(figi);
+                        registeredGridBot.eventLoop.execute(() -> {
+                            var gridBot = registeredGridBot.gridBot;
+                            // ордера прошлой сессии сняты биржей
+                            botOrdersCache.removeListener(registeredGridBot);
+                            gridBot.clearPriceLevelsWithLimitOrders();
+                            gridBot.createNewLimitOrders(lastPrice);
+                        });
+                        scheduleLimitOrdersUpdate(registeredGridBot);
+                    }
+                };
+                registeredGridBot.limitOrdersUpdateTask = createLimitOrdersTask;
+                timer.schedule(createLimitOrdersTask, Date.from(nextTradeSessionOpenTime));
+                break;
+            }
+        }
+    }
+
+    private OrderService getOrderService() {
+        return configService.getSandboxMode() ? sandboxOrderService : realOrderService;
+    }
+
+    /**
+     * Бот в реестре. Получает исполненные ордера бота и передаёт их в цикл бота, поэтому может быть зарегистрирован
+     * как получатель ордеров до создания бота. Бот создаётся первым событием цикла, его изменяемое состояние
+     * читается и изменяется только событиями цикла.
+     */
+    private static class RegisteredGridBot implements OrdersStreamServiceListener {
+
+        private final String botId;
+        private final GridBotConfig config;
+        private final StreamProcessor<MarketDataResponse> priceLogProcessor;
+        private final GridBotEventLoop eventLoop;
+        private volatile GridBot gridBot;
+        private volatile TimerTask limitOrdersUpdateTask;
+        private volatile boolean isFailed = false;
+
+        RegisteredGridBot(String botId, GridBotConfig config, GridBotEventLoop eventLoop) {
+            this.botId = botId;
+            this.config = config;
+            this.eventLoop = eventLoop;
+            this.priceLogProcessor = response -> {
+                var lastPrice = MapperUtils.quotationToBigDecimal(response.getLastPrice().getPrice());
+                log.info("Price for FIGI {}: {}", config.figi, lastPrice.setScale(4, RoundingMode.DOWN));
+            };
+        }
+
+        @Override
+        public void processOrder(String orderId, String figi, Direction direction, BigDecimal averageOrderPrice, BigDecimal baseCurrencyAmount, long lotsNumber, Instant time) {
+            var isAdded = eventLoop.offer(() -> {
+                if (gridBot == null) {
+                    log.warn("Order of grid bot {} executed, but the bot was not created", botId);
+                    return;
+                }
+                gridBot.processOrder(orderId, figi, direction, averageOrderPrice, baseCurrencyAmount, lotsNumber, time);
+            });
+            // бот не узнает об исполнении ордера, поэтому его состояние больше не соответствует счёту. Исполнения,
+            // полученные после остановки бота, не обрабатываются
+            if (!isAdded && !eventLoop.isClosed() && !isFailed) {
+                isFailed = true;
+                log.error("Execution of order {} was dropped. Grid bot {} failed and must be stopped", orderId, botId);
+            }
+        }
+
+        void cancelLimitOrdersUpdate() {
+            var task = limitOrdersUpdateTask;
+            if (task != null) task.cancel();
+        }
+
+    }
+
+}
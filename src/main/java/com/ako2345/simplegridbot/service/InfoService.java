@@ -1,22 +1,30 @@
 package com.ako2345.simplegridbot.service;
 
+import com.ako2345.simplegridbot.Constants;
 import com.ako2345.simplegridbot.model.CachedCandle;
+import com.ako2345.simplegridbot.model.InstrumentInfo;
+import com.ako2345.simplegridbot.model.InstrumentType;
+import com.ako2345.simplegridbot.util.TokenBucket;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.tinkoff.piapi.contract.v1.CandleInterval;
+import ru.tinkoff.piapi.contract.v1.Etf;
 import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.Quotation;
 import ru.tinkoff.piapi.contract.v1.SecurityTradingStatus;
+import ru.tinkoff.piapi.contract.v1.Share;
 import ru.tinkoff.piapi.core.exception.ApiRuntimeException;
 import ru.tinkoff.piapi.core.stream.StreamProcessor;
 import ru.tinkoff.piapi.core.utils.MapperUtils;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
-import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,9 +32,11 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class InfoService {
 
-    public static final String PRICE_STREAM = "PriceStream";
-
     private final SdkService sdkService;
+    private final ConfigService configService;
+    private final PriceStreamMultiplexer priceStreamMultiplexer;
+
+    private TokenBucket candlesRateLimit;
 
     public boolean isInstrumentAvailableForTrading(String figi) {
         var instrument = sdkService.getInvestApi().getInstrumentsService().getInstrumentByFigiSync(figi);
@@ -46,6 +56,42 @@ public class InfoService {
         return true;
     }
 
+    /**
+     * Возвращает инструменты типа instrumentType, доступные для торговли через API. Полученные от API описания
+     * инструментов не сохраняются, из них берутся только сведения, нужные для анализа.
+     */
+    public List<InstrumentInfo> getTradableInstruments(InstrumentType instrumentType) {
+        var instrumentsService = sdkService.getInvestApi().getInstrumentsService();
+        var instruments = new ArrayList<InstrumentInfo>();
+        switch (instrumentType) {
+            case SHARE:
+                for (Share share : instrumentsService.getTradableSharesSync()) {
+                    if (isTradable(share.getApiTradeAvailableFlag(), share.getBuyAvailableFlag(), share.getSellAvailableFlag(), share.getLot())) {
+                        instruments.add(new InstrumentInfo(share.getFigi(), share.getTicker(), share.getName(), instrumentType, share.getCurrency(), BigDecimal.valueOf(share.getLot()), getMinPriceIncrement(share.getMinPriceIncrement())));
+                    }
+                }
+                break;
+            case ETF:
+                for (Etf etf : instrumentsService.getTradableEtfsSync()) {
+                    if (isTradable(etf.getApiTradeAvailableFlag(), etf.getBuyAvailableFlag(), etf.getSellAvailableFlag(), etf.getLot())) {
+                        instruments.add(new InstrumentInfo(etf.getFigi(), etf.getTicker(), etf.getName(), instrumentType, etf.getCurrency(), BigDecimal.valueOf(etf.getLot()), getMinPriceIncrement(etf.getMinPriceIncrement())));
+                    }
+                }
+                break;
+        }
+        log.info("{} tradable instruments of type {} received", instruments.size(), instrumentType);
+        return instruments;
+    }
+
+    private static BigDecimal getMinPriceIncrement(Quotation minPriceIncrement) {
+        var price = MapperUtils.quotationToBigDecimal(minPriceIncrement);
+        return price.signum() > 0 ? price : Constants.DEFAULT_MIN_PRICE_INCREMENT;
+    }
+
+    private static boolean isTradable(boolean apiTradeAvailable, boolean buyAvailable, boolean sellAvailable, int lot) {
+        return apiTradeAvailable && buyAvailable && sellAvailable && lot > 0;
+    }
+
     public BigDecimal getLastPrice(String figi) {
         var marketDataService = sdkService.getInvestApi().getMarketDataService();
         var lastPrices = marketDataService.getLastPricesSync(Collections.singletonList(figi));
@@ -53,34 +99,58 @@ public class InfoService {
         return MapperUtils.quotationToBigDecimal(lastPrice);
     }
 
+    /**
+     * Подписывает processor на последние цены инструмента. Цены передаются только обработчикам своего инструмента,
+     * на инструмент может быть подписано несколько обработчиков (см. {@link PriceStreamMultiplexer}).
+     */
     public void subscribePrice(String figi, StreamProcessor<MarketDataResponse> processor) {
-        Consumer<Throwable> onErrorCallback = error -> log.error(error.toString());
-
-        var marketDataStreamService = sdkService.getInvestApi().getMarketDataStreamService();
-
-        var stream = marketDataStreamService.getStreamById(PRICE_STREAM);
-        if (stream == null) {
-            stream = marketDataStreamService.newStream(PRICE_STREAM, processor, onErrorCallback);
-        }
+        priceStreamMultiplexer.subscribe(figi, processor, false);
+    }
 
-        stream.subscribeLastPrices(Collections.singletonList(figi));
+    /**
+     * Аналог {@link #subscribePrice(String, StreamProcessor)}, processor получает только последнюю цену в отдельном
+     * потоке. Подходит для обработчиков, которые могут не успевать за стримом.
+     */
+    public void subscribeConflatedPrice(String figi, StreamProcessor<MarketDataResponse> processor) {
+        priceStreamMultiplexer.subscribe(figi, processor, true);
     }
 
-    public void unsubscribePrice(String figi) {
-        sdkService.getInvestApi().getMarketDataStreamService().getStreamById(PRICE_STREAM).unsubscribeLastPrices(Collections.singletonList(figi));
+    /**
+     * Отписывает processor от цен инструмента. Подписка на инструмент отменяется после отписки последнего обработчика.
+     */
+    public void unsubscribePrice(String figi, StreamProcessor<MarketDataResponse> processor) {
+        priceStreamMultiplexer.unsubscribe(figi, processor);
     }
 
+    /**
+     * Загружает свечи одним запросом. Запросы ограничены по частоте ({@link ConfigService#getCandlesRequestsPerMinute()}),
+     * при ошибке запрос повторяется с экспоненциально растущей паузой не больше
+     * {@link Constants#CANDLES_REQUEST_MAX_ATTEMPTS} раз.
+     */
     @SneakyThrows
     public Set<CachedCandle> getCandles(String figi, Instant startTime, Instant endTime, CandleInterval candleInterval) {
-        try {
-            return sdkService.getInvestApi().getMarketDataService().getCandlesSync(figi, startTime, endTime, candleInterval)
-                    .stream()
-                    .map(CachedCandle::ofHistoricCandle)
-                    .collect(Collectors.toSet());
-        } catch (ApiRuntimeException exception) {
-            Thread.sleep(1000);
-            return getCandles(figi, startTime, endTime, candleInterval);
+        var backoff = Constants.CANDLES_REQUEST_INITIAL_BACKOFF_MS;
+        for (int attempt = 1; ; attempt++) {
+            getCandlesRateLimit().acquire();
+            try {
+                return sdkService.getInvestApi().getMarketDataService().getCandlesSync(figi, startTime, endTime, candleInterval)
+                        .stream()
+                        .map(CachedCandle::ofHistoricCandle)
+                        .collect(Collectors.toSet());
+            } catch (ApiRuntimeException exception) {
+                if (attempt == Constants.CANDLES_REQUEST_MAX_ATTEMPTS) throw exception;
+                log.warn("Candles request failed (FIGI: {}, attempt: {}): {}. Retrying in {} ms", figi, attempt, exception.getMessage(), backoff);
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, Constants.CANDLES_REQUEST_MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    private synchronized TokenBucket getCandlesRateLimit() {
+        if (candlesRateLimit == null) {
+            candlesRateLimit = new TokenBucket(Constants.CANDLES_REQUESTS_BURST, configService.getCandlesRequestsPerMinute());
         }
+        return candlesRateLimit;
     }
 
-}
\ No newline at end of file
+}
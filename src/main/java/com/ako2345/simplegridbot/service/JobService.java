@@ -0,0 +1,149 @@
+package com.ako2345.simplegridbot.service;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.controller.config.AnalysisConfig;
+import com.ako2345.simplegridbot.controller.config.BacktestConfig;
+import com.ako2345.simplegridbot.controller.config.ScreenerConfig;
+import com.ako2345.simplegridbot.job.Job;
+import com.ako2345.simplegridbot.job.JobType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Асинхронное выполнение бэктестов и анализов. Задачи выполняются в отдельном пуле потоков ограниченного размера с
+ * ограниченной очередью, поэтому запрос не занимает поток веб-сервера.
+ *
+ * <p>Результаты завершённых задач хранятся в кэше, ключ которого – запрос с подставленными значениями по умолчанию.
+ * Повторный запрос возвращает уже выполненную задачу, если её результат получен не раньше
+ * {@link Constants#JOB_RESULT_TTL} назад: бэктест и анализ выполняются на свечах до текущего момента, поэтому старые
+ * результаты устаревают. Одинаковые запросы, поступившие во время выполнения задачи, также получают эту задачу.
+ */
+@Service
+@Slf4j
+public class JobService {
+
+    private final BacktestService backtestService;
+    private final AnalysisService analysisService;
+    private final ScreenerService screenerService;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Задачи по идентификатору. Хранятся не больше {@link Constants#JOBS_HISTORY_SIZE} последних задач, но
+     * незавершённые задачи не вытесняются.
+     */
+    private final Map<String, Job> jobs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+            return size() > Constants.JOBS_HISTORY_SIZE && eldest.getValue().getStatus().isFinished();
+        }
+    };
+
+    /**
+     * Задачи по запросу: выполняющиеся и последние {@link Constants#JOB_RESULTS_CACHE_SIZE} завершённых.
+     */
+    private final Map<Object, Job> jobsByRequest = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Job> eldest) {
+            return size() > Constants.JOB_RESULTS_CACHE_SIZE && eldest.getValue().getStatus().isFinished();
+        }
+    };
+
+    public JobService(BacktestService backtestService, AnalysisService analysisService, ScreenerService screenerService, ConfigService configService) {
+        this.backtestService = backtestService;
+        this.analysisService = analysisService;
+        this.screenerService = screenerService;
+        var parallelism = configService.getJobsParallelism();
+        this.executor = new ThreadPoolExecutor(
+                parallelism,
+                parallelism,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(configService.getJobsQueueSize())
+        );
+    }
+
+    public Job submitBacktest(BacktestConfig config) {
+        var simulationMode = config.simulationMode != null ? config.simulationMode : Constants.DEFAULT_SIMULATION_MODE;
+        var request = new BacktestConfig(config.gridBotConfig, config.days, config.fee, simulationMode, config.tickLog);
+        return submit(JobType.BACKTEST, request, job -> backtestService.backtest(request, job));
+    }
+
+    public Job submitAnalysis(AnalysisConfig config) {
+        var simulationMode = config.simulationMode != null ? config.simulationMode : Constants.DEFAULT_SIMULATION_MODE;
+        var searchMode = config.searchMode != null ? config.searchMode : Constants.DEFAULT_SEARCH_MODE;
+        var request = new AnalysisConfig(config.figi, config.days, config.fee, simulationMode, searchMode);
+        return submit(JobType.ANALYSIS, request, job -> analysisService.analyze(request, job));
+    }
+
+    public Job submitScreening(ScreenerConfig config) {
+        var request = ScreenerService.withDefaults(config);
+        return submit(JobType.SCREENING, request, job -> screenerService.screen(request, job));
+    }
+
+    public synchronized Job getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * @throws RejectedExecutionException Если очередь задач заполнена.
+     */
+    private synchronized Job submit(JobType type, Object request, Function<Job, Object> task) {
+        var existingJob = jobsByRequest.get(request);
+        if (existingJob != null && isReusable(existingJob)) {
+            log.info("Job {} reused for {} request: {}", existingJob.getId(), type, request);
+            return existingJob;
+        }
+
+        var job = new Job(type, request);
+        executor.execute(() -> run(job, task));
+        jobs.put(job.getId(), job);
+        jobsByRequest.put(request, job);
+        log.info("Job {} submitted ({}): {}", job.getId(), type, request);
+        return job;
+    }
+
+    private void run(Job job, Function<Job, Object> task) {
+        job.start();
+        try {
+            job.complete(task.apply(job));
+            log.info("Job {} complete", job.getId());
+        } catch (Throwable throwable) {
+            // задача может завершиться и проверяемым исключением (InterruptedException, переданным через
+            // @SneakyThrows), и ошибкой: задача в статусе RUNNING выдавалась бы для запроса повторно
+            log.error("Job {} failed", job.getId(), throwable);
+            job.fail(throwable);
+            synchronized (this) {
+                jobsByRequest.remove(job.getRequest(), job);
+            }
+            if (throwable instanceof InterruptedException) Thread.currentThread().interrupt();
+            if (throwable instanceof Error) throw (Error) throwable;
+        }
+    }
+
+    private static boolean isReusable(Job job) {
+        switch (job.getStatus()) {
+            case COMPLETED:
+                return job.getFinishedTime().plus(Constants.JOB_RESULT_TTL).isAfter(Instant.now());
+            case FAILED:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
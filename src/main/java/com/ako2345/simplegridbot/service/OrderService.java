@@ -5,7 +5,9 @@ import ru.tinkoff.piapi.contract.v1.OrderDirection;
 import ru.tinkoff.piapi.contract.v1.OrderType;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface OrderService {
 
@@ -15,4 +17,9 @@ public interface OrderService {
 
     void cancelOrder(String orderId);
 
+    /**
+     * Отменяет ордер, не ожидая ответа. Возвращает время отмены.
+     */
+    CompletableFuture<Instant> cancelOrderAsync(String orderId);
+
 }
\ No newline at end of file
@@ -3,9 +3,15 @@ package com.ako2345.simplegridbot.service;
 import com.ako2345.simplegridbot.model.Direction;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 
 public interface OrdersStreamServiceListener {
 
-    void processOrder(String figi, Direction direction, BigDecimal averageOrderPrice, BigDecimal baseCurrencyAmount, long lotsNumber);
+    /**
+     * @param orderId Идентификатор исполненного ордера, по нему бот находит уровень сетки ордера.
+     * @param time Время исполнения ордера, записывается в журнал сделок бота. В симуляциях журнала нет, и время может
+     *             быть null.
+     */
+    void processOrder(String orderId, String figi, Direction direction, BigDecimal averageOrderPrice, BigDecimal baseCurrencyAmount, long lotsNumber, Instant time);
 
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+package com.ako2345.simplegridbot.service;
+
+import com.ako2345.simplegridbot.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.core.stream.StreamProcessor;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Стримы последних цен. Подписки на инструменты распределяются по стримам не больше
+ * {@link Constants#PRICE_STREAM_MAX_SUBSCRIPTIONS} на стрим; новый стрим открывается, когда все открытые заполнены. На
+ * инструмент подписывается один раз, сколько бы обработчиков ни получали его цены.
+ *
+ * <p>Все стримы передают цены в один обработчик, который записывает цену в журнал ({@link TickRecorder}) и по FIGI
+ * находит подписчиков инструмента. Обычный подписчик получает цену в потоке стрима. Подписчик с объединением цен
+ * получает цену в пуле из {@link ConfigService#getPriceWorkersNumber()} потоков: пока он обрабатывает цену, новые цены
+ * заменяют друг друга и он получает только последнюю. Поэтому медленный подписчик не задерживает стрим.
+ */
+@Service
+@Slf4j
+public class PriceStreamMultiplexer {
+
+    private static final String PRICE_STREAM = "PriceStream";
+
+    private final PriceStreamOpener streamOpener;
+    private final TickRecorder tickRecorder;
+    private final ExecutorService executor;
+    private final Map<String, List<PriceSubscriber>> subscribers = new ConcurrentHashMap<>();
+    private final List<PriceStream> streams = new ArrayList<>();
+    private final Map<String, PriceStream> figiStreams = new HashMap<>();
+
+    @Autowired
+    public PriceStreamMultiplexer(SdkService sdkService, ConfigService configService, TickRecorder tickRecorder) {
+        this(
+                (id, processor) -> openSdkStream(sdkService, id, processor),
+                configService.getPriceWorkersNumber(),
+                tickRecorder
+        );
+    }
+
+    /**
+     * @param streamOpener  Открывает стримы цен.
+     * @param workersNumber Количество потоков для подписчиков с объединением цен.
+     */
+    PriceStreamMultiplexer(PriceStreamOpener streamOpener, int workersNumber, TickRecorder tickRecorder) {
+        this.streamOpener = streamOpener;
+        this.tickRecorder = tickRecorder;
+        this.executor = Executors.newFixedThreadPool(workersNumber);
+    }
+
+    /**
+     * Подписывает processor на последние цены инструмента.
+     *
+     * @param isConflated Передавать ли подписчику только последнюю цену в отдельном потоке (см. описание класса).
+     */
+    public synchronized void subscribe(String figi, StreamProcessor<MarketDataResponse> processor, boolean isConflated) {
+        var figiSubscribers = subscribers.computeIfAbsent(figi, key -> new CopyOnWriteArrayList<>());
+        figiSubscribers.add(new PriceSubscriber(processor, isConflated));
+        if (figiSubscribers.size() == 1) {
+            var stream = getFreeStream();
+            stream.figis.add(figi);
+            figiStreams.put(figi, stream);
+            stream.connection.subscribe(figi);
+        }
+    }
+
+    /**
+     * Отписывает processor от цен инструмента. Подписка на инструмент отменяется после отписки последнего обработчика,
+     * место в стриме освобождается для других инструментов.
+     */
+    public synchronized void unsubscribe(String figi, StreamProcessor<MarketDataResponse> processor) {
+        var figiSubscribers = subscribers.get(figi);
+        if (figiSubscribers == null) return;
+        for (PriceSubscriber subscriber : figiSubscribers) {
+            if (subscriber.processor == processor) {
+                figiSubscribers.remove(subscriber);
+                break;
+            }
+        }
+        if (figiSubscribers.isEmpty()) {
+            subscribers.remove(figi);
+            var stream = figiStreams.remove(figi);
+            stream.figis.remove(figi);
+            stream.connection.unsubscribe(figi);
+        }
+    }
+
+    public synchronized int getStreamsNumber() {
+        return streams.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    private PriceStream getFreeStream() {
+        for (PriceStream stream : streams) {
+            if (stream.figis.size() < Constants.PRICE_STREAM_MAX_SUBSCRIPTIONS) return stream;
+        }
+        var id = PRICE_STREAM + "-" + streams.size();
+        var stream = new PriceStream(streamOpener.open(id, this::processPrice));
+        streams.add(stream);
+        log.info("Price stream {} opened", id);
+        return stream;
+    }
+
+    private void processPrice(MarketDataResponse response) {
+        if (!response.hasLastPrice()) return;
+        var lastPrice = response.getLastPrice();
+        tickRecorder.record(lastPrice);
+        var figiSubscribers = subscribers.get(lastPrice.getFigi());
+        if (figiSubscribers == null) return;
+        for (PriceSubscriber subscriber : figiSubscribers) {
+            subscriber.offer(response);
+        }
+    }
+
+    private static PriceStreamConnection openSdkStream(SdkService sdkService, String id, StreamProcessor<MarketDataResponse> processor) {
+        var subscriptionService = sdkService.getInvestApi().getMarketDataStreamService().newStream(
+                id,
+                processor,
+                error -> log.error("Price stream {} error: {}", id, error.toString())
+        );
+        return new PriceStreamConnection() {
+
+            @Override
+            public void subscribe(String figi) {
+                subscriptionService.subscribeLastPrices(Collections.singletonList(figi));
+            }
+
+            @Override
+            public void unsubscribe(String figi) {
+                subscriptionService.unsubscribeLastPrices(Collections.singletonList(figi));
+            }
+
+        };
+    }
+
+    /**
+     * Открытый стрим последних цен.
+     */
+    interface PriceStreamConnection {
+
+        void subscribe(String figi);
+
+        void unsubscribe(String figi);
+
+    }
+
+    /**
+     * Открывает стрим с идентификатором id, передающий ответы стрима в processor.
+     */
+    interface PriceStreamOpener {
+
+        PriceStreamConnection open(String id, StreamProcessor<MarketDataResponse> processor);
+
+    }
+
+    private static class PriceStream {
+
+        private final PriceStreamConnection connection;
+        private final Set<String> figis = new HashSet<>();
+
+        PriceStream(PriceStreamConnection connection) {
+            this.connection = connection;
+        }
+
+    }
+
+    private class PriceSubscriber {
+
+        private final StreamProcessor<MarketDataResponse> processor;
+        private final boolean isConflated;
+        private final AtomicReference<MarketDataResponse> lastResponse = new AtomicReference<>();
+        private final AtomicBoolean isScheduled = new AtomicBoolean();
+
+        PriceSubscriber(StreamProcessor<MarketDataResponse> processor, boolean isConflated) {
+            this.processor = processor;
+            this.isConflated = isConflated;
+        }
+
+        void offer(MarketDataResponse response) {
+            if (!isConflated) {
+                process(response);
+                return;
+            }
+            lastResponse.set(response);
+            schedule();
+        }
+
+        private void schedule() {
+            if (isScheduled.compareAndSet(false, true)) {
+                executor.execute(this::processLastResponse);
+            }
+        }
+
+        private void processLastResponse() {
+            var response = lastResponse.getAndSet(null);
+            if (response != null) process(response);
+            isScheduled.set(false);
+            // цена могла прийти после получения последней цены, но до сброса флага
+            if (lastResponse.get() != null) schedule();
+        }
+
+        private void process(MarketDataResponse response) {
+            try {
+                processor.process(response);
+            } catch (RuntimeException exception) {
+                log.error("Price processing failed (FIGI: {})", response.getLastPrice().getFigi(), exception);
+            }
+        }
+
+    }
+
+}
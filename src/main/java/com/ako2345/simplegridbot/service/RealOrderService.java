@@ -14,7 +14,9 @@ import ru.tinkoff.piapi.core.utils.MapperUtils;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
@@ -38,8 +40,9 @@ public class RealOrderService implements OrderService {
 
     @Override
     public Order makeOrder(String orderId, String figi, OrderDirection orderDirection, int lotsNumber, OrderType orderType, BigDecimal price) {
+        // цены лимитных ордеров – уровни сетки, кратные минимальному шагу цены инструмента
         var quotationPrice = orderType == OrderType.ORDER_TYPE_LIMIT ?
-                MapperUtils.bigDecimalToQuotation(price.setScale(2, RoundingMode.HALF_DOWN)) :
+                MapperUtils.bigDecimalToQuotation(price) :
                 Quotation.getDefaultInstance();
         var postOrderResponse = sdkService.getInvestApi().getOrdersService().postOrderSync(
                 figi,
@@ -73,4 +76,9 @@ public class RealOrderService implements OrderService {
         sdkService.getInvestApi().getOrdersService().cancelOrderSync(configService.getAccountId(), orderId);
     }
 
+    @Override
+    public CompletableFuture<Instant> cancelOrderAsync(String orderId) {
+        return sdkService.getInvestApi().getOrdersService().cancelOrder(configService.getAccountId(), orderId);
+    }
+
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package com.ako2345.simplegridbot.service;
 
 import com.ako2345.simplegridbot.Constants;
-import com.ako2345.simplegridbot.bot.GridBot;
+import com.ako2345.simplegridbot.cache.BotOrdersCache;
 import com.ako2345.simplegridbot.cache.InstrumentsCache;
 import com.ako2345.simplegridbot.cache.OrdersCache;
 import com.ako2345.simplegridbot.model.Direction;
@@ -17,9 +17,8 @@ import ru.tinkoff.piapi.core.utils.MapperUtils;
 import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.ArrayList;
+import java.time.Instant;
 import java.util.Collections;
-import java.util.List;
 import java.util.function.Consumer;
 
 @RestController
@@ -31,7 +30,7 @@ public class RealOrdersStreamService {
     protected final SdkService sdkService;
     private final InstrumentsCache instrumentsCache;
     private final OrdersCache ordersCache;
-    private final List<GridBot> listeners = new ArrayList<>();
+    private final BotOrdersCache botOrdersCache;
 
     @PostConstruct
     public void subscribeTrades() {
@@ -46,7 +45,7 @@ public class RealOrdersStreamService {
 
     public StreamProcessor<TradesStreamResponse> getStreamProcessor(String accountId) {
         return response -> {
-            if (response.hasOrderTrades() && !listeners.isEmpty()) {
+            if (response.hasOrderTrades()) {
                 var orderTrades = response.getOrderTrades();
                 if (!orderTrades.getAccountId().equals(accountId)) return;
                 var orderDirection = orderTrades.getDirection();
@@ -55,11 +54,14 @@ public class RealOrdersStreamService {
                 var lotSize = instrumentsCache.getLotSize(figi);
                 var totalBaseCurrencyAmount = BigDecimal.ZERO;
                 var totalLotsNumber = 0L;
+                var executionTime = Instant.MIN;
                 for (OrderTrade orderTrade : tradesList) {
                     var price = MapperUtils.quotationToBigDecimal(orderTrade.getPrice());
                     var quantity = orderTrade.getQuantity();
                     totalLotsNumber += quantity;
                     totalBaseCurrencyAmount = totalBaseCurrencyAmount.add(price.multiply(BigDecimal.valueOf(quantity)));
+                    var tradeTime = Instant.ofEpochSecond(orderTrade.getDateTime().getSeconds(), orderTrade.getDateTime().getNanos());
+                    if (tradeTime.isAfter(executionTime)) executionTime = tradeTime;
                 }
                 var averageOrderPrice = totalBaseCurrencyAmount.divide(BigDecimal.valueOf(totalLotsNumber).multiply(lotSize), Constants.DEFAULT_SCALE, RoundingMode.DOWN);
                 var direction = orderDirection == OrderDirection.ORDER_DIRECTION_SELL ? Direction.SELL : Direction.BUY;
@@ -75,26 +77,27 @@ public class RealOrdersStreamService {
                             orderId
                     );
                 }
-                for (GridBot gridBot : listeners) {
-                    var lotsPerGrid = gridBot.getGridManager().getLotsPerGrid();
-                    var executedLotsNumber = ordersCache.getExecutedLotsNumber(orderId);
-                    var baseCurrencyAmount = ordersCache.getBaseCurrencyAmount(orderId);
-                    if (executedLotsNumber == lotsPerGrid) {
-                        gridBot.processOrder(figi, direction, averageOrderPrice, baseCurrencyAmount, executedLotsNumber);
-                    }
-                }
+                processExecution(orderId, figi, direction, averageOrderPrice, executionTime);
             }
         };
     }
 
-    public void addListener(GridBot gridBot) {
-        if (!listeners.contains(gridBot)) {
-            listeners.add(gridBot);
+    /**
+     * Передаёт ордер выставившему его боту после исполнения всех лотов. Ордер мог исполниться до того, как бот получил
+     * ответ на запрос выставления: тогда проверка повторяется при добавлении ордера в {@link BotOrdersCache}.
+     *
+     * @param executionTime Время последней сделки по ордеру.
+     */
+    private void processExecution(String orderId, String figi, Direction direction, BigDecimal averageOrderPrice, Instant executionTime) {
+        var botOrder = botOrdersCache.getOrDefer(orderId, () -> processExecution(orderId, figi, direction, averageOrderPrice, executionTime));
+        if (botOrder == null) return;
+        var executedLotsNumber = ordersCache.getExecutedLotsNumber(orderId);
+        // ордер передаётся боту один раз, даже если проверка выполняется одновременно в двух потоках
+        if (executedLotsNumber == botOrder.getLotsNumber() && botOrdersCache.remove(orderId)) {
+            var baseCurrencyAmount = ordersCache.getBaseCurrencyAmount(orderId);
+            ordersCache.remove(orderId);
+            botOrder.getListener().processOrder(orderId, figi, direction, averageOrderPrice, baseCurrencyAmount, executedLotsNumber, executionTime);
         }
     }
 
-    public void removeListener(GridBot gridBot) {
-        listeners.remove(gridBot);
-    }
-
 }
\ No newline at end of file
@@ -13,7 +13,9 @@ import ru.tinkoff.piapi.core.utils.MapperUtils;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
@@ -36,8 +38,9 @@ public class SandboxOrderService implements OrderService {
 
     @Override
     public Order makeOrder(String orderId, String figi, OrderDirection orderDirection, int lotsNumber, OrderType orderType, BigDecimal price) {
+        // цены лимитных ордеров – уровни сетки, кратные минимальному шагу цены инструмента
         var quotationPrice = orderType == OrderType.ORDER_TYPE_LIMIT ?
-                MapperUtils.bigDecimalToQuotation(price.setScale(2, RoundingMode.HALF_DOWN)) :
+                MapperUtils.bigDecimalToQuotation(price) :
                 Quotation.getDefaultInstance();
         var postOrderResponse = sdkService.getInvestApi().getSandboxService().postOrderSync(
                 figi,
@@ -70,4 +73,10 @@ public class SandboxOrderService implements OrderService {
         sdkService.getInvestApi().getSandboxService().cancelOrderSync(configService.getAccountId(), orderId);
     }
 
+    @Override
+    public CompletableFuture<Instant> cancelOrderAsync(String orderId) {
+        log.info("Cancelling order: {}", orderId);
+        return sdkService.getInvestApi().getSandboxService().cancelOrder(configService.getAccountId(), orderId);
+    }
+
 }
\ No newline at end of file
@@ -3,8 +3,10 @@ package com.ako2345.simplegridbot.service;
 import com.ako2345.simplegridbot.Constants;
 import com.ako2345.simplegridbot.bot.GridBot;
 import com.ako2345.simplegridbot.bot.grid.Grid;
+import com.ako2345.simplegridbot.cache.BotOrdersCache;
 import com.ako2345.simplegridbot.cache.InstrumentsCache;
-import com.ako2345.simplegridbot.model.Order;
+import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.util.PriceUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.RestController;
@@ -12,16 +14,28 @@ import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
 import ru.tinkoff.piapi.core.stream.StreamProcessor;
 import ru.tinkoff.piapi.core.utils.MapperUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.ArrayList;
+import java.time.Instant;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * В режиме "песочницы" нельзя использовать OrdersStreamService, поэтому придётся эмулировать информирование об
  * исполнении ордеров.
+ *
+ * <p>Ордера синхронизируются по инструментам: ботам одного инструмента достаточно одной подписки на цены и одного
+ * периодического запроса ордеров. Исполненный ордер передаётся выставившему его боту (см. {@link BotOrdersCache}).
+ *
+ * <p>Исполненными считаются ордера ботов инструмента из {@link BotOrdersCache}, которых нет среди активных ордеров
+ * "песочницы". Поэтому обнаруживаются и ордера, выставленные и исполненные между двумя запросами ордеров.
  */
 @RestController
 @Slf4j
@@ -33,98 +47,243 @@ public class SandboxOrdersStreamService {
     protected final InfoService infoService;
     protected final SandboxOrderService sandboxOrderService;
     protected final InstrumentsCache instrumentsCache;
-    private final List<OrdersStreamServiceListener> listeners;
-    private Timer timer;
-    private BigDecimal previousPrice;
-    private List<Order> previousOrders;
+    private final BotOrdersCache botOrdersCache;
+    // без блокировки сервиса: подписчик изменений BotOrdersCache вызывается и во время синхронизации ордеров
+    private final Map<String, InstrumentOrdersSync> ordersSyncs = new ConcurrentHashMap<>();
+    private final Timer timer = new Timer("sandbox-orders-sync", true);
 
-    private void subscribePrices(String figi, Grid grid) {
-        if (!configService.getSandboxMode()) return;
-        previousOrders = sandboxOrderService.getOrders(figi);
-        previousPrice = infoService.getLastPrice(figi);
-        StreamProcessor<MarketDataResponse> processor = response -> {
-            var responseFigi = response.getLastPrice().getFigi();
-            if (response.hasLastPrice() && figi.equals(responseFigi)) {
-                var currentPriceQuotation = response.getLastPrice().getPrice();
-                var currentPrice = MapperUtils.quotationToBigDecimal(currentPriceQuotation);
-                if (Constants.LOG_NEW_PRICE) {
-                    log.info("Price for FIGI {}: {}", figi, currentPrice.setScale(4, RoundingMode.DOWN));
-                }
-                var currentPriceRangeIndex = grid.getPriceRangeIndex(currentPrice);
-                var previousPriceRangeIndex = grid.getPriceRangeIndex(previousPrice);
-                if (currentPriceRangeIndex != previousPriceRangeIndex) {
-                    syncOrders(figi);
-                }
-                previousPrice = currentPrice;
-            }
-        };
-        infoService.subscribePrice(figi, processor);
+    @PostConstruct
+    public void init() {
+        botOrdersCache.addChangeListener(figi -> {
+            var ordersSync = ordersSyncs.get(figi);
+            if (ordersSync != null) ordersSync.processOrdersChange();
+        });
     }
 
-    private void unsubscribePrices(String figi) {
-        infoService.unsubscribePrice(figi);
+    /**
+     * Начинает отслеживать исполнение ордеров бота.
+     */
+    public synchronized void addBot(GridBot gridBot) {
+        if (!configService.getSandboxMode()) return;
+        var figi = gridBot.getFigi();
+        var ordersSync = ordersSyncs.get(figi);
+        if (ordersSync == null) {
+            ordersSync = new InstrumentOrdersSync(figi);
+            ordersSyncs.put(figi, ordersSync);
+            ordersSync.start();
+        }
+        ordersSync.grids.add(gridBot.getGridManager().getGrid());
     }
 
-    private void startPeriodicOrdersSync(String figi) {
-        var task = new TimerTask() {
-
-            @Override
-            public void run() {
-                syncOrders(figi);
-            }
-
-        };
-        timer = new Timer();
-        timer.scheduleAtFixedRate(task, 0, 4000L);
+    /**
+     * Прекращает отслеживать исполнение ордеров бота. Синхронизация ордеров инструмента останавливается вместе с
+     * последним ботом инструмента.
+     */
+    public synchronized void removeBot(GridBot gridBot) {
+        var figi = gridBot.getFigi();
+        var ordersSync = ordersSyncs.get(figi);
+        if (ordersSync == null) return;
+        ordersSync.grids.remove(gridBot.getGridManager().getGrid());
+        if (ordersSync.grids.isEmpty()) {
+            ordersSyncs.remove(figi);
+            ordersSync.stop();
+        }
     }
 
-    private void stopPeriodicOrdersSync() {
+    @PreDestroy
+    public void stop() {
         timer.cancel();
     }
 
-    private void syncOrders(String figi) {
-        var currentOrders = sandboxOrderService.getOrders(figi);
-        var executedOrders = new ArrayList<Order>();
-        for (Order order : previousOrders) {
-            if (!currentOrders.contains(order)) {
+    /**
+     * Интервал до следующего запроса ордеров (см. {@link InstrumentOrdersSync}).
+     *
+     * @param distance             Расстояние от цены до ближайшего ордера бота в тиках.
+     * @param minPriceStep         Минимальный шаг сеток ботов инструмента в тиках.
+     * @param unchangedSyncsNumber Количество запросов подряд без исполненных ордеров.
+     */
+    static long getSyncDelay(long distance, long minPriceStep, int unchangedSyncsNumber) {
+        if (distance <= minPriceStep / 2) return Constants.SANDBOX_ORDERS_SYNC_MIN_DELAY_MS;
+        return Math.min(
+                Constants.SANDBOX_ORDERS_SYNC_DELAY_MS << unchangedSyncsNumber,
+                Constants.SANDBOX_ORDERS_SYNC_MAX_DELAY_MS
+        );
+    }
+
+    /**
+     * Синхронизация ордеров инструмента. Ордера ботов инструмента берутся из {@link BotOrdersCache}, активные ордера
+     * "песочницы" – в хеш-множество по идентификатору, поэтому исполненные ордера находятся за один проход.
+     *
+     * <p>Ордера запрашиваются с переменным интервалом: {@link Constants#SANDBOX_ORDERS_SYNC_MIN_DELAY_MS}, если цена
+     * ближе половины шага сетки к ордеру бота, иначе {@link Constants#SANDBOX_ORDERS_SYNC_DELAY_MS}, удваиваемый
+     * после каждого запроса без изменений до {@link Constants#SANDBOX_ORDERS_SYNC_MAX_DELAY_MS}. Выставление и отмена
+     * ордера ботом сбрасывают интервал. Кроме того, ордера запрашиваются сразу, если цена из стрима достигла цены
+     * ордера бота, но не чаще минимального интервала.
+     */
+    private class InstrumentOrdersSync {
+
+        private final String figi;
+        private final List<Grid> grids = new CopyOnWriteArrayList<>();
+        private final StreamProcessor<MarketDataResponse> processor = this::processPrice;
+        private volatile long previousPrice;
+        private volatile long maxBuyPrice;
+        private volatile long minSellPrice;
+        private volatile long lastSyncTime;
+        private volatile boolean isStopped = false;
+        private int unchangedSyncsNumber = 0;
+        private long nextSyncTime;
+        private TimerTask task;
+
+        InstrumentOrdersSync(String figi) {
+            this.figi = figi;
+        }
+
+        void start() {
+            previousPrice = PriceUtils.toTicks(infoService.getLastPrice(figi));
+            updateOrderPrices();
+            lastSyncTime = System.currentTimeMillis();
+            infoService.subscribeConflatedPrice(figi, processor);
+            schedule(Constants.SANDBOX_ORDERS_SYNC_MIN_DELAY_MS);
+        }
+
+        synchronized void stop() {
+            isStopped = true;
+            infoService.unsubscribePrice(figi, processor);
+            if (task != null) task.cancel();
+        }
+
+        /**
+         * Вызывается при выставлении и отмене ордеров ботами инструмента: обновляет цены ордеров и сбрасывает интервал
+         * запросов ордеров.
+         */
+        synchronized void processOrdersChange() {
+            updateOrderPrices();
+            unchangedSyncsNumber = 0;
+            var delay = getNextDelay(true);
+            if (nextSyncTime - System.currentTimeMillis() > delay) schedule(delay);
+        }
+
+        private synchronized void schedule(long delay) {
+            if (isStopped) return;
+            if (task != null) task.cancel();
+            task = new TimerTask() {
+
+                @Override
+                public void run() {
+                    var isChanged = true;
+                    try {
+                        isChanged = syncOrders();
+                    } catch (RuntimeException exception) {
+                        log.error("Orders sync failed (FIGI: {})", figi, exception);
+                    }
+                    synchronized (InstrumentOrdersSync.this) {
+                        // задача могла быть заменена в processOrdersChange
+                        if (task == this) schedule(getNextDelay(isChanged));
+                    }
+                }
+
+            };
+            nextSyncTime = System.currentTimeMillis() + delay;
+            timer.schedule(task, delay);
+        }
+
+        private void processPrice(MarketDataResponse response) {
+            var currentPriceQuotation = response.getLastPrice().getPrice();
+            if (Constants.LOG_NEW_PRICE) {
+                var lastPrice = MapperUtils.quotationToBigDecimal(currentPriceQuotation);
+                log.info("Price for FIGI {}: {}", figi, lastPrice.setScale(4, RoundingMode.DOWN));
+            }
+            // сравнение с ценами ордеров в тиках без создания объектов
+            var currentPrice = PriceUtils.toTicks(currentPriceQuotation);
+            previousPrice = currentPrice;
+            if ((currentPrice <= maxBuyPrice || currentPrice >= minSellPrice) &&
+                    System.currentTimeMillis() - lastSyncTime >= Constants.SANDBOX_ORDERS_SYNC_MIN_DELAY_MS) {
+                syncOrders();
+            }
+        }
+
+        /**
+         * @return true, если найдены исполненные ордера.
+         */
+        private synchronized boolean syncOrders() {
+            lastSyncTime = System.currentTimeMillis();
+            // ордера, добавленные после запроса, могут отсутствовать в ответе, не будучи исполненными
+            var syncStartTime = System.nanoTime();
+            var activeOrderIds = getActiveOrderIds();
+            // время исполнения в "песочнице" неизвестно, используется время обнаружения
+            var executionTime = Instant.now();
+            var isChanged = false;
+            for (var entry : botOrdersCache.getOrders(figi).entrySet()) {
+                var orderId = entry.getKey();
+                var botOrder = entry.getValue();
+                if (activeOrderIds.contains(orderId) || botOrder.getAddTime() - syncStartTime >= 0) continue;
+                if (!botOrdersCache.remove(orderId)) continue;
                 log.info(
                         "Executed order detected (order ID: {}, price: {})",
-                        order.getOrderId(),
-                        order.getPrice().setScale(4, RoundingMode.HALF_DOWN)
+                        orderId,
+                        botOrder.getPrice().setScale(4, RoundingMode.HALF_DOWN)
                 );
-                executedOrders.add(order);
-            }
-        }
-        previousOrders = currentOrders;
-        for (Order executedOrder : executedOrders) {
-            var direction = executedOrder.getDirection();
-            var price = executedOrder.getPrice();
-            var baseCurrencyAmount = executedOrder.getBaseCurrencyAmount();
-            var lotsNumber = executedOrder.getLotsNumber();
-            for (OrdersStreamServiceListener listener : listeners) {
-                listener.processOrder(
+                isChanged = true;
+                var baseCurrencyAmount = botOrder.getPrice()
+                        .multiply(instrumentsCache.getLotSize(figi))
+                        .multiply(BigDecimal.valueOf(botOrder.getLotsNumber()));
+                botOrder.getListener().processOrder(
+                        orderId,
                         figi,
-                        direction,
-                        price,
+                        botOrder.getDirection(),
+                        botOrder.getPrice(),
                         baseCurrencyAmount,
-                        lotsNumber
+                        botOrder.getLotsNumber(),
+                        executionTime
                 );
             }
+            return isChanged;
         }
-    }
 
-    public void addListener(GridBot gridBot) {
-        if (!listeners.contains(gridBot)) {
-            listeners.add(gridBot);
-            subscribePrices(gridBot.getFigi(), gridBot.getGridManager().getGrid());
-            startPeriodicOrdersSync(gridBot.getFigi());
+        private HashSet<String> getActiveOrderIds() {
+            var orders = sandboxOrderService.getOrders(figi);
+            var orderIds = new HashSet<String>(orders.size() * 2);
+            orders.forEach(order -> orderIds.add(order.getOrderId()));
+            return orderIds;
+        }
+
+        /**
+         * Обновляет ближайшие к цене цены ордеров ботов: максимальную цену покупки и минимальную цену продажи.
+         */
+        private void updateOrderPrices() {
+            var maxBuyPrice = Long.MIN_VALUE;
+            var minSellPrice = Long.MAX_VALUE;
+            for (BotOrdersCache.BotOrder botOrder : botOrdersCache.getOrders(figi).values()) {
+                var price = PriceUtils.toTicks(botOrder.getPrice(), RoundingMode.HALF_UP);
+                if (botOrder.getDirection() == Direction.BUY) {
+                    maxBuyPrice = Math.max(maxBuyPrice, price);
+                } else {
+                    minSellPrice = Math.min(minSellPrice, price);
+                }
+            }
+            this.maxBuyPrice = maxBuyPrice;
+            this.minSellPrice = minSellPrice;
+        }
+
+        private long getNextDelay(boolean isChanged) {
+            unchangedSyncsNumber = isChanged ? 0 : Math.min(unchangedSyncsNumber + 1, 16);
+            var price = previousPrice;
+            var distance = Math.min(
+                    maxBuyPrice == Long.MIN_VALUE ? Long.MAX_VALUE : price - maxBuyPrice,
+                    minSellPrice == Long.MAX_VALUE ? Long.MAX_VALUE : minSellPrice - price
+            );
+            return getSyncDelay(distance, getMinPriceStep(), unchangedSyncsNumber);
+        }
+
+        private long getMinPriceStep() {
+            var minPriceStep = Long.MAX_VALUE;
+            for (Grid grid : grids) {
+                var priceLevels = grid.getPriceLevelTicks();
+                minPriceStep = Math.min(minPriceStep, priceLevels[1] - priceLevels[0]);
+            }
+            return minPriceStep == Long.MAX_VALUE ? 0 : minPriceStep;
         }
-    }
 
-    public void removeListener(GridBot gridBot) {
-        listeners.remove(gridBot);
-        unsubscribePrices(gridBot.getFigi());
-        stopPeriodicOrdersSync();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,222 @@
+package com.ako2345.simplegridbot.service;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.controller.config.AnalysisConfig;
+import com.ako2345.simplegridbot.controller.config.ScreenerConfig;
+import com.ako2345.simplegridbot.job.JobProgressListener;
+import com.ako2345.simplegridbot.model.InstrumentInfo;
+import com.ako2345.simplegridbot.model.InstrumentScore;
+import com.ako2345.simplegridbot.model.InstrumentType;
+import com.ako2345.simplegridbot.model.ScreenerReport;
+import com.ako2345.simplegridbot.simulation.PricePath;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Поиск инструментов, подходящих для сеточного бота. Для каждого доступного для торговли инструмента выполняется
+ * анализ (см. {@link AnalysisService}), инструменты ранжируются по доходности лучшей найденной конфигурации.
+ *
+ * <p>Инструменты анализируются параллельно, каждый в одном потоке. Память ограничена бюджетом
+ * ({@link ConfigService#getScreenerMemoryBudgetMb()}): перед загрузкой свечей инструмент резервирует оценку
+ * занимаемой памяти и освобождает её после анализа, следующие инструменты ждут освобождения бюджета. После анализа
+ * от инструмента остаётся только результат, и хранятся только лучшие результаты.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ScreenerService {
+
+    private static final Comparator<InstrumentScore> WORST_FIRST = Comparator.comparing(score -> score.getBestResult().getTotalProfitPercentage());
+
+    private final InfoService infoService;
+    private final CandleHistoryService candleHistoryService;
+    private final AnalysisService analysisService;
+    private final ConfigService configService;
+
+    /**
+     * Заполняет незаданные параметры поиска значениями по умолчанию.
+     */
+    public static ScreenerConfig withDefaults(ScreenerConfig config) {
+        var simulationMode = config.simulationMode != null ? config.simulationMode : Constants.DEFAULT_SIMULATION_MODE;
+        var searchMode = config.searchMode != null ? config.searchMode : Constants.SCREENER_DEFAULT_SEARCH_MODE;
+        var resultsNumber = config.resultsNumber != null ? config.resultsNumber : Constants.SCREENER_DEFAULT_RESULTS_NUMBER;
+        return new ScreenerConfig(config.instrumentTypes, config.currency, config.days, config.fee, simulationMode, searchMode, resultsNumber);
+    }
+
+    public ScreenerReport screen(ScreenerConfig requestedConfig, JobProgressListener listener) {
+        var config = withDefaults(requestedConfig);
+        var instrumentTypes = config.instrumentTypes != null && !config.instrumentTypes.isEmpty() ? config.instrumentTypes : List.of(InstrumentType.values());
+        int resultsNumber = config.resultsNumber;
+        if (resultsNumber <= 0) throw new IllegalArgumentException("Results number must be positive");
+
+        var instruments = new ArrayList<InstrumentInfo>();
+        for (InstrumentType instrumentType : instrumentTypes) {
+            for (InstrumentInfo instrument : infoService.getTradableInstruments(instrumentType)) {
+                if (config.currency == null || config.currency.equalsIgnoreCase(instrument.getCurrency())) {
+                    instruments.add(instrument);
+                }
+            }
+        }
+
+        var parallelism = configService.getScreenerParallelism();
+        var memoryBudgetKb = configService.getScreenerMemoryBudgetMb() * 1024;
+        var instrumentMemoryKb = (int) Math.min(memoryBudgetKb, Math.max(1, estimateMemoryKb(config.days)));
+        log.info(
+                "Starting screening of {} instruments for {} days using {} threads (memory budget: {} MB, per instrument: {} KB)",
+                instruments.size(),
+                config.days,
+                parallelism,
+                configService.getScreenerMemoryBudgetMb(),
+                instrumentMemoryKb
+        );
+
+        var endTime = OffsetDateTime.now().toInstant();
+        var bestScores = new PriorityQueue<>(resultsNumber, WORST_FIRST);
+        var bestScoresVersion = new AtomicLong();
+        var partialResultSender = new PartialResultSender(listener);
+        var analyzedNumber = new AtomicInteger();
+        var skippedNumber = new AtomicInteger();
+        var failedNumber = new AtomicInteger();
+        var completedNumber = new AtomicInteger();
+        var memoryBudget = new Semaphore(memoryBudgetKb);
+        var executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            for (InstrumentInfo instrument : instruments) {
+                memoryBudget.acquire(instrumentMemoryKb);
+                executor.execute(() -> {
+                    try {
+                        var score = analyze(instrument, config, endTime);
+                        if (score == null) {
+                            skippedNumber.incrementAndGet();
+                        } else {
+                            analyzedNumber.incrementAndGet();
+                            List<InstrumentScore> partialResult = null;
+                            long version = 0;
+                            synchronized (bestScores) {
+                                var bestScoresChanged = false;
+                                if (bestScores.size() < resultsNumber) {
+                                    bestScoresChanged = bestScores.add(score);
+                                } else if (WORST_FIRST.compare(score, bestScores.peek()) > 0) {
+                                    bestScores.poll();
+                                    bestScoresChanged = bestScores.add(score);
+                                }
+                                if (bestScoresChanged) {
+                                    partialResult = getSortedScores(bestScores);
+                                    version = bestScoresVersion.incrementAndGet();
+                                }
+                            }
+                            if (partialResult != null) partialResultSender.send(version, partialResult);
+                        }
+                    } catch (RuntimeException exception) {
+                        failedNumber.incrementAndGet();
+                        log.warn("Screening of instrument {} ({}) failed: {}", instrument.getTicker(), instrument.getFigi(), exception.toString());
+                    } finally {
+                        memoryBudget.release(instrumentMemoryKb);
+                        listener.onProgress("instruments", completedNumber.incrementAndGet(), instruments.size());
+                    }
+                });
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("Screening progress: {}/{} instruments", completedNumber.get(), instruments.size());
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Screening interrupted", exception);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<InstrumentScore> results;
+        synchronized (bestScores) {
+            results = getSortedScores(bestScores);
+        }
+        log.info(
+                "Screening complete. Instruments: {}, analyzed: {}, skipped: {}, failed: {}",
+                instruments.size(),
+                analyzedNumber.get(),
+                skippedNumber.get(),
+                failedNumber.get()
+        );
+        return new ScreenerReport(instruments.size(), analyzedNumber.get(), skippedNumber.get(), failedNumber.get(), results);
+    }
+
+    /**
+     * Анализ инструмента в вызывающем потоке. Путь цены не сохраняется в кэше путей, чтобы не вытеснять пути
+     * инструментов, анализируемых по отдельности.
+     *
+     * @return null, если свечей слишком мало для анализа или цена не менялась.
+     */
+    private InstrumentScore analyze(InstrumentInfo instrument, ScreenerConfig config, Instant endTime) {
+        var candles = candleHistoryService.getCandleSeries(instrument.getFigi(), endTime, config.days, Constants.DEFAULT_CANDLE_INTERVAL);
+        if (candles.size() < Constants.SCREENER_MIN_CANDLES || candles.getLowest() == candles.getHighest()) {
+            log.info("Instrument {} ({}) skipped: {} candles", instrument.getTicker(), instrument.getFigi(), candles.size());
+            return null;
+        }
+        var analysisConfig = new AnalysisConfig(instrument.getFigi(), config.days, config.fee, config.simulationMode, config.searchMode);
+        var analysisResult = analysisService.analyze(analysisConfig, candles, PricePath.of(candles), instrument.getLotSize(), instrument.getMinPriceIncrement(), 1, JobProgressListener.NONE);
+        if (analysisResult.getBestResults().isEmpty()) return null;
+        return new InstrumentScore(
+                instrument.getFigi(),
+                instrument.getTicker(),
+                instrument.getName(),
+                instrument.getType(),
+                candles.size(),
+                analysisResult.getInitialPrice(),
+                analysisResult.getFinalPrice(),
+                analysisResult.getMinPrice(),
+                analysisResult.getMaxPrice(),
+                analysisResult.getBestResults().get(0)
+        );
+    }
+
+    /**
+     * Передаёт промежуточные результаты в listener вне блокировки лучших результатов, поэтому медленный listener
+     * задерживает только передачу результатов, но не анализ инструментов. Результат, устаревший к моменту передачи,
+     * пропускается.
+     */
+    private static class PartialResultSender {
+
+        private final JobProgressListener listener;
+        private long sentVersion = 0;
+
+        private PartialResultSender(JobProgressListener listener) {
+            this.listener = listener;
+        }
+
+        private synchronized void send(long version, List<InstrumentScore> partialResult) {
+            if (version <= sentVersion) return;
+            sentVersion = version;
+            listener.onPartialResult(partialResult);
+        }
+
+    }
+
+    private static List<InstrumentScore> getSortedScores(PriorityQueue<InstrumentScore> scores) {
+        var sortedScores = new ArrayList<>(scores);
+        sortedScores.sort(WORST_FIRST.reversed());
+        return sortedScores;
+    }
+
+    /**
+     * Оценка памяти для анализа инструмента за days дней: загруженные свечи, серия свечей и путь цены.
+     */
+    private static long estimateMemoryKb(int days) {
+        var candlesNumber = (long) days * Constants.SCREENER_CANDLES_PER_DAY;
+        return candlesNumber * Constants.SCREENER_BYTES_PER_CANDLE / 1024;
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.ako2345.simplegridbot.service;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.ticklog.TickBuffer;
+import com.ako2345.simplegridbot.ticklog.TickLog;
+import com.ako2345.simplegridbot.ticklog.TickLogWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Запись получаемых последних цен в журнал (см. {@link TickLog}) для последующего бэктеста по ним.
+ *
+ * <p>Поток, получающий цены из стрима, только копирует цену в {@link TickBuffer} – без блокировок и без создания
+ * объектов. В файлы сегментов цены записывает отдельный поток. Если буфер заполнен, цена не записывается, а счётчик
+ * потерянных цен увеличивается: запись журнала не должна задерживать обработку цен. Если поток записи завершился с
+ * ошибкой, цены больше не буферизуются и сразу считаются потерянными.
+ *
+ * <p>Если каталог журнала не задан ({@link ConfigService#getTickLogDir()}), цены не записываются.
+ */
+@Service
+@Slf4j
+public class TickRecorder {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final String tickLogDir;
+    private final Map<String, Integer> figiIds = new ConcurrentHashMap<>();
+    private final List<String> figis = new CopyOnWriteArrayList<>();
+    private final AtomicLong recordedNumber = new AtomicLong();
+    private final AtomicLong droppedNumber = new AtomicLong();
+    private volatile TickBuffer tickBuffer;
+    private Thread writerThread;
+    private volatile boolean running;
+    private volatile boolean isWriterFailed = false;
+
+    public TickRecorder(ConfigService configService) {
+        this.tickLogDir = configService.getTickLogDir();
+    }
+
+    public boolean isEnabled() {
+        return tickLogDir != null;
+    }
+
+    /**
+     * Добавляет цену в буфер записи. Вызывается из потока стрима.
+     */
+    public void record(LastPrice lastPrice) {
+        if (!isEnabled()) return;
+        if (isWriterFailed) {
+            droppedNumber.incrementAndGet();
+            return;
+        }
+        var figiId = getFigiId(lastPrice.getFigi());
+        var time = lastPrice.getTime();
+        var timestamp = time.getSeconds() * NANOS_PER_SECOND + time.getNanos();
+        var price = lastPrice.getPrice();
+        if (getTickBuffer().offer(figiId, timestamp, price.getUnits(), price.getNano())) {
+            recordedNumber.incrementAndGet();
+        } else {
+            droppedNumber.incrementAndGet();
+        }
+    }
+
+    public long getRecordedNumber() {
+        return recordedNumber.get();
+    }
+
+    public long getDroppedNumber() {
+        return droppedNumber.get();
+    }
+
+    private int getFigiId(String figi) {
+        var figiId = figiIds.get(figi);
+        return figiId != null ? figiId : registerFigi(figi);
+    }
+
+    /**
+     * FIGI добавляется в список до публикации идентификатора, поэтому поток записи всегда находит FIGI по
+     * идентификатору из буфера.
+     */
+    private synchronized int registerFigi(String figi) {
+        var figiId = figiIds.get(figi);
+        if (figiId == null) {
+            figis.add(figi);
+            figiId = figis.size() - 1;
+            figiIds.put(figi, figiId);
+        }
+        return figiId;
+    }
+
+    private TickBuffer getTickBuffer() {
+        var buffer = tickBuffer;
+        return buffer != null ? buffer : start();
+    }
+
+    private synchronized TickBuffer start() {
+        if (tickBuffer == null) {
+            var buffer = new TickBuffer(Constants.TICK_RECORDER_BUFFER_SIZE);
+            var writer = new TickLogWriter(Paths.get(tickLogDir), Constants.TICK_LOG_SEGMENT_SIZE, figis::get);
+            running = true;
+            writerThread = new Thread(() -> writeTicks(buffer, writer), "tick-recorder");
+            writerThread.setDaemon(true);
+            writerThread.start();
+            tickBuffer = buffer;
+            log.info("Tick recording started (directory: {})", tickLogDir);
+        }
+        return tickBuffer;
+    }
+
+    private void writeTicks(TickBuffer buffer, TickLogWriter writer) {
+        var reportedDroppedNumber = 0L;
+        var flushTime = System.nanoTime();
+        try (writer) {
+            while (running) {
+                if (buffer.drainTo(writer) == 0) {
+                    LockSupport.parkNanos(Constants.TICK_RECORDER_IDLE_NANOS);
+                }
+                var now = System.nanoTime();
+                if (now - flushTime > TimeUnit.SECONDS.toNanos(Constants.TICK_RECORDER_FLUSH_INTERVAL_SECONDS)) {
+                    writer.flush();
+                    flushTime = now;
+                    var droppedNumber = getDroppedNumber();
+                    if (droppedNumber > reportedDroppedNumber) {
+                        log.warn("Tick recorder buffer overflow: {} prices dropped", droppedNumber - reportedDroppedNumber);
+                        reportedDroppedNumber = droppedNumber;
+                    }
+                }
+            }
+            buffer.drainTo(writer);
+        } catch (RuntimeException exception) {
+            log.error("Tick recording failed. Prices are not recorded anymore ({} dropped so far)", getDroppedNumber(), exception);
+        } finally {
+            // поток, завершившийся до остановки, больше не разбирает буфер
+            if (running) isWriterFailed = true;
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = writerThread;
+        }
+        if (thread != null) thread.join(TimeUnit.SECONDS.toMillis(Constants.TICK_RECORDER_FLUSH_INTERVAL_SECONDS));
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.ako2345.simplegridbot.service;
+
+import com.ako2345.simplegridbot.ledger.TradeLedger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Журналы сделок ботов (см. {@link TradeLedger}), по одному на инструмент. Журнал открывается при первом обращении и
+ * остаётся открытым после остановки бота, чтобы сделки можно было запросить.
+ *
+ * <p>Если каталог журналов задан ({@link ConfigService#getTradeLedgerDir()}), журнал инструмента хранится в файле
+ * {@code <FIGI>.ledger} и дополняется при следующих запусках бота. Иначе журнал хранится в памяти до остановки
+ * приложения.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TradeLedgerService {
+
+    private final ConfigService configService;
+    private final Map<String, TradeLedger> ledgers = new ConcurrentHashMap<>();
+
+    /**
+     * Журнал сделок инструмента. Создаётся, если его нет.
+     */
+    public TradeLedger getLedger(String figi) {
+        return ledgers.computeIfAbsent(figi, this::openLedger);
+    }
+
+    /**
+     * Журнал сделок инструмента или null, если сделок по инструменту не было.
+     */
+    public TradeLedger findLedger(String figi) {
+        var ledger = ledgers.get(figi);
+        if (ledger != null) return ledger;
+        var path = getPath(figi);
+        return path != null && Files.exists(path) ? getLedger(figi) : null;
+    }
+
+    private TradeLedger openLedger(String figi) {
+        var path = getPath(figi);
+        if (path == null) return TradeLedger.inMemory();
+        var ledger = TradeLedger.open(path);
+        log.info("Trade ledger {} opened ({} trades)", path, ledger.size());
+        return ledger;
+    }
+
+    private Path getPath(String figi) {
+        if (!figi.matches("[A-Za-z0-9]+")) throw new IllegalArgumentException("Invalid FIGI: " + figi);
+        var tradeLedgerDir = configService.getTradeLedgerDir();
+        return tradeLedgerDir != null ? Paths.get(tradeLedgerDir, figi + TradeLedger.FILE_EXTENSION) : null;
+    }
+
+    @PreDestroy
+    public void close() {
+        ledgers.values().forEach(TradeLedger::close);
+        ledgers.clear();
+    }
+
+}
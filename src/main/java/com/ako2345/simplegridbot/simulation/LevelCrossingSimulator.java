@@ -0,0 +1,123 @@
+package com.ako2345.simplegridbot.simulation;
+
+import com.ako2345.simplegridbot.bot.GridBot;
+import com.ako2345.simplegridbot.bot.GridBotStatistics;
+import com.ako2345.simplegridbot.model.Order;
+import com.ako2345.simplegridbot.order.FakeOrderManager;
+import com.ako2345.simplegridbot.util.PriceUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Событийная имитация изменения цены. Вместо движения цены с фиксированным шагом для каждого участка пути
+ * (open → low → high → close, а также close → open следующей свечи) вычисляются пересекаемые уровни сетки в порядке их
+ * пересечения, и ордера исполняются только на этих уровнях.
+ *
+ * <p>Уровень считается пересечённым, если цена его достигла: при снижении цены от a до b это уровни из [b, a), при
+ * росте – из (a, b]. Внутри свечи ордер исполняется по цене уровня, при гэпе между свечами – по цене открытия новой
+ * свечи.
+ *
+ * <p>Цена движется по точкам разворота {@link PricePath}. Затраты пропорциональны количеству пересечённых уровней и
+ * точек разворота и не зависят от ширины ценового диапазона.
+ */
+public class LevelCrossingSimulator {
+
+    private final PricePath pricePath;
+
+    public LevelCrossingSimulator(PricePath pricePath) {
+        this.pricePath = pricePath;
+    }
+
+    public GridBotStatistics simulate(GridBot gridBot, FakeOrderManager fakeOrderManager, BigDecimal initialPrice) {
+        var simulation = new Simulation(gridBot, fakeOrderManager, PriceUtils.toTicks(initialPrice));
+        var turningPoints = pricePath.getTurningPoints();
+        for (int i = 0; i < turningPoints.length; i++) {
+            simulation.moveTo(turningPoints[i], pricePath.isGapTurningPoint(i));
+        }
+        var finalPrice = pricePath.getFinalPrice();
+        fakeOrderManager.setSimulatedPrice(finalPrice);
+        return gridBot.getStatistics(finalPrice);
+    }
+
+    /**
+     * Состояние одного прогона симуляции.
+     */
+    private static class Simulation {
+
+        private final GridBot gridBot;
+        private final FakeOrderManager fakeOrderManager;
+        private final BigDecimal lotSize;
+        private final long[] priceLevels;
+        private final List<Order> ordersToExecute = new ArrayList<>();
+        private long currentPrice;
+
+        private Simulation(GridBot gridBot, FakeOrderManager fakeOrderManager, long initialPrice) {
+            this.gridBot = gridBot;
+            this.fakeOrderManager = fakeOrderManager;
+            this.lotSize = gridBot.getLotSize();
+            this.priceLevels = gridBot.getGridManager().getGrid().getPriceLevelTicks();
+            this.currentPrice = initialPrice;
+        }
+
+        /**
+         * Перемещает цену в targetPrice, исполняя ордера на пересечённых уровнях.
+         *
+         * @param isGap Признак скачка цены. Ордера при скачке исполняются по targetPrice, а не по цене уровня.
+         */
+        private void moveTo(long targetPrice, boolean isGap) {
+            if (targetPrice < currentPrice) {
+                // первый уровень ниже текущей цены
+                var index = lowerBound(currentPrice) - 1;
+                while (index >= 0 && priceLevels[index] >= targetPrice) {
+                    executeOrders(priceLevels[index], isGap ? targetPrice : priceLevels[index]);
+                    index--;
+                }
+            } else if (targetPrice > currentPrice) {
+                // первый уровень выше текущей цены
+                var index = lowerBound(currentPrice + 1);
+                while (index < priceLevels.length && priceLevels[index] <= targetPrice) {
+                    executeOrders(priceLevels[index], isGap ? targetPrice : priceLevels[index]);
+                    index++;
+                }
+            }
+            currentPrice = targetPrice;
+        }
+
+        /**
+         * Индекс первого уровня, цена которого не меньше price.
+         */
+        private int lowerBound(long price) {
+            var index = Arrays.binarySearch(priceLevels, price);
+            if (index < 0) return -index - 1;
+            while (index > 0 && priceLevels[index - 1] == price) index--;
+            return index;
+        }
+
+        private void executeOrders(long priceLevel, long executionPrice) {
+            fakeOrderManager.collectOrdersAt(priceLevel, ordersToExecute);
+            if (ordersToExecute.isEmpty()) return;
+
+            var price = PriceUtils.fromTicks(executionPrice);
+            fakeOrderManager.setSimulatedPrice(price);
+            for (Order orderToExecute : ordersToExecute) {
+                var lotsNumber = orderToExecute.getLotsNumber();
+                var baseCurrencyAmount = price.multiply(lotSize).multiply(BigDecimal.valueOf(lotsNumber));
+                gridBot.processOrder(
+                        orderToExecute.getOrderId(),
+                        orderToExecute.getFigi(),
+                        orderToExecute.getDirection(),
+                        orderToExecute.getPrice(),
+                        baseCurrencyAmount,
+                        lotsNumber,
+                        null
+                );
+            }
+            ordersToExecute.clear();
+        }
+
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.ako2345.simplegridbot.simulation;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.bot.grid.Grid;
+import com.ako2345.simplegridbot.model.CandleSeries;
+import com.ako2345.simplegridbot.util.PriceUtils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Путь цены по свечам в тиках (см. {@link PriceUtils}), подготовленный один раз и используемый всеми симуляциями на
+ * этих свечах только для чтения.
+ *
+ * <p>Для каждой свечи хранятся цены open, low, high и close. Кроме того, путь сжимается до точек разворота: участки
+ * нулевой длины отбрасываются, а подряд идущие участки одного направления внутри свечей и между ними объединяются.
+ * Скачки цены между свечами (close → open) сохраняются отдельными участками, так как ордера на них исполняются по цене
+ * открытия.
+ */
+public class PricePath {
+
+    public static final int PRICES_PER_CANDLE = 4;
+
+    private final long[] prices;
+    private final long[] turningPoints;
+    private final BitSet gapTurningPoints;
+    private final BigDecimal finalPrice;
+    private final long fingerprint;
+    private final long checksum;
+
+    private PricePath(long[] prices, long[] turningPoints, BitSet gapTurningPoints, BigDecimal finalPrice) {
+        this.prices = prices;
+        this.turningPoints = turningPoints;
+        this.gapTurningPoints = gapTurningPoints;
+        this.finalPrice = finalPrice;
+        this.fingerprint = computeFingerprint(prices);
+        this.checksum = computeChecksum(prices);
+    }
+
+    public static PricePath of(CandleSeries candles) {
+        if (candles.isEmpty()) throw new IllegalArgumentException("Candles must not be empty");
+
+        var prices = new long[candles.size() * PRICES_PER_CANDLE];
+        var i = 0;
+        for (int candleIndex = 0; candleIndex < candles.size(); candleIndex++) {
+            prices[i++] = candles.getOpen(candleIndex);
+            prices[i++] = candles.getLow(candleIndex);
+            prices[i++] = candles.getHigh(candleIndex);
+            prices[i++] = candles.getClose(candleIndex);
+        }
+        var finalPrice = PriceUtils.fromTicks(candles.getClose(candles.size() - 1));
+        return compileTurningPoints(prices, finalPrice);
+    }
+
+    private static PricePath compileTurningPoints(long[] prices, BigDecimal finalPrice) {
+        var turningPoints = new long[prices.length];
+        var gapTurningPoints = new BitSet();
+        // путь начинается скачком к открытию первой свечи
+        turningPoints[0] = prices[0];
+        gapTurningPoints.set(0);
+        var turningPointsNumber = 1;
+        var direction = 0;
+        for (int i = 1; i < prices.length; i++) {
+            var price = prices[i];
+            var previousPrice = turningPoints[turningPointsNumber - 1];
+            if (price == previousPrice) continue;
+
+            var isGap = i % PRICES_PER_CANDLE == 0;
+            var priceDirection = Long.signum(price - previousPrice);
+            var isPreviousGap = gapTurningPoints.get(turningPointsNumber - 1);
+            if (!isGap && !isPreviousGap && priceDirection == direction) {
+                // продолжение участка того же направления
+                turningPoints[turningPointsNumber - 1] = price;
+            } else {
+                if (isGap) gapTurningPoints.set(turningPointsNumber);
+                turningPoints[turningPointsNumber++] = price;
+                direction = priceDirection;
+            }
+        }
+        return new PricePath(prices, Arrays.copyOf(turningPoints, turningPointsNumber), gapTurningPoints, finalPrice);
+    }
+
+    /**
+     * 64-битный хэш цен с учётом их порядка: каждая цена перемешивается с накопленным значением финализатором
+     * MurmurHash3.
+     */
+    private static long computeFingerprint(long[] prices) {
+        long hash = prices.length;
+        for (long price : prices) {
+            hash = mix(hash * 0x9E3779B97F4A7C15L + price);
+        }
+        return hash;
+    }
+
+    /**
+     * Второй 64-битный хэш цен, независимый от {@link #computeFingerprint(long[])}: другие начальное значение,
+     * множитель и порядок перемешивания.
+     */
+    private static long computeChecksum(long[] prices) {
+        long hash = ~prices.length;
+        for (long price : prices) {
+            hash = mix(hash ^ price) * 0xD6E8FEB86659FD93L + 1;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    /**
+     * Проверяет, что все цены, участвующие в симуляции, переводятся в тики без потери точности. Цены свечей в
+     * {@link CandleSeries} и уровни {@link Grid} уже хранятся в тиках.
+     */
+    public static boolean isApplicable(BigDecimal initialPrice) {
+        if (!PriceUtils.isTickAligned(Constants.BACKTEST_PRICE_STEP)) return false;
+        return PriceUtils.isTickAligned(initialPrice);
+    }
+
+    /**
+     * Цены в тиках: open, low, high и close для каждой свечи подряд.
+     */
+    public long[] getPrices() {
+        return prices;
+    }
+
+    /**
+     * Точки разворота в тиках: цена движется от каждой точки к следующей монотонно.
+     */
+    public long[] getTurningPoints() {
+        return turningPoints;
+    }
+
+    /**
+     * Признак того, что цена переходит к точке разворота с индексом index скачком между свечами.
+     */
+    public boolean isGapTurningPoint(int index) {
+        return gapTurningPoints.get(index);
+    }
+
+    public int getCandlesNumber() {
+        return prices.length / PRICES_PER_CANDLE;
+    }
+
+    public BigDecimal getFinalPrice() {
+        return finalPrice;
+    }
+
+    /**
+     * Хэш цен пути. Результат симуляции зависит от свечей только через цены, поэтому пути с одинаковыми ценами (в том
+     * числе построенные по разным, но совпадающим по ценам свечам) имеют одинаковый хэш.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Второй хэш цен пути. Вместе с {@link #getFingerprint()} даёт 128 бит, поэтому случайное совпадение хэшей разных
+     * путей практически исключено.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+}
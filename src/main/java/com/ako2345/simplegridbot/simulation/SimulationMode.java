@@ -0,0 +1,21 @@
+package com.ako2345.simplegridbot.simulation;
+
+/**
+ * Способ имитации изменения цены при бэктесте.
+ */
+public enum SimulationMode {
+    /**
+     * Эталонная реализация на {@link java.math.BigDecimal}.
+     */
+    REFERENCE,
+    /**
+     * Ядро на целочисленных тиках ({@link TickSimulator}). Результаты совпадают с {@link #REFERENCE}.
+     */
+    TICKS,
+    /**
+     * Событийная имитация по пересечениям уровней сетки ({@link LevelCrossingSimulator}). Не зависит от
+     * {@link com.ako2345.simplegridbot.Constants#BACKTEST_PRICE_STEP}, поэтому результаты отличаются от
+     * {@link #REFERENCE}: исполняются все ордера, цену которых достигла свеча.
+     */
+    LEVEL_CROSSING
+}
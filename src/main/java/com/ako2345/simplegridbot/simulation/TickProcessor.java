@@ -0,0 +1,67 @@
+package com.ako2345.simplegridbot.simulation;
+
+import com.ako2345.simplegridbot.bot.GridBot;
+import com.ako2345.simplegridbot.bot.grid.Grid;
+import com.ako2345.simplegridbot.model.Order;
+import com.ako2345.simplegridbot.order.FakeOrderManager;
+import com.ako2345.simplegridbot.util.PriceUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Обработка последовательности цен в тиках одним прогоном симуляции: при смене ценового диапазона сетки исполняются
+ * ордера, цену которых пересекло изменение цены.
+ */
+class TickProcessor {
+
+    private final GridBot gridBot;
+    private final FakeOrderManager fakeOrderManager;
+    private final BigDecimal lotSize;
+    private final Grid grid;
+    private final List<Order> ordersToExecute = new ArrayList<>();
+    private long processedPrice;
+    private int processedPriceRangeIndex;
+
+    TickProcessor(GridBot gridBot, FakeOrderManager fakeOrderManager, long initialPrice) {
+        this.gridBot = gridBot;
+        this.fakeOrderManager = fakeOrderManager;
+        this.lotSize = gridBot.getLotSize();
+        this.grid = gridBot.getGridManager().getGrid();
+        this.processedPrice = initialPrice;
+        this.processedPriceRangeIndex = grid.getPriceRangeIndex(initialPrice);
+    }
+
+    long getProcessedPrice() {
+        return processedPrice;
+    }
+
+    void processPrice(long price) {
+        var priceRangeIndex = grid.getPriceRangeIndex(price);
+        if (priceRangeIndex != processedPriceRangeIndex) {
+            fakeOrderManager.collectOrdersToExecute(price, processedPrice, ordersToExecute);
+            if (!ordersToExecute.isEmpty()) {
+                var currentPrice = PriceUtils.fromTicks(price);
+                fakeOrderManager.setSimulatedPrice(currentPrice);
+                for (Order orderToExecute : ordersToExecute) {
+                    var lotsNumber = orderToExecute.getLotsNumber();
+                    var baseCurrencyAmount = currentPrice.multiply(lotSize).multiply(BigDecimal.valueOf(lotsNumber));
+                    gridBot.processOrder(
+                            orderToExecute.getOrderId(),
+                            orderToExecute.getFigi(),
+                            orderToExecute.getDirection(),
+                            orderToExecute.getPrice(),
+                            baseCurrencyAmount,
+                            lotsNumber,
+                            null
+                    );
+                }
+                ordersToExecute.clear();
+            }
+        }
+        processedPrice = price;
+        processedPriceRangeIndex = priceRangeIndex;
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.ako2345.simplegridbot.simulation;
+
+import com.ako2345.simplegridbot.bot.GridBot;
+import com.ako2345.simplegridbot.bot.GridBotStatistics;
+import com.ako2345.simplegridbot.job.JobProgressListener;
+import com.ako2345.simplegridbot.order.FakeOrderManager;
+import com.ako2345.simplegridbot.ticklog.TickConsumer;
+import com.ako2345.simplegridbot.ticklog.TickLogReader;
+import com.ako2345.simplegridbot.util.PriceUtils;
+
+import java.math.BigDecimal;
+
+/**
+ * Имитация по записанным последним ценам инструмента (см. {@link com.ako2345.simplegridbot.ticklog.TickLog}). Цены
+ * обрабатываются в порядке записи без пауз и без промежуточных цен между ними: при скачке цены исполняются все ордера,
+ * цену которых пересекло изменение цены, по новой цене.
+ *
+ * <p>Журнал читается по сегментам, отображённым в память, поэтому количество цен ограничено только размером журнала.
+ */
+public class TickReplaySimulator {
+
+    private final TickLogReader tickLogReader;
+    private final String figi;
+    private long ticksNumber = 0;
+
+    public TickReplaySimulator(TickLogReader tickLogReader, String figi) {
+        this.tickLogReader = tickLogReader;
+        this.figi = figi;
+    }
+
+    public GridBotStatistics simulate(GridBot gridBot, FakeOrderManager fakeOrderManager, BigDecimal initialPrice, JobProgressListener listener) {
+        var processor = new TickProcessor(gridBot, fakeOrderManager, PriceUtils.toTicks(initialPrice));
+        TickConsumer consumer = (timestamp, price) -> processor.processPrice(price);
+        var segments = tickLogReader.getSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            ticksNumber += tickLogReader.replay(segments.get(i), figi, consumer);
+            listener.onProgress("segments", i + 1, segments.size());
+        }
+        var finalPrice = PriceUtils.fromTicks(processor.getProcessedPrice());
+        fakeOrderManager.setSimulatedPrice(finalPrice);
+        return gridBot.getStatistics(finalPrice);
+    }
+
+    /**
+     * Количество обработанных цен.
+     */
+    public long getTicksNumber() {
+        return ticksNumber;
+    }
+
+}
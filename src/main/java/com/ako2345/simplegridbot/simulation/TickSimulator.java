@@ -0,0 +1,62 @@
+package com.ako2345.simplegridbot.simulation;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.bot.GridBot;
+import com.ako2345.simplegridbot.bot.GridBotStatistics;
+import com.ako2345.simplegridbot.order.FakeOrderManager;
+import com.ako2345.simplegridbot.util.PriceUtils;
+
+import java.math.BigDecimal;
+
+/**
+ * Ядро имитации изменения цены на целочисленных тиках (см. {@link PriceUtils}).
+ *
+ * <p>Цены свечей ({@link PricePath}), уровни сетки и шаг изменения цены переводятся в тики один раз, после чего цена
+ * движется по свече (open → low → high → close) с шагом {@link Constants#BACKTEST_PRICE_STEP} без создания объектов. {@link BigDecimal}
+ * используется только при исполнении ордеров, поэтому результаты совпадают с эталонной реализацией
+ * {@link com.ako2345.simplegridbot.service.BacktestService}.
+ */
+public class TickSimulator {
+
+    private final PricePath pricePath;
+
+    public TickSimulator(PricePath pricePath) {
+        this.pricePath = pricePath;
+    }
+
+    public GridBotStatistics simulate(GridBot gridBot, FakeOrderManager fakeOrderManager, BigDecimal initialPrice) {
+        var simulation = new TickProcessor(gridBot, fakeOrderManager, PriceUtils.toTicks(initialPrice));
+        var priceStep = PriceUtils.toTicks(Constants.BACKTEST_PRICE_STEP);
+        var prices = pricePath.getPrices();
+        for (int i = 0; i < prices.length; i += PricePath.PRICES_PER_CANDLE) {
+            var open = prices[i];
+            var low = prices[i + 1];
+            var high = prices[i + 2];
+            var close = prices[i + 3];
+
+            var price = open;
+            simulation.processPrice(price);
+            while ((price -= priceStep) >= low) {
+                simulation.processPrice(price);
+            }
+
+            price = low;
+            simulation.processPrice(price);
+            while ((price += priceStep) <= high) {
+                simulation.processPrice(price);
+            }
+
+            price = high;
+            simulation.processPrice(price);
+            while ((price -= priceStep) >= close) {
+                simulation.processPrice(price);
+            }
+
+            simulation.processPrice(close);
+        }
+        var finalPrice = pricePath.getFinalPrice();
+        fakeOrderManager.setSimulatedPrice(finalPrice);
+        return gridBot.getStatistics(finalPrice);
+    }
+
+}
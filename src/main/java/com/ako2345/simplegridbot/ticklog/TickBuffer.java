@@ -0,0 +1,85 @@
+package com.ako2345.simplegridbot.ticklog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ограниченная неблокирующая очередь цен для нескольких писателей и одного читателя. Цены хранятся в массивах
+ * примитивов, заранее выделенных на всю ёмкость очереди, поэтому ни добавление, ни извлечение не создают объектов.
+ *
+ * <p>Каждая ячейка хранит номер позиции, для которой она готова: писатель занимает позицию сдвигом хвоста (CAS),
+ * заполняет ячейку и публикует её, читатель забирает ячейки по порядку и освобождает их для следующего круга.
+ */
+public class TickBuffer {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final int[] figiIds;
+    private final long[] timestamps;
+    private final long[] units;
+    private final int[] nanos;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0;
+
+    /**
+     * @param capacity Ёмкость очереди, степень двойки.
+     */
+    public TickBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Tick buffer capacity must be a power of two");
+        }
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.figiIds = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.units = new long[capacity];
+        this.nanos = new int[capacity];
+    }
+
+    /**
+     * Добавляет цену, не ожидая освобождения места.
+     *
+     * @return false, если очередь заполнена.
+     */
+    public boolean offer(int figiId, long timestamp, long units, int nanos) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) (position & mask);
+            var difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+        this.figiIds[index] = figiId;
+        this.timestamps[index] = timestamp;
+        this.units[index] = units;
+        this.nanos[index] = nanos;
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Передаёт в writer все опубликованные цены. Вызывается только из одного потока.
+     *
+     * @return Количество переданных цен.
+     */
+    public int drainTo(TickLogWriter writer) {
+        var drainedNumber = 0;
+        while (true) {
+            var index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) return drainedNumber;
+            writer.write(figiIds[index], timestamps[index], units[index], nanos[index]);
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+            drainedNumber++;
+        }
+    }
+
+}
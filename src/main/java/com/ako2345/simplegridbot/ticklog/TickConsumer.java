@@ -0,0 +1,12 @@
+package com.ako2345.simplegridbot.ticklog;
+
+@FunctionalInterface
+public interface TickConsumer {
+
+    /**
+     * @param timestamp Время в наносекундах от начала эпохи.
+     * @param price     Цена в тиках (см. {@link com.ako2345.simplegridbot.util.PriceUtils}).
+     */
+    void accept(long timestamp, long price);
+
+}
@@ -0,0 +1,64 @@
+package com.ako2345.simplegridbot.ticklog;
+
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Формат журнала последних цен.
+ *
+ * <p>Журнал состоит из сегментов – файлов {@code <yyyy-MM-dd>-<NNN>.ticks} фиксированного размера. Сегменты
+ * упорядочены по имени: по дате (UTC), затем по номеру сегмента за день. Порядок байтов – little-endian.
+ *
+ * <p>Сегмент начинается с заголовка размером {@link #HEADER_SIZE}:
+ * <ul>
+ *     <li>0: int – {@link #MAGIC};</li>
+ *     <li>4: int – версия формата {@link #VERSION};</li>
+ *     <li>8: int – размер записи {@link #RECORD_SIZE};</li>
+ *     <li>12: int – количество инструментов в таблице;</li>
+ *     <li>64: таблица инструментов – {@link #MAX_FIGIS_NUMBER} FIGI в ASCII, по {@link #FIGI_SIZE} байт, дополненных
+ *     нулями. Идентификатор инструмента – номер FIGI в таблице, начиная с 1.</li>
+ * </ul>
+ *
+ * <p>За заголовком следуют записи размером {@link #RECORD_SIZE}: long – время в наносекундах от начала эпохи, long –
+ * целая часть цены (units), int – дробная часть цены в миллиардных (nanos), int – идентификатор инструмента. Запись
+ * с нулевым идентификатором инструмента и все следующие за ней не заполнены.
+ */
+public class TickLog {
+
+    public static final int MAGIC = 0x4B434954;
+    public static final int VERSION = 1;
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    public static final String SEGMENT_FILE_EXTENSION = ".ticks";
+
+    public static final int MAGIC_OFFSET = 0;
+    public static final int VERSION_OFFSET = 4;
+    public static final int RECORD_SIZE_OFFSET = 8;
+    public static final int FIGIS_NUMBER_OFFSET = 12;
+    public static final int FIGIS_OFFSET = 64;
+    public static final int FIGI_SIZE = 16;
+    public static final int MAX_FIGIS_NUMBER = 1024;
+    public static final int HEADER_SIZE = FIGIS_OFFSET + FIGI_SIZE * MAX_FIGIS_NUMBER;
+
+    public static final int RECORD_SIZE = 24;
+    public static final int TIMESTAMP_OFFSET = 0;
+    public static final int UNITS_OFFSET = 8;
+    public static final int NANOS_OFFSET = 16;
+    public static final int FIGI_ID_OFFSET = 20;
+
+    private static final long NANOS_PER_UNIT = 1_000_000_000L;
+
+    /**
+     * Цена в тиках (см. {@link com.ako2345.simplegridbot.util.PriceUtils}): точность тиков совпадает с точностью
+     * nanos.
+     */
+    public static long toTicks(long units, int nanos) {
+        return units * NANOS_PER_UNIT + nanos;
+    }
+
+    static byte[] encodeFigi(String figi) {
+        var bytes = figi.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > FIGI_SIZE) throw new IllegalArgumentException("FIGI is too long: " + figi);
+        return bytes;
+    }
+
+}
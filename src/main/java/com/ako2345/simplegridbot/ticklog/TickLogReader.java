@@ -0,0 +1,134 @@
+package com.ako2345.simplegridbot.ticklog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.stream.Collectors;
+
+/**
+ * Чтение журнала последних цен (см. {@link TickLog}). Сегменты отображаются в память и читаются напрямую, без
+ * копирования записей и создания объектов на каждую запись, поэтому размер журнала не ограничен доступной памятью.
+ * Сегменты, в таблице которых нет нужного инструмента, пропускаются без чтения записей.
+ */
+public class TickLogReader {
+
+    private final List<Path> segments;
+
+    /**
+     * @param path Файл сегмента или каталог с сегментами.
+     */
+    public TickLogReader(Path path) {
+        if (Files.isDirectory(path)) {
+            try (var files = Files.list(path)) {
+                segments = files
+                        .filter(file -> file.getFileName().toString().endsWith(TickLog.SEGMENT_FILE_EXTENSION))
+                        .sorted()
+                        .collect(Collectors.toList());
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        } else if (Files.isRegularFile(path)) {
+            segments = List.of(path);
+        } else {
+            throw new IllegalArgumentException("Tick log not found: " + path);
+        }
+    }
+
+    public List<Path> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Передаёт в consumer цены инструмента из сегмента в порядке записи.
+     *
+     * @return Количество прочитанных цен.
+     */
+    public long replay(Path segment, String figi, TickConsumer consumer) {
+        return read(segment, figi, consumer, Long.MAX_VALUE);
+    }
+
+    /**
+     * Передаёт в consumer цены инструмента из всех сегментов.
+     *
+     * @return Количество прочитанных цен.
+     */
+    public long replay(String figi, TickConsumer consumer) {
+        var ticksNumber = 0L;
+        for (Path segment : segments) {
+            ticksNumber += replay(segment, figi, consumer);
+        }
+        return ticksNumber;
+    }
+
+    /**
+     * @return Первая цена инструмента в тиках или пустое значение, если цен инструмента в журнале нет.
+     */
+    public OptionalLong getFirstPrice(String figi) {
+        var firstPrice = new long[1];
+        for (Path segment : segments) {
+            if (read(segment, figi, (timestamp, price) -> firstPrice[0] = price, 1) > 0) {
+                return OptionalLong.of(firstPrice[0]);
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    private static long read(Path segment, String figi, TickConsumer consumer, long maxTicksNumber) {
+        var buffer = map(segment);
+        var figiId = findFigiId(buffer, figi);
+        if (figiId == 0) return 0;
+
+        var ticksNumber = 0L;
+        var limit = buffer.limit() - TickLog.RECORD_SIZE;
+        for (int position = TickLog.HEADER_SIZE; position <= limit && ticksNumber < maxTicksNumber; position += TickLog.RECORD_SIZE) {
+            var recordFigiId = buffer.getInt(position + TickLog.FIGI_ID_OFFSET);
+            if (recordFigiId == 0) break;
+            if (recordFigiId == figiId) {
+                var timestamp = buffer.getLong(position + TickLog.TIMESTAMP_OFFSET);
+                var units = buffer.getLong(position + TickLog.UNITS_OFFSET);
+                var nanos = buffer.getInt(position + TickLog.NANOS_OFFSET);
+                consumer.accept(timestamp, TickLog.toTicks(units, nanos));
+                ticksNumber++;
+            }
+        }
+        return ticksNumber;
+    }
+
+    private static ByteBuffer map(Path segment) {
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(TickLog.BYTE_ORDER);
+            if (buffer.limit() < TickLog.HEADER_SIZE ||
+                    buffer.getInt(TickLog.MAGIC_OFFSET) != TickLog.MAGIC ||
+                    buffer.getInt(TickLog.VERSION_OFFSET) != TickLog.VERSION ||
+                    buffer.getInt(TickLog.RECORD_SIZE_OFFSET) != TickLog.RECORD_SIZE) {
+                throw new IllegalArgumentException("Unsupported tick log segment: " + segment);
+            }
+            return buffer;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * @return Идентификатор инструмента в сегменте или 0, если инструмента в сегменте нет.
+     */
+    private static int findFigiId(ByteBuffer buffer, String figi) {
+        var encodedFigi = Arrays.copyOf(TickLog.encodeFigi(figi), TickLog.FIGI_SIZE);
+        var figisNumber = Math.min(buffer.getInt(TickLog.FIGIS_NUMBER_OFFSET), TickLog.MAX_FIGIS_NUMBER);
+        for (int i = 0; i < figisNumber; i++) {
+            var offset = TickLog.FIGIS_OFFSET + i * TickLog.FIGI_SIZE;
+            var j = 0;
+            while (j < TickLog.FIGI_SIZE && buffer.get(offset + j) == encodedFigi[j]) j++;
+            if (j == TickLog.FIGI_SIZE) return i + 1;
+        }
+        return 0;
+    }
+
+}
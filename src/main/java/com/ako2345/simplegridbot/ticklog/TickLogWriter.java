@@ -0,0 +1,150 @@
+package com.ako2345.simplegridbot.ticklog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Запись журнала последних цен (см. {@link TickLog}) в сегменты, отображённые в память. Новый сегмент начинается с
+ * наступлением нового дня (UTC) по времени цены, а также при заполнении сегмента или его таблицы инструментов. Цены
+ * записываются в порядке поступления, поэтому цены разных инструментов на границе дней могут попасть в сегмент
+ * следующего дня.
+ *
+ * <p>Инструменты передаются идентификаторами, которые назначает вызывающая сторона: FIGI по идентификатору
+ * возвращает figis. Идентификаторы в сегменте назначаются при первой записи цены инструмента в сегмент. Запись цены
+ * не создаёт объектов, кроме записи первой цены инструмента в сегмент. Класс не потокобезопасен: писать должен один
+ * поток.
+ */
+@Slf4j
+public class TickLogWriter implements AutoCloseable {
+
+    private static final long NANOS_PER_DAY = 86_400_000_000_000L;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final IntFunction<String> figis;
+    private int[] segmentFigiIds = new int[16];
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentDay = Long.MIN_VALUE;
+    private int segmentFigisNumber;
+
+    /**
+     * @param segmentSize Размер файла сегмента в байтах.
+     * @param figis       FIGI по идентификатору инструмента.
+     */
+    public TickLogWriter(Path directory, long segmentSize, IntFunction<String> figis) {
+        if (segmentSize < TickLog.HEADER_SIZE + TickLog.RECORD_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid tick log segment size: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.figis = figis;
+    }
+
+    /**
+     * @param figiId    Идентификатор инструмента, неотрицательный.
+     * @param timestamp Время в наносекундах от начала эпохи.
+     */
+    public void write(int figiId, long timestamp, long units, int nanos) {
+        var day = Math.floorDiv(timestamp, NANOS_PER_DAY);
+        // запоздавшие цены предыдущего дня записываются в текущий сегмент
+        if (segment == null || day > segmentDay || segment.remaining() < TickLog.RECORD_SIZE) {
+            openSegment(Math.max(day, segmentDay));
+        }
+        if (figiId >= segmentFigiIds.length) {
+            segmentFigiIds = Arrays.copyOf(segmentFigiIds, Math.max(figiId + 1, segmentFigiIds.length * 2));
+        }
+        var segmentFigiId = segmentFigiIds[figiId];
+        if (segmentFigiId == 0) {
+            if (segmentFigisNumber == TickLog.MAX_FIGIS_NUMBER) openSegment(segmentDay);
+            segmentFigiId = addSegmentFigi(figiId);
+        }
+        var position = segment.position();
+        segment.putLong(position + TickLog.TIMESTAMP_OFFSET, timestamp);
+        segment.putLong(position + TickLog.UNITS_OFFSET, units);
+        segment.putInt(position + TickLog.NANOS_OFFSET, nanos);
+        // идентификатор инструмента записывается последним: запись с нулевым идентификатором считается незаполненной
+        segment.putInt(position + TickLog.FIGI_ID_OFFSET, segmentFigiId);
+        segment.position(position + TickLog.RECORD_SIZE);
+    }
+
+    /**
+     * Сбрасывает записанные цены на диск.
+     */
+    public void flush() {
+        if (segment != null) segment.force();
+    }
+
+    @Override
+    public void close() {
+        closeSegment();
+    }
+
+    private int addSegmentFigi(int figiId) {
+        var offset = TickLog.FIGIS_OFFSET + segmentFigisNumber * TickLog.FIGI_SIZE;
+        var figi = TickLog.encodeFigi(figis.apply(figiId));
+        for (int i = 0; i < figi.length; i++) {
+            segment.put(offset + i, figi[i]);
+        }
+        segmentFigisNumber++;
+        segment.putInt(TickLog.FIGIS_NUMBER_OFFSET, segmentFigisNumber);
+        segmentFigiIds[figiId] = segmentFigisNumber;
+        return segmentFigisNumber;
+    }
+
+    private void openSegment(long day) {
+        closeSegment();
+        try {
+            Files.createDirectories(directory);
+            var date = LocalDate.ofEpochDay(day);
+            var path = getSegmentPath(date);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            segment.order(TickLog.BYTE_ORDER);
+            segment.putInt(TickLog.MAGIC_OFFSET, TickLog.MAGIC);
+            segment.putInt(TickLog.VERSION_OFFSET, TickLog.VERSION);
+            segment.putInt(TickLog.RECORD_SIZE_OFFSET, TickLog.RECORD_SIZE);
+            segment.putInt(TickLog.FIGIS_NUMBER_OFFSET, 0);
+            segment.position(TickLog.HEADER_SIZE);
+            segmentDay = day;
+            segmentFigisNumber = 0;
+            Arrays.fill(segmentFigiIds, 0);
+            log.info("Tick log segment {} created", path);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Следующий свободный номер сегмента за день: сегменты предыдущих запусков не перезаписываются.
+     */
+    private Path getSegmentPath(LocalDate date) {
+        for (int segmentNumber = 0; ; segmentNumber++) {
+            var path = directory.resolve(String.format("%s-%03d%s", date, segmentNumber, TickLog.SEGMENT_FILE_EXTENSION));
+            if (!Files.exists(path)) return path;
+        }
+    }
+
+    private void closeSegment() {
+        if (segment == null) return;
+        segment.force();
+        segment = null;
+        try {
+            channel.close();
+        } catch (IOException exception) {
+            log.warn("Can not close tick log segment: {}", exception.toString());
+        }
+        channel = null;
+    }
+
+}
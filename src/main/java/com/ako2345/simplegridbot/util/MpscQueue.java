@@ -0,0 +1,96 @@
+package com.ako2345.simplegridbot.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ограниченная неблокирующая очередь для нескольких писателей и одного читателя. Ячейки выделены заранее на всю ёмкость
+ * очереди.
+ *
+ * <p>Каждая ячейка хранит номер позиции, для которой она готова: писатель занимает позицию сдвигом хвоста (CAS),
+ * заполняет ячейку и публикует её, читатель забирает ячейки по порядку и освобождает их для следующего круга (как в
+ * {@link com.ako2345.simplegridbot.ticklog.TickBuffer}).
+ */
+public class MpscQueue<E> {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final Object[] elements;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+
+    /**
+     * @param capacity Ёмкость очереди, степень двойки.
+     */
+    public MpscQueue(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Queue capacity must be a power of two");
+        }
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.elements = new Object[capacity];
+    }
+
+    /**
+     * Добавляет элемент, не ожидая освобождения места.
+     *
+     * @return false, если очередь заполнена.
+     */
+    public boolean offer(E element) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) (position & mask);
+            var difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+        elements[index] = element;
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Извлекает опубликованный элемент. Вызывается только из одного потока одновременно.
+     *
+     * @return null, если опубликованных элементов нет.
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        var position = head;
+        var index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) return null;
+        var element = (E) elements[index];
+        elements[index] = null;
+        sequences.lazySet(index, position + mask + 1);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Есть ли опубликованные элементы. Вызывается читателем.
+     */
+    public boolean isEmpty() {
+        var position = head;
+        return sequences.get((int) (position & mask)) != position + 1;
+    }
+
+    /**
+     * Количество занятых ячеек, включая занятые, но ещё не опубликованные.
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.ako2345.simplegridbot.util;
+
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static com.ako2345.simplegridbot.Constants.TICK_SCALE;
+
+/**
+ * Перевод цен в целочисленные тики и обратно. Один тик равен 10^(-{@link com.ako2345.simplegridbot.Constants#TICK_SCALE}),
+ * что совпадает с точностью {@link ru.tinkoff.piapi.contract.v1.Quotation}.
+ */
+public class PriceUtils {
+
+    /**
+     * Проверяет, что цена переводится в тики без потери точности.
+     */
+    public static boolean isTickAligned(BigDecimal price) {
+        if (price.stripTrailingZeros().scale() > TICK_SCALE) return false;
+        return price.movePointRight(TICK_SCALE).abs().compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0;
+    }
+
+    /**
+     * Переводит цену в тики. Знаки после {@link com.ako2345.simplegridbot.Constants#TICK_SCALE} отбрасываются.
+     */
+    public static long toTicks(BigDecimal price) {
+        return toTicks(price, RoundingMode.DOWN);
+    }
+
+    public static long toTicks(BigDecimal price, RoundingMode roundingMode) {
+        return price.setScale(TICK_SCALE, roundingMode).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Переводит цену в тики без создания объектов: точность тиков совпадает с точностью nano.
+     */
+    public static long toTicks(Quotation price) {
+        return price.getUnits() * 1_000_000_000L + price.getNano();
+    }
+
+    public static BigDecimal fromTicks(long ticks) {
+        return BigDecimal.valueOf(ticks, TICK_SCALE);
+    }
+
+}
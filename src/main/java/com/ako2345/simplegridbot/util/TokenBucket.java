@@ -0,0 +1,44 @@
+package com.ako2345.simplegridbot.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение частоты запросов по алгоритму token bucket: токены пополняются с постоянной скоростью до ёмкости
+ * корзины, каждый запрос забирает один токен. Если токенов нет, поток ждёт, пока его токен не будет пополнен. Ожидание
+ * происходит вне блокировки, поэтому очередь потоков обслуживается в порядке вызова {@link #acquire()}.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNanosecond;
+    private double tokens;
+    private long refillTime;
+
+    /**
+     * @param capacity        Ёмкость корзины – максимальное количество запросов подряд без ожидания.
+     * @param tokensPerMinute Скорость пополнения корзины.
+     */
+    public TokenBucket(int capacity, int tokensPerMinute) {
+        if (capacity <= 0 || tokensPerMinute <= 0) {
+            throw new IllegalArgumentException("Token bucket capacity and rate must be positive");
+        }
+        this.capacity = capacity;
+        this.tokensPerNanosecond = tokensPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.tokens = capacity;
+        this.refillTime = System.nanoTime();
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitTime;
+        synchronized (this) {
+            var now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refillTime) * tokensPerNanosecond);
+            refillTime = now;
+            // токен может быть взят в долг: отрицательный остаток определяет время ожидания
+            tokens -= 1;
+            waitTime = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNanosecond);
+        }
+        if (waitTime > 0) TimeUnit.NANOSECONDS.sleep(waitTime);
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.ako2345.simplegridbot.bot;
+
+import com.ako2345.simplegridbot.Constants;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GridBotEventLoopTest {
+
+    @Test
+    public void testEventsAreProcessedInOrderByBatches() {
+        var executor = new ManualExecutor();
+        var eventLoop = new GridBotEventLoop("test", executor, 1 << 8);
+        var events = new ArrayList<Integer>();
+        var eventsNumber = Constants.GRID_BOT_EVENT_BATCH_SIZE + 10;
+        for (int i = 0; i < eventsNumber; i++) {
+            var event = i;
+            eventLoop.execute(() -> events.add(event));
+        }
+        // обработка планируется один раз, пока запланированная не выполнена
+        assertEquals(1, executor.tasks.size());
+
+        executor.runNext();
+        assertEquals(Constants.GRID_BOT_EVENT_BATCH_SIZE, events.size());
+        // после пакета цикл уступает поток и планирует обработку оставшихся событий
+        assertEquals(1, executor.tasks.size());
+
+        executor.runNext();
+        assertEquals(eventsNumber, events.size());
+        for (int i = 0; i < eventsNumber; i++) {
+            assertEquals(i, (int) events.get(i));
+        }
+        assertEquals(0, executor.tasks.size());
+        assertEquals(eventsNumber, eventLoop.getStatistics().getProcessedNumber());
+    }
+
+    @Test
+    public void testFailedEventDoesNotStopProcessing() {
+        var executor = new ManualExecutor();
+        var eventLoop = new GridBotEventLoop("test", executor, 1 << 4);
+        var events = new ArrayList<Integer>();
+        eventLoop.execute(() -> events.add(1));
+        eventLoop.execute(() -> {
+            throw new IllegalStateException("Event failed");
+        });
+        eventLoop.execute(() -> events.add(3));
+        var future = eventLoop.call(() -> {
+            throw new IllegalStateException("Call failed");
+        });
+
+        executor.runAll();
+        assertEquals(List.of(1, 3), events);
+        var exception = assertThrows(ExecutionException.class, future::get);
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testErrorInEventDoesNotWedgeLoop() {
+        var executor = new ManualExecutor();
+        var eventLoop = new GridBotEventLoop("test", executor, 1 << 4);
+        var events = new ArrayList<Integer>();
+        eventLoop.execute(() -> {
+            throw new StackOverflowError();
+        });
+        eventLoop.execute(() -> events.add(2));
+
+        // ошибка пробрасывается в пул, но обработка оставшихся событий планируется снова
+        assertThrows(StackOverflowError.class, executor::runNext);
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(List.of(2), events);
+
+        eventLoop.execute(() -> events.add(3));
+        executor.runAll();
+        assertEquals(List.of(2, 3), events);
+        assertEquals(3, eventLoop.getStatistics().getProcessedNumber());
+    }
+
+    @Test
+    public void testClosedLoopProcessesQueuedEventsAndRejectsNewOnes() throws Exception {
+        var executor = new ManualExecutor();
+        var eventLoop = new GridBotEventLoop("test", executor, 1 << 4);
+        var events = new ArrayList<Integer>();
+        eventLoop.execute(() -> events.add(1));
+        var future = eventLoop.call(() -> 2);
+
+        eventLoop.close();
+        assertTrue(eventLoop.isClosed());
+        assertFalse(eventLoop.offer(() -> events.add(3)));
+        var rejectedFuture = eventLoop.call(() -> 4);
+        var exception = assertThrows(ExecutionException.class, rejectedFuture::get);
+        assertTrue(exception.getCause() instanceof RejectedExecutionException);
+
+        executor.runAll();
+        assertEquals(List.of(1), events);
+        assertEquals(2, (int) future.get());
+        assertEquals(2, eventLoop.getStatistics().getSubmittedNumber());
+    }
+
+    @Test
+    public void testFullQueueDropsEventAfterTimeout() {
+        var executor = new ManualExecutor();
+        var eventLoop = new GridBotEventLoop("test", executor, 1 << 1);
+        var events = new ArrayList<Integer>();
+        for (int i = 0; i < 2; i++) {
+            var event = i;
+            assertTrue(eventLoop.offer(() -> events.add(event)));
+        }
+        assertFalse(eventLoop.offer(() -> events.add(2)));
+
+        executor.runAll();
+        assertEquals(List.of(0, 1), events);
+        var statistics = eventLoop.getStatistics();
+        assertEquals(1, statistics.getQueueFullNumber());
+        assertEquals(1, statistics.getDroppedNumber());
+        assertEquals(2, statistics.getMaxQueueSize());
+    }
+
+    @Test
+    public void testConcurrentProducersAreProcessedSequentially() throws Exception {
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var producersNumber = 4;
+            var eventsNumber = 10_000;
+            // очередь вмещает все события, поэтому ни одно не отбрасывается
+            var eventLoop = new GridBotEventLoop("test", executor, 1 << 16);
+            // события обрабатываются последовательно, поэтому счётчики не требуют синхронизации
+            var nextEvents = new int[producersNumber];
+            var isOrdered = new boolean[]{true};
+            var producers = new ArrayList<Thread>();
+            for (int producer = 0; producer < producersNumber; producer++) {
+                var producerIndex = producer;
+                var thread = new Thread(() -> {
+                    for (int i = 0; i < eventsNumber; i++) {
+                        var event = i;
+                        eventLoop.execute(() -> {
+                            if (nextEvents[producerIndex]++ != event) isOrdered[0] = false;
+                        });
+                    }
+                });
+                thread.start();
+                producers.add(thread);
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            // последнее событие выполняется после всех добавленных ранее
+            eventLoop.call(() -> null).get(10, TimeUnit.SECONDS);
+
+            assertTrue(isOrdered[0]);
+            for (int nextEvent : nextEvents) {
+                assertEquals(eventsNumber, nextEvent);
+            }
+            assertEquals(0, eventLoop.getStatistics().getDroppedNumber());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Пул, задачи которого выполняются явно из теста.
+     */
+    private static class ManualExecutor implements Executor {
+
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runNext() {
+            tasks.poll().run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                runNext();
+            }
+        }
+
+    }
+
+}
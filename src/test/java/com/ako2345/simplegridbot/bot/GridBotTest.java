@@ -0,0 +1,369 @@
+package com.ako2345.simplegridbot.bot;
+
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.model.Order;
+import com.ako2345.simplegridbot.model.OrderStatus;
+import com.ako2345.simplegridbot.model.OrdersCancellation;
+import com.ako2345.simplegridbot.model.Transaction;
+import com.ako2345.simplegridbot.model.TransactionPair;
+import com.ako2345.simplegridbot.order.AsyncOrderManager;
+import com.ako2345.simplegridbot.order.OrderManager;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GridBotTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final BigDecimal LOT_SIZE = BigDecimal.TEN;
+    private static final BigDecimal INITIAL_PRICE = new BigDecimal("150");
+    // сетка со ступенью 10: 100, 110, ..., 200
+    private static final GridBotConfig CONFIG = new GridBotConfig(FIGI, 100, 200, 11, 1000000);
+
+    @Test
+    public void testAsyncLimitOrdersArePlacedOncePerLevel() {
+        var orderManager = new StubAsyncOrderManager();
+        var gridBot = new GridBot(CONFIG, orderManager, LOT_SIZE, INITIAL_PRICE);
+
+        gridBot.createNewLimitOrders(INITIAL_PRICE);
+        assertEquals(11, orderManager.placements.size());
+        assertEquals(Direction.BUY, orderManager.placements.get(4).direction);
+        assertEquals(Direction.SELL, orderManager.placements.get(5).direction);
+        // до ответа уровни отмечены как выставляемые и повторно не выставляются
+        gridBot.createNewLimitOrders(INITIAL_PRICE);
+        assertEquals(11, orderManager.placements.size());
+        assertTrue(gridBot.getLevelsWithLimitOrders().isEmpty());
+
+        orderManager.complete(0, "order-0");
+        assertEquals(createBitSet(0), gridBot.getLevelsWithLimitOrders());
+        assertEquals("order-0", gridBot.getLimitOrderId(0));
+        assertEquals(Direction.BUY, gridBot.getLimitOrderDirection(0));
+    }
+
+    @Test
+    public void testFailedAsyncLimitOrderLeavesLevelFree() {
+        var orderManager = new StubAsyncOrderManager();
+        var gridBot = new GridBot(CONFIG, orderManager, LOT_SIZE, INITIAL_PRICE);
+        gridBot.createNewLimitOrders(INITIAL_PRICE);
+
+        orderManager.fail(1);
+        assertTrue(gridBot.getLevelsWithLimitOrders().isEmpty());
+        assertNull(gridBot.getLimitOrderId(1));
+
+        // свободный уровень выставляется снова, остальные ещё ожидают ответа
+        gridBot.createNewLimitOrders(INITIAL_PRICE);
+        assertEquals(12, orderManager.placements.size());
+        assertEquals(1, orderManager.getLevelIndex(orderManager.placements.size() - 1));
+    }
+
+    @Test
+    public void testAsyncLimitOrderResultAfterCloseIsIgnored() {
+        var orderManager = new StubAsyncOrderManager();
+        var gridBot = new GridBot(CONFIG, orderManager, LOT_SIZE, INITIAL_PRICE);
+        gridBot.createNewLimitOrders(INITIAL_PRICE);
+
+        gridBot.close(false);
+        orderManager.complete(0, "order-0");
+        orderManager.placements.get(1).future.cancel(false);
+        assertTrue(gridBot.getLevelsWithLimitOrders().isEmpty());
+        assertNull(gridBot.getLimitOrderId(0));
+
+        // после остановки ордера не выставляются
+        gridBot.createNewLimitOrders(INITIAL_PRICE);
+        assertEquals(11, orderManager.placements.size());
+    }
+
+    @Test
+    public void testOffLevelFillRearmsLevelOfOrder() {
+        var orderManager = new StubOrderManager(INITIAL_PRICE);
+        var gridBot = new GridBot(CONFIG, orderManager, LOT_SIZE, INITIAL_PRICE);
+        // начальная покупка исполнена на уровне 150, ордера выставлены на остальных уровнях
+        assertEquals(5, gridBot.activeLevelIndex);
+        assertEquals(createBitSet(0, 1, 2, 3, 4, 6, 7, 8, 9, 10), gridBot.getLevelsWithLimitOrders());
+        var buyOrderId = gridBot.getLimitOrderId(3);
+        var lowerBuyOrderId = gridBot.getLimitOrderId(2);
+
+        // ордер уровня 130 исполнен по цене уровня 120: освобождается уровень ордера, а не уровень цены
+        fill(gridBot, buyOrderId, Direction.BUY, new BigDecimal("120"));
+        assertEquals(3, gridBot.activeLevelIndex);
+        assertEquals(createBitSet(0, 1, 2, 4, 5, 6, 7, 8, 9, 10), gridBot.getLevelsWithLimitOrders());
+        assertEquals(lowerBuyOrderId, gridBot.getLimitOrderId(2));
+        assertNull(gridBot.getLimitOrderId(3));
+        assertEquals(Direction.SELL, gridBot.getLimitOrderDirection(5));
+
+        // ордер уровня 160 исполнен по цене вне сетки: уровень 130 выставляется снова
+        fill(gridBot, gridBot.getLimitOrderId(6), Direction.SELL, new BigDecimal("160.37"));
+        assertEquals(6, gridBot.activeLevelIndex);
+        assertEquals(createBitSet(0, 1, 2, 3, 4, 5, 7, 8, 9, 10), gridBot.getLevelsWithLimitOrders());
+        assertEquals(Direction.BUY, gridBot.getLimitOrderDirection(3));
+        assertNotEquals(buyOrderId, gridBot.getLimitOrderId(3));
+        assertNull(gridBot.getLimitOrderId(6));
+    }
+
+    @Test
+    public void testTransactionPairingMatchesListScan() {
+        // начальная покупка по 150 открывает первую пару, которая не закрывается
+        var gridBot = new GridBot(CONFIG, new StubOrderManager(INITIAL_PRICE), LOT_SIZE, INITIAL_PRICE);
+        var pairing = new ListScanPairing();
+        pairing.addInitial(Direction.BUY, INITIAL_PRICE, getAmount(INITIAL_PRICE, gridBot.getGridManager().getLotsPerGrid() * 5));
+        fillLevels(gridBot, pairing, "S160", "S170", "B160", "B150", "B140", "S150", "B140", "S150", "S160", "S170", "S180");
+        assertPairing(pairing, gridBot, 12, 4, 40);
+
+        // без начальной покупки первую пару открывает первая сделка сетки, и она тоже не закрывается
+        var initialPrice = new BigDecimal("200");
+        gridBot = new GridBot(CONFIG, new StubOrderManager(initialPrice), LOT_SIZE, initialPrice);
+        gridBot.createNewLimitOrders(initialPrice);
+        pairing = new ListScanPairing();
+        fillLevels(gridBot, pairing, "B190", "B180", "S190", "S200", "B190", "B180", "B170", "S180", "S190", "S200");
+        assertPairing(pairing, gridBot, 10, 4, 40);
+    }
+
+    /**
+     * Исполняет ордера уровней сетки: "B140" – покупка по 140, "S150" – продажа по 150.
+     */
+    private static void fillLevels(GridBot gridBot, ListScanPairing pairing, String... fills) {
+        for (String fill : fills) {
+            var direction = fill.charAt(0) == 'B' ? Direction.BUY : Direction.SELL;
+            var price = new BigDecimal(fill.substring(1));
+            var levelIndex = gridBot.getGridManager().getGrid().getPriceLevelIndex(price);
+            fill(gridBot, gridBot.getLimitOrderId(levelIndex), direction, price);
+            pairing.add(direction, price, getAmount(price, gridBot.getGridManager().getLotsPerGrid()));
+        }
+    }
+
+    /**
+     * @param profitPerLot Ожидаемая прибыль сетки в пересчёте на один инструмент.
+     */
+    private static void assertPairing(ListScanPairing pairing, GridBot gridBot, int transactionsNumber, int arbitragesNumber, int profitPerLot) {
+        assertEquals(transactionsNumber, pairing.getTransactionsNumber());
+        assertEquals(arbitragesNumber, pairing.getArbitrageNumber());
+        var lotsNumber = gridBot.getGridManager().getLotsPerGrid();
+        var profit = BigDecimal.valueOf(profitPerLot).multiply(LOT_SIZE).multiply(BigDecimal.valueOf(lotsNumber));
+        assertEquals(0, profit.compareTo(pairing.getGridProfit()));
+
+        assertEquals(pairing.getTransactionsNumber(), gridBot.getTransactionsNumber());
+        assertEquals(pairing.getArbitrageNumber(), gridBot.getArbitrageNumber());
+        assertEquals(0, pairing.getGridProfit().compareTo(gridBot.getGridProfit()));
+    }
+
+    private static BigDecimal getAmount(BigDecimal price, int lotsNumber) {
+        return price.multiply(LOT_SIZE).multiply(BigDecimal.valueOf(lotsNumber));
+    }
+
+    private static void fill(GridBot gridBot, String orderId, Direction direction, BigDecimal price) {
+        var lotsNumber = gridBot.getGridManager().getLotsPerGrid();
+        var baseCurrencyAmount = price.multiply(LOT_SIZE).multiply(BigDecimal.valueOf(lotsNumber));
+        gridBot.processOrder(orderId, FIGI, direction, price, baseCurrencyAmount, lotsNumber, Instant.now());
+    }
+
+    private static BitSet createBitSet(int... indexes) {
+        var bitSet = new BitSet();
+        for (int index : indexes) {
+            bitSet.set(index);
+        }
+        return bitSet;
+    }
+
+    /**
+     * Прежний расчёт пар транзакций: транзакция закрывает последнюю незакрытую пару, найденную перебором списка с конца
+     * (кроме первой пары), если направления противоположны, иначе добавляет новую пару.
+     */
+    private static class ListScanPairing {
+
+        private final List<TransactionPair> transactionPairs = new ArrayList<>();
+
+        void addInitial(Direction direction, BigDecimal price, BigDecimal baseCurrencyAmount) {
+            transactionPairs.add(new TransactionPair(new Transaction(direction, price, baseCurrencyAmount)));
+        }
+
+        void add(Direction direction, BigDecimal price, BigDecimal baseCurrencyAmount) {
+            var transaction = new Transaction(direction, price, baseCurrencyAmount);
+            TransactionPair lastIncompleteTransactionPair = null;
+            for (int i = transactionPairs.size() - 1; i > 0; i--) {
+                if (transactionPairs.get(i).isIncomplete()) {
+                    lastIncompleteTransactionPair = transactionPairs.get(i);
+                    break;
+                }
+            }
+            if (lastIncompleteTransactionPair != null && lastIncompleteTransactionPair.getOpenTransaction().getDirection() != direction) {
+                lastIncompleteTransactionPair.setCloseTransaction(transaction);
+            } else {
+                transactionPairs.add(new TransactionPair(transaction));
+            }
+        }
+
+        BigDecimal getGridProfit() {
+            var gridProfit = BigDecimal.ZERO;
+            for (TransactionPair transactionPair : transactionPairs) {
+                gridProfit = gridProfit.add(transactionPair.profit());
+            }
+            return gridProfit;
+        }
+
+        int getTransactionsNumber() {
+            var transactionsNumber = 0;
+            for (TransactionPair transactionPair : transactionPairs) {
+                transactionsNumber += transactionPair.isIncomplete() ? 1 : 2;
+            }
+            return transactionsNumber;
+        }
+
+        int getArbitrageNumber() {
+            var arbitrageNumber = 0;
+            for (TransactionPair transactionPair : transactionPairs) {
+                if (!transactionPair.isIncomplete()) arbitrageNumber++;
+            }
+            return arbitrageNumber;
+        }
+
+    }
+
+    /**
+     * Обработчик ордеров без исполнения лимитных ордеров: рыночные ордера исполняются по цене marketPrice, лимитные
+     * ордера получают идентификаторы order-1, order-2 и так далее.
+     */
+    private static class StubOrderManager implements OrderManager {
+
+        private final BigDecimal marketPrice;
+        private int ordersNumber = 0;
+
+        StubOrderManager(BigDecimal marketPrice) {
+            this.marketPrice = marketPrice;
+        }
+
+        @Override
+        public Order makeBuyMarketOrder(String figi, int lotsNumber, BigDecimal lotSize) {
+            return makeMarketOrder(figi, Direction.BUY, lotsNumber, lotSize);
+        }
+
+        @Override
+        public Order makeSellMarketOrder(String figi, int lotsNumber, BigDecimal lotSize) {
+            return makeMarketOrder(figi, Direction.SELL, lotsNumber, lotSize);
+        }
+
+        @Override
+        public Order makeBuyLimitOrder(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
+            return makeLimitOrder(figi, Direction.BUY, lotsNumber, price);
+        }
+
+        @Override
+        public Order makeSellLimitOrder(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
+            return makeLimitOrder(figi, Direction.SELL, lotsNumber, price);
+        }
+
+        @Override
+        public OrdersCancellation cancelOrders(String figi) {
+            return new OrdersCancellation(0, List.of());
+        }
+
+        private Order makeMarketOrder(String figi, Direction direction, int lotsNumber, BigDecimal lotSize) {
+            var baseCurrencyAmount = marketPrice.multiply(lotSize).multiply(BigDecimal.valueOf(lotsNumber));
+            return new Order(null, figi, marketPrice, direction, lotsNumber, baseCurrencyAmount, OrderStatus.FILL);
+        }
+
+        private Order makeLimitOrder(String figi, Direction direction, int lotsNumber, BigDecimal price) {
+            return new Order("order-" + ++ordersNumber, figi, price, direction, lotsNumber, BigDecimal.ZERO, OrderStatus.NEW);
+        }
+
+    }
+
+    /**
+     * Обработчик ордеров, ответы которого на асинхронные запросы передаются из теста. Результаты передаются в потоке
+     * теста, который здесь – поток бота.
+     */
+    private static class StubAsyncOrderManager implements AsyncOrderManager {
+
+        private final List<Placement> placements = new ArrayList<>();
+
+        @Override
+        public Order makeBuyMarketOrder(String figi, int lotsNumber, BigDecimal lotSize) {
+            // начальная покупка не исполняется
+            return new Order(null, figi, null, Direction.BUY, lotsNumber, BigDecimal.ZERO, OrderStatus.NEW);
+        }
+
+        @Override
+        public Order makeSellMarketOrder(String figi, int lotsNumber, BigDecimal lotSize) {
+            return new Order(null, figi, null, Direction.SELL, lotsNumber, BigDecimal.ZERO, OrderStatus.NEW);
+        }
+
+        @Override
+        public Order makeBuyLimitOrder(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Order makeSellLimitOrder(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Order> makeBuyLimitOrderAsync(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
+            return place(Direction.BUY, lotsNumber, price);
+        }
+
+        @Override
+        public CompletableFuture<Order> makeSellLimitOrderAsync(String figi, int lotsNumber, BigDecimal lotSize, BigDecimal price) {
+            return place(Direction.SELL, lotsNumber, price);
+        }
+
+        @Override
+        public OrdersCancellation cancelOrders(String figi) {
+            return new OrdersCancellation(0, List.of());
+        }
+
+        void complete(int placementIndex, String orderId) {
+            var placement = placements.get(placementIndex);
+            placement.future.complete(new Order(
+                    orderId,
+                    FIGI,
+                    placement.price,
+                    placement.direction,
+                    placement.lotsNumber,
+                    BigDecimal.ZERO,
+                    OrderStatus.NEW
+            ));
+        }
+
+        void fail(int placementIndex) {
+            placements.get(placementIndex).future.completeExceptionally(new IllegalStateException("Order rejected"));
+        }
+
+        int getLevelIndex(int placementIndex) {
+            return placements.get(placementIndex).price.subtract(BigDecimal.valueOf(100)).intValue() / 10;
+        }
+
+        private CompletableFuture<Order> place(Direction direction, int lotsNumber, BigDecimal price) {
+            var placement = new Placement(direction, lotsNumber, price);
+            placements.add(placement);
+            return placement.future;
+        }
+
+    }
+
+    private static class Placement {
+
+        private final Direction direction;
+        private final int lotsNumber;
+        private final BigDecimal price;
+        private final CompletableFuture<Order> future = new CompletableFuture<>();
+
+        Placement(Direction direction, int lotsNumber, BigDecimal price) {
+            this.direction = direction;
+            this.lotsNumber = lotsNumber;
+            this.price = price;
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.ako2345.simplegridbot.bot.grid;
+
+import com.ako2345.simplegridbot.Constants;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GridTest {
+
+    private static final BigDecimal MIN_PRICE_INCREMENT = new BigDecimal("0.05");
+
+    @Test
+    public void testLevelsAreAlignedToMinPriceIncrement() {
+        // границы сдвигаются внутрь до кратных цен: 100.05 и 200.15, средний шаг 16.68(3)
+        var grid = new Grid(new BigDecimal("100.03"), new BigDecimal("200.17"), 7, MIN_PRICE_INCREMENT);
+        assertArrayEquals(createPrices("100.05", "116.75", "133.40", "150.10", "166.80", "183.45", "200.15"), grid.getPriceLevels());
+        assertEquals(new BigDecimal("16.65"), grid.getPriceStep());
+
+        // каждый уровень – ближайшая к точному значению кратная цена, поэтому шаги отличаются не больше чем на increment
+        var levels = grid.getPriceLevels();
+        var exactStep = new BigDecimal("100.10").divide(BigDecimal.valueOf(6), MathContext.DECIMAL64);
+        for (int i = 0; i < levels.length; i++) {
+            var exactLevel = levels[0].add(exactStep.multiply(BigDecimal.valueOf(i)));
+            assertEquals(0, levels[i].remainder(MIN_PRICE_INCREMENT).signum());
+            assertTrue(levels[i].subtract(exactLevel).abs().compareTo(new BigDecimal("0.025")) <= 0);
+            if (i > 0) {
+                var step = levels[i].subtract(levels[i - 1]);
+                assertTrue(step.subtract(grid.getPriceStep()).compareTo(MIN_PRICE_INCREMENT) <= 0);
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new Grid(BigDecimal.ONE, new BigDecimal("1.1"), 4, MIN_PRICE_INCREMENT));
+        assertThrows(IllegalArgumentException.class, () -> new Grid(BigDecimal.ONE, BigDecimal.TEN, 4, new BigDecimal("1E-10")));
+    }
+
+    @Test
+    public void testPriceIndexesAtLevelBoundaries() {
+        var grid = new Grid(new BigDecimal("100.03"), new BigDecimal("200.17"), 7, MIN_PRICE_INCREMENT);
+        var levels = grid.getPriceLevels();
+        var tick = new BigDecimal("0.000000001");
+
+        assertEquals(-1, grid.getPriceRangeIndex(new BigDecimal("100.04")));
+        assertEquals(-1, grid.getPriceRangeIndex(levels[0].subtract(tick)));
+        for (int i = 0; i < levels.length - 1; i++) {
+            assertEquals(i, grid.getPriceRangeIndex(levels[i]));
+            assertEquals(i, grid.getPriceLevelIndex(levels[i]));
+            assertEquals(i, grid.getPriceRangeIndex(levels[i + 1].subtract(tick)));
+            assertEquals(-1, grid.getPriceLevelIndex(levels[i + 1].subtract(tick)));
+            if (i > 0) assertEquals(i - 1, grid.getPriceRangeIndex(levels[i].subtract(tick)));
+        }
+
+        // верхний диапазон: от последнего уровня до бесконечности
+        assertEquals(6, grid.getPriceRangeIndex(new BigDecimal("200.15")));
+        assertEquals(6, grid.getPriceLevelIndex(new BigDecimal("200.15")));
+        assertEquals(6, grid.getPriceRangeIndex(new BigDecimal("200.17")));
+        assertEquals(-1, grid.getPriceLevelIndex(new BigDecimal("200.17")));
+        assertEquals(6, grid.getPriceRangeIndex(new BigDecimal("1000000")));
+        assertEquals(-1, grid.getPriceLevelIndex(new BigDecimal("200.20")));
+    }
+
+    @Test
+    public void testDefaultMinPriceIncrementKeepsLevels() {
+        // при делении диапазона без остатка уровни совпадают с прежними (шаг с DEFAULT_SCALE знаками, последний уровень
+        // равен верхней цене)
+        assertLevelsAreKept("100", "200", 11);
+        assertLevelsAreKept("107.5", "179.25", 42);
+        assertLevelsAreKept("0.1234", "0.5678", 9);
+        assertLevelsAreKept("135.5", "168.25", 6);
+
+        // иначе уровни отличаются от точных значений меньше чем на минимальный шаг цены, а не накапливают ошибку
+        var grid = new Grid(new BigDecimal("135.5"), new BigDecimal("168.25"), 10);
+        var exactStep = new BigDecimal("32.75").divide(BigDecimal.valueOf(9), MathContext.DECIMAL64);
+        var levels = grid.getPriceLevels();
+        for (int i = 0; i < levels.length; i++) {
+            var exactLevel = new BigDecimal("135.5").add(exactStep.multiply(BigDecimal.valueOf(i)));
+            assertTrue(levels[i].subtract(exactLevel).abs().compareTo(Constants.DEFAULT_MIN_PRICE_INCREMENT) < 0);
+        }
+    }
+
+    private static void assertLevelsAreKept(String lowerPrice, String upperPrice, int gridsNumber) {
+        var lower = new BigDecimal(lowerPrice);
+        var upper = new BigDecimal(upperPrice);
+        var priceStep = upper.subtract(lower).divide(BigDecimal.valueOf(gridsNumber - 1), Constants.DEFAULT_SCALE, RoundingMode.DOWN);
+        var levels = new Grid(lower, upper, gridsNumber).getPriceLevels();
+        assertEquals(gridsNumber, levels.length);
+        for (int i = 0; i < gridsNumber - 1; i++) {
+            assertEquals(0, lower.add(priceStep.multiply(BigDecimal.valueOf(i))).compareTo(levels[i]));
+        }
+        assertEquals(0, upper.compareTo(levels[gridsNumber - 1]));
+    }
+
+    private static BigDecimal[] createPrices(String... prices) {
+        var decimals = new BigDecimal[prices.length];
+        for (int i = 0; i < prices.length; i++) {
+            decimals[i] = new BigDecimal(prices[i]);
+        }
+        return decimals;
+    }
+
+}
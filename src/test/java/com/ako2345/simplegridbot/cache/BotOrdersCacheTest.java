@@ -0,0 +1,76 @@
+package com.ako2345.simplegridbot.cache;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.service.OrdersStreamServiceListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BotOrdersCacheTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final BigDecimal PRICE = new BigDecimal("150");
+
+    private final OrdersStreamServiceListener listener = new OrdersStreamServiceListener() {
+        @Override
+        public void processOrder(String orderId, String figi, Direction direction, BigDecimal averageOrderPrice, BigDecimal baseCurrencyAmount, long lotsNumber, Instant time) {
+        }
+    };
+    private long time;
+    private BotOrdersCache botOrdersCache;
+
+    @BeforeEach
+    public void setUp() {
+        time = 1_000_000;
+        botOrdersCache = new BotOrdersCache(() -> time);
+    }
+
+    @Test
+    public void testExecutionBeforeAddIsDeliveredOnce() {
+        var executions = new ArrayList<String>();
+        assertNull(botOrdersCache.getOrDefer("order", () -> executions.add("first")));
+        // из нескольких отложенных исполнений выполняется последнее
+        assertNull(botOrdersCache.getOrDefer("order", () -> executions.add("second")));
+        assertTrue(executions.isEmpty());
+
+        botOrdersCache.add("order", listener, FIGI, Direction.BUY, PRICE, 1);
+        assertEquals(List.of("second"), executions);
+
+        // ордер уже в кэше: исполнение не откладывается, повторное добавление его не выполняет
+        var botOrder = botOrdersCache.getOrDefer("order", () -> executions.add("third"));
+        assertNotNull(botOrder);
+        assertEquals(listener, botOrder.getListener());
+        botOrdersCache.add("order", listener, FIGI, Direction.BUY, PRICE, 1);
+        assertEquals(List.of("second"), executions);
+    }
+
+    @Test
+    public void testExpiredExecutionIsDropped() {
+        var executions = new ArrayList<String>();
+        botOrdersCache.getOrDefer("expired", () -> executions.add("expired"));
+        botOrdersCache.getOrDefer("purged", () -> executions.add("purged"));
+        time += Constants.BOT_ORDERS_PENDING_EXECUTION_TTL_MS;
+        botOrdersCache.getOrDefer("kept", () -> executions.add("kept"));
+
+        time += 1;
+        botOrdersCache.add("expired", listener, FIGI, Direction.BUY, PRICE, 1);
+        // устаревшие исполнения удаляются и при откладывании исполнения другого ордера
+        botOrdersCache.getOrDefer("other", () -> executions.add("other"));
+        botOrdersCache.add("purged", listener, FIGI, Direction.BUY, PRICE, 1);
+        assertTrue(executions.isEmpty());
+
+        botOrdersCache.add("kept", listener, FIGI, Direction.BUY, PRICE, 1);
+        assertEquals(List.of("kept"), executions);
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.ako2345.simplegridbot.cache;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.bot.GridBotStatistics;
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+import com.ako2345.simplegridbot.model.CandleSeries;
+import com.ako2345.simplegridbot.service.ConfigService;
+import com.ako2345.simplegridbot.simulation.PricePath;
+import com.ako2345.simplegridbot.simulation.SimulationMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SimulationResultCacheTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final BigDecimal LOT_SIZE = BigDecimal.TEN;
+    private static final BigDecimal MIN_PRICE_INCREMENT = new BigDecimal("0.01");
+    private static final BigDecimal INITIAL_PRICE = new BigDecimal("150");
+    private static final long PRICE = 150_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSameSimulationIsTakenFromCache() {
+        var cache = new SimulationResultCache(createConfigService(null));
+        var pricePath = createPricePath(PRICE, PRICE + 1_000_000_000L);
+        var config = createConfig(10);
+        var simulationsNumber = new AtomicInteger();
+
+        var statistics = getStatistics(cache, config, pricePath, SimulationMode.TICKS, simulationsNumber);
+        assertSame(statistics, getStatistics(cache, config, pricePath, SimulationMode.TICKS, simulationsNumber));
+        assertEquals(1, simulationsNumber.get());
+        assertEquals(1, cache.getHitsNumber());
+        assertEquals(1, cache.getMissesNumber());
+    }
+
+    @Test
+    public void testDifferentSimulationsAreNotTakenFromCache() {
+        var cache = new SimulationResultCache(createConfigService(null));
+        var pricePath = createPricePath(PRICE, PRICE + 1_000_000_000L);
+        var config = createConfig(10);
+        var simulationsNumber = new AtomicInteger();
+
+        getStatistics(cache, config, pricePath, SimulationMode.TICKS, simulationsNumber);
+        // другая конечная цена пути
+        getStatistics(cache, config, createPricePath(PRICE, PRICE + 2_000_000_000L), SimulationMode.TICKS, simulationsNumber);
+        // другие параметры сетки
+        getStatistics(cache, createConfig(11), pricePath, SimulationMode.TICKS, simulationsNumber);
+        // другой способ имитации
+        getStatistics(cache, config, pricePath, SimulationMode.REFERENCE, simulationsNumber);
+        assertEquals(4, simulationsNumber.get());
+        assertEquals(0, cache.getHitsNumber());
+        assertEquals(4, cache.getCacheStatistics().getSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResultIsEvicted() {
+        var cache = new SimulationResultCache(createConfigService(null));
+        var pricePath = createPricePath(PRICE, PRICE + 1_000_000_000L);
+        var simulationsNumber = new AtomicInteger();
+
+        for (int gridsNumber = 0; gridsNumber < Constants.SIMULATION_RESULT_CACHE_SIZE; gridsNumber++) {
+            getStatistics(cache, createConfig(gridsNumber), pricePath, SimulationMode.TICKS, simulationsNumber);
+        }
+        // первый результат использован последним, поэтому вытесняется второй
+        getStatistics(cache, createConfig(0), pricePath, SimulationMode.TICKS, simulationsNumber);
+        getStatistics(cache, createConfig(-1), pricePath, SimulationMode.TICKS, simulationsNumber);
+        assertEquals(Constants.SIMULATION_RESULT_CACHE_SIZE + 1, simulationsNumber.get());
+
+        getStatistics(cache, createConfig(0), pricePath, SimulationMode.TICKS, simulationsNumber);
+        assertEquals(Constants.SIMULATION_RESULT_CACHE_SIZE + 1, simulationsNumber.get());
+        getStatistics(cache, createConfig(1), pricePath, SimulationMode.TICKS, simulationsNumber);
+        assertEquals(Constants.SIMULATION_RESULT_CACHE_SIZE + 2, simulationsNumber.get());
+        assertEquals(Constants.SIMULATION_RESULT_CACHE_SIZE, cache.getCacheStatistics().getSize());
+    }
+
+    @Test
+    public void testResultsAreLoadedAfterSave() {
+        var configService = createConfigService(directory.toString());
+        var pricePath = createPricePath(PRICE, PRICE + 1_000_000_000L);
+        var config = createConfig(10);
+        var simulationsNumber = new AtomicInteger();
+
+        var cache = new SimulationResultCache(configService);
+        cache.load();
+        var statistics = getStatistics(cache, config, pricePath, SimulationMode.TICKS, simulationsNumber);
+        cache.save();
+
+        var loadedCache = new SimulationResultCache(configService);
+        loadedCache.load();
+        assertEquals(1, loadedCache.getCacheStatistics().getSize());
+        assertEquals(statistics, getStatistics(loadedCache, config, pricePath, SimulationMode.TICKS, simulationsNumber));
+        assertEquals(1, simulationsNumber.get());
+        assertEquals(1, loadedCache.getHitsNumber());
+    }
+
+    private static GridBotStatistics getStatistics(
+            SimulationResultCache cache,
+            GridBotConfig config,
+            PricePath pricePath,
+            SimulationMode simulationMode,
+            AtomicInteger simulationsNumber
+    ) {
+        Supplier<GridBotStatistics> simulation = () -> createStatistics(simulationsNumber.incrementAndGet());
+        return cache.getStatistics(config, LOT_SIZE, MIN_PRICE_INCREMENT, INITIAL_PRICE, pricePath, simulationMode, simulation);
+    }
+
+    private static GridBotStatistics createStatistics(int transactionsNumber) {
+        return new GridBotStatistics(
+                new BigDecimal("1.5"),
+                new BigDecimal("15000"),
+                new BigDecimal("1.2"),
+                new BigDecimal("12000"),
+                new BigDecimal("0.3"),
+                new BigDecimal("3000"),
+                transactionsNumber,
+                transactionsNumber / 2
+        );
+    }
+
+    private static GridBotConfig createConfig(int gridsNumber) {
+        return new GridBotConfig(FIGI, 135.5F, 168.25F, gridsNumber, 1000000);
+    }
+
+    private static PricePath createPricePath(long open, long close) {
+        var candles = CandleSeries.builder()
+                .add(0, open, Math.min(open, close) - 1_000_000_000L, Math.max(open, close) + 1_000_000_000L, close)
+                .build(false);
+        return PricePath.of(candles);
+    }
+
+    private static ConfigService createConfigService(String cacheDir) {
+        return new ConfigService() {
+            @Override
+            public String getSimulationCacheDir() {
+                return cacheDir;
+            }
+        };
+    }
+
+}
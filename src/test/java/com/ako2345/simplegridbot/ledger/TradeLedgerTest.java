@@ -0,0 +1,119 @@
+package com.ako2345.simplegridbot.ledger;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.model.TradeLedgerEntry;
+import com.ako2345.simplegridbot.util.PriceUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TradeLedgerTest {
+
+    private static final long PRICE = 150_000_000_000L;
+    private static final long AMOUNT = 1_500_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testFindReturnsEntriesOfPeriod() {
+        try (var ledger = TradeLedger.inMemory()) {
+            ledger.append(10, Direction.BUY, PRICE, AMOUNT);
+            ledger.append(20, Direction.SELL, PRICE + 1, AMOUNT + 1);
+            // время меньше предыдущего заменяется временем предыдущей записи
+            ledger.append(15, Direction.BUY, PRICE + 2, AMOUNT + 2);
+            ledger.append(30, Direction.SELL, PRICE + 3, AMOUNT + 3);
+
+            assertEquals(4, ledger.size());
+            assertEquals(3, ledger.count(20, 31));
+            assertEquals(List.of(
+                    createEntry(20, Direction.SELL, PRICE + 1, AMOUNT + 1),
+                    createEntry(20, Direction.BUY, PRICE + 2, AMOUNT + 2)
+            ), ledger.find(11, 30, 0, 10));
+            assertEquals(List.of(createEntry(20, Direction.BUY, PRICE + 2, AMOUNT + 2)), ledger.find(0, 100, 2, 1));
+            assertEquals(List.of(), ledger.find(31, 100, 0, 10));
+        }
+    }
+
+    @Test
+    public void testAggregateSumsEntriesOfPeriod() {
+        try (var ledger = TradeLedger.inMemory()) {
+            ledger.append(10, Direction.BUY, PRICE, AMOUNT);
+            ledger.append(20, Direction.BUY, PRICE - 5, AMOUNT);
+            ledger.append(30, Direction.SELL, PRICE + 5, AMOUNT + 10);
+
+            var summary = ledger.aggregate(0, 100);
+            assertEquals(3, summary.getTradesNumber());
+            assertEquals(2, summary.getBuysNumber());
+            assertEquals(1, summary.getSellsNumber());
+            assertEquals(PriceUtils.fromTicks(2 * AMOUNT), summary.getBuyAmount());
+            assertEquals(PriceUtils.fromTicks(AMOUNT + 10), summary.getSellAmount());
+            assertEquals(PriceUtils.fromTicks(PRICE - 5), summary.getMinPrice());
+            assertEquals(PriceUtils.fromTicks(PRICE + 5), summary.getMaxPrice());
+
+            var emptySummary = ledger.aggregate(40, 100);
+            assertEquals(0, emptySummary.getTradesNumber());
+            assertNull(emptySummary.getMinPrice());
+            assertNull(emptySummary.getMaxPrice());
+        }
+    }
+
+    @Test
+    public void testEntriesArePreservedAfterReopen() {
+        var file = directory.resolve("bot" + TradeLedger.FILE_EXTENSION);
+        // записей больше размера блока, чтобы проверить переход в следующий блок
+        var recordsNumber = Constants.TRADE_LEDGER_BLOCK_SIZE + 10;
+        try (var ledger = TradeLedger.open(file)) {
+            for (int i = 0; i < recordsNumber; i++) {
+                ledger.append(i, i % 2 == 0 ? Direction.BUY : Direction.SELL, PRICE + i, AMOUNT);
+            }
+        }
+
+        try (var ledger = TradeLedger.open(file)) {
+            assertEquals(recordsNumber, ledger.size());
+            var last = recordsNumber - 1;
+            assertEquals(
+                    List.of(createEntry(last, last % 2 == 0 ? Direction.BUY : Direction.SELL, PRICE + last, AMOUNT)),
+                    ledger.find(last, recordsNumber, 0, 10)
+            );
+            assertEquals(recordsNumber, ledger.aggregate(0, recordsNumber).getTradesNumber());
+
+            // новые записи добавляются после загруженных, время не меньше времени последней записи
+            ledger.append(0, Direction.BUY, PRICE, AMOUNT);
+            assertEquals(List.of(createEntry(last, Direction.BUY, PRICE, AMOUNT)), ledger.find(last, recordsNumber, 1, 10));
+        }
+    }
+
+    @Test
+    public void testClosedLedgerRejectsAccess() {
+        var ledger = TradeLedger.inMemory();
+        ledger.append(10, Direction.BUY, PRICE, AMOUNT);
+        ledger.close();
+        // повторное закрытие ни на что не влияет
+        ledger.close();
+
+        assertFalse(ledger.append(20, Direction.SELL, PRICE, AMOUNT));
+        assertThrows(IllegalStateException.class, () -> ledger.count(0, 100));
+        assertThrows(IllegalStateException.class, () -> ledger.find(0, 100, 0, 10));
+        assertThrows(IllegalStateException.class, () -> ledger.aggregate(0, 100));
+    }
+
+    private static TradeLedgerEntry createEntry(long timestamp, Direction direction, long price, long amount) {
+        return new TradeLedgerEntry(
+                Instant.ofEpochSecond(0, timestamp),
+                direction,
+                PriceUtils.fromTicks(price),
+                PriceUtils.fromTicks(amount)
+        );
+    }
+
+}
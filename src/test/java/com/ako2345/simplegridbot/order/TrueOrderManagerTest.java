@@ -0,0 +1,181 @@
+package com.ako2345.simplegridbot.order;
+
+import com.ako2345.simplegridbot.cache.BotOrdersCache;
+import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.model.Order;
+import com.ako2345.simplegridbot.model.OrderStatus;
+import com.ako2345.simplegridbot.service.OrderService;
+import com.ako2345.simplegridbot.service.OrdersStreamServiceListener;
+import com.ako2345.simplegridbot.util.TokenBucket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.OrderDirection;
+import ru.tinkoff.piapi.contract.v1.OrderType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrueOrderManagerTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final BigDecimal LOT_SIZE = BigDecimal.TEN;
+    private static final BigDecimal PRICE = new BigDecimal("150");
+
+    private FakeOrderService orderService;
+    private BotOrdersCache botOrdersCache;
+    private OrdersStreamServiceListener owner;
+    private TrueOrderManager orderManager;
+
+    @BeforeEach
+    public void setUp() {
+        orderService = new FakeOrderService();
+        botOrdersCache = new BotOrdersCache();
+        owner = createListener();
+        orderManager = createOrderManager(owner);
+    }
+
+    @Test
+    public void testCancelOrdersCancelsOnlyOwnOrders() {
+        var orderIds = makeOrders(orderManager, 3);
+        var otherOwner = createListener();
+        var otherOrderId = makeOrders(createOrderManager(otherOwner), 1).get(0);
+
+        var cancellation = orderManager.cancelOrders(FIGI);
+        assertEquals(3, cancellation.getCancelledNumber());
+        assertEquals(List.of(), cancellation.getFailedOrderIds());
+        assertEquals(Set.of(otherOrderId), orderService.activeOrders.keySet());
+        for (String orderId : orderIds) {
+            assertNull(botOrdersCache.get(orderId));
+        }
+        assertNotNull(botOrdersCache.get(otherOrderId));
+    }
+
+    @Test
+    public void testInactiveOrderIsNotFailed() {
+        var orderIds = makeOrders(orderManager, 2);
+        // ордер исполнен до отмены: отмена отклоняется, но ордер уже неактивен
+        orderService.activeOrders.remove(orderIds.get(0));
+
+        var cancellation = orderManager.cancelOrders(FIGI);
+        assertEquals(1, cancellation.getCancelledNumber());
+        assertEquals(List.of(), cancellation.getFailedOrderIds());
+    }
+
+    @Test
+    public void testFailedOrdersAreCancelledAgain() {
+        var orderIds = makeOrders(orderManager, 3);
+        orderService.failingOrderIds.add(orderIds.get(1));
+        // ошибка до отправки запроса также считается неудачей отмены
+        orderService.throwingOrderIds.add(orderIds.get(2));
+
+        var cancellation = orderManager.cancelOrders(FIGI);
+        assertEquals(1, cancellation.getCancelledNumber());
+        assertEquals(Set.of(orderIds.get(1), orderIds.get(2)), new HashSet<>(cancellation.getFailedOrderIds()));
+
+        // повторная отмена отменяет только оставшиеся активными ордера
+        orderService.failingOrderIds.clear();
+        orderService.throwingOrderIds.clear();
+        orderService.cancelledOrderIds.clear();
+        cancellation = orderManager.cancelOrders(FIGI);
+        assertEquals(2, cancellation.getCancelledNumber());
+        assertEquals(List.of(), cancellation.getFailedOrderIds());
+        assertEquals(Set.of(orderIds.get(1), orderIds.get(2)), new HashSet<>(orderService.cancelledOrderIds));
+
+        orderService.cancelledOrderIds.clear();
+        cancellation = orderManager.cancelOrders(FIGI);
+        assertEquals(0, cancellation.getCancelledNumber());
+        assertTrue(orderService.cancelledOrderIds.isEmpty());
+    }
+
+    @Test
+    public void testOrderMadeAfterCancellationIsCancelled() {
+        orderManager.cancelOrders(FIGI);
+
+        var future = orderManager.makeBuyLimitOrderAsync(FIGI, 1, LOT_SIZE, PRICE);
+        assertTrue(future.isCancelled());
+        assertTrue(orderService.activeOrders.isEmpty());
+        assertEquals(1, orderService.cancelledOrderIds.size());
+        assertNull(botOrdersCache.get(orderService.cancelledOrderIds.get(0)));
+    }
+
+    private List<String> makeOrders(TrueOrderManager orderManager, int ordersNumber) {
+        var orderIds = new ArrayList<String>();
+        for (int i = 0; i < ordersNumber; i++) {
+            var order = orderManager.makeBuyLimitOrderAsync(FIGI, 1, LOT_SIZE, PRICE).join();
+            orderIds.add(order.getOrderId());
+        }
+        return orderIds;
+    }
+
+    private TrueOrderManager createOrderManager(OrdersStreamServiceListener owner) {
+        return new TrueOrderManager(orderService, botOrdersCache, owner, Runnable::run, Runnable::run, new TokenBucket(1000, 60000));
+    }
+
+    /**
+     * Отдельный экземпляр для каждого бота: ордера в кэше принадлежат получателю по ссылке.
+     */
+    private static OrdersStreamServiceListener createListener() {
+        return new OrdersStreamServiceListener() {
+            @Override
+            public void processOrder(String orderId, String figi, Direction direction, BigDecimal averageOrderPrice, BigDecimal baseCurrencyAmount, long lotsNumber, Instant time) {
+            }
+        };
+    }
+
+    /**
+     * Сервис ордеров в памяти. Отмена неактивного ордера, как и отмена ордера из failingOrderIds, завершается ошибкой.
+     */
+    private static class FakeOrderService implements OrderService {
+
+        private final Map<String, Order> activeOrders = new LinkedHashMap<>();
+        private final Set<String> failingOrderIds = new HashSet<>();
+        private final Set<String> throwingOrderIds = new HashSet<>();
+        private final List<String> cancelledOrderIds = new ArrayList<>();
+
+        @Override
+        public List<Order> getOrders(String figi) {
+            var orders = new ArrayList<Order>();
+            for (Order order : activeOrders.values()) {
+                if (order.getFigi().equals(figi)) orders.add(order);
+            }
+            return orders;
+        }
+
+        @Override
+        public Order makeOrder(String orderId, String figi, OrderDirection orderDirection, int lotsNumber, OrderType orderType, BigDecimal price) {
+            var direction = orderDirection == OrderDirection.ORDER_DIRECTION_BUY ? Direction.BUY : Direction.SELL;
+            var order = new Order(orderId, figi, price, direction, lotsNumber, BigDecimal.ZERO, OrderStatus.NEW);
+            activeOrders.put(orderId, order);
+            return order;
+        }
+
+        @Override
+        public void cancelOrder(String orderId) {
+            cancelOrderAsync(orderId).join();
+        }
+
+        @Override
+        public CompletableFuture<Instant> cancelOrderAsync(String orderId) {
+            if (throwingOrderIds.contains(orderId)) throw new IllegalStateException("Request failed");
+            if (failingOrderIds.contains(orderId) || activeOrders.remove(orderId) == null) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Order was not cancelled"));
+            }
+            cancelledOrderIds.add(orderId);
+            return CompletableFuture.completedFuture(Instant.now());
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.ako2345.simplegridbot.service;
+
+import com.ako2345.simplegridbot.bot.GridBot;
+import com.ako2345.simplegridbot.bot.GridBotStatistics;
+import com.ako2345.simplegridbot.cache.InstrumentsCache;
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+import com.ako2345.simplegridbot.model.CachedCandle;
+import com.ako2345.simplegridbot.model.CandleSeries;
+import com.ako2345.simplegridbot.order.FakeOrderManager;
+import com.ako2345.simplegridbot.simulation.SimulationMode;
+import com.ako2345.simplegridbot.util.PriceUtils;
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.HistoricCandle;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+public class BacktestServiceTest {
+
+    public static final String FIGI = "BBG004730N88"; // Sber
+    public static final BigDecimal LOT_SIZE = BigDecimal.TEN;
+    public static final int CANDLES_NUMBER = 500;
+
+    private BacktestService backtestService;
+    private CandleSeries candles;
+
+    @BeforeEach
+    public void setUp() {
+        backtestService = new BacktestService(mock(CandleHistoryService.class), mock(InstrumentsCache.class), mock(ConfigService.class));
+        candles = generateCandles(CANDLES_NUMBER);
+    }
+
+    @Test
+    public void testTickSimulationMatchesReference() {
+        for (int gridsNumber = 2; gridsNumber < 50; gridsNumber += 3) {
+            var config = new GridBotConfig(FIGI, 135.5F, 168.25F, gridsNumber, 1000000);
+            var referenceStatistics = simulate(config, SimulationMode.REFERENCE);
+            var tickStatistics = simulate(config, SimulationMode.TICKS);
+            assertEquals(referenceStatistics, tickStatistics);
+        }
+    }
+
+    @Test
+    public void testLevelCrossingExecutesEveryReachedLevel() {
+        // сетка со ступенью 10: 100, 110, ..., 200
+        var config = new GridBotConfig(FIGI, 100, 200, 11, 1000000);
+        var candles = CandleSeries.builder().add(createCandle(0, 15000, 12000, 18000, 15000)).build(false);
+        // исполнение начальной покупки, ордеров на 140, 130, 120, затем на 130-180 и на 170, 160, 150
+        var statistics = simulate(config, SimulationMode.LEVEL_CROSSING, candles);
+        assertEquals(13, statistics.getTransactionsNumber());
+    }
+
+    @Test
+    public void testTickLogIsResolvedInsideTickLogDir() {
+        assertEquals(Paths.get("ticks", "archive", "2022-04"), BacktestService.resolveTickLog("ticks", "archive/./2022-04"));
+        assertEquals(Paths.get("ticks"), BacktestService.resolveTickLog("ticks", ""));
+        assertThrows(IllegalArgumentException.class, () -> BacktestService.resolveTickLog("ticks", "/etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> BacktestService.resolveTickLog("ticks", "../secrets"));
+        assertThrows(IllegalArgumentException.class, () -> BacktestService.resolveTickLog("ticks", "archive/../../secrets"));
+        assertThrows(IllegalArgumentException.class, () -> BacktestService.resolveTickLog(null, "archive"));
+    }
+
+    private GridBotStatistics simulate(GridBotConfig config, SimulationMode simulationMode) {
+        return simulate(config, simulationMode, candles);
+    }
+
+    private GridBotStatistics simulate(GridBotConfig config, SimulationMode simulationMode, CandleSeries candles) {
+        var initialPrice = PriceUtils.fromTicks(candles.getOpen(0));
+        var fakeOrderManager = new FakeOrderManager();
+        fakeOrderManager.setSimulatedPrice(initialPrice);
+        var gridBot = new GridBot(config, fakeOrderManager, LOT_SIZE, initialPrice);
+        return backtestService.simulatePriceChanging(gridBot, fakeOrderManager, initialPrice, candles, simulationMode);
+    }
+
+    /**
+     * Генерирует часовые свечи со случайным блужданием цены около 150 с шагом 0.01.
+     */
+    private static CandleSeries generateCandles(int candlesNumber) {
+        var random = new Random(42);
+        var candles = CandleSeries.builder();
+        var price = 15000L;
+        for (int i = 0; i < candlesNumber; i++) {
+            var open = price + random.nextInt(41) - 20;
+            var close = open + random.nextInt(301) - 150;
+            var low = Math.min(open, close) - random.nextInt(120);
+            var high = Math.max(open, close) + random.nextInt(120);
+            candles.add(createCandle(i, open, low, high, close));
+            price = close;
+        }
+        return candles.build(true);
+    }
+
+    private static CachedCandle createCandle(int index, long open, long low, long high, long close) {
+        var historicCandle = HistoricCandle.newBuilder()
+                .setTime(Timestamp.newBuilder().setSeconds(1640995200L + 3600L * index).build())
+                .setOpen(toQuotation(open))
+                .setClose(toQuotation(close))
+                .setLow(toQuotation(low))
+                .setHigh(toQuotation(high))
+                .build();
+        return CachedCandle.ofHistoricCandle(historicCandle);
+    }
+
+    private static Quotation toQuotation(long priceInCents) {
+        return Quotation.newBuilder()
+                .setUnits(priceInCents / 100)
+                .setNano((int) (priceInCents % 100) * 10_000_000)
+                .build();
+    }
+
+}
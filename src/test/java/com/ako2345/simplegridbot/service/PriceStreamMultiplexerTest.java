@@ -0,0 +1,169 @@
+package com.ako2345.simplegridbot.service;
+
+import com.ako2345.simplegridbot.Constants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+import ru.tinkoff.piapi.core.stream.StreamProcessor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PriceStreamMultiplexerTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final String OTHER_FIGI = "BBG004731032";
+
+    private List<FakeStream> streams;
+    private PriceStreamMultiplexer multiplexer;
+
+    @BeforeEach
+    public void setUp() {
+        streams = new ArrayList<>();
+        multiplexer = new PriceStreamMultiplexer(
+                (id, processor) -> {
+                    var stream = new FakeStream(processor);
+                    streams.add(stream);
+                    return stream;
+                },
+                1,
+                new TickRecorder(new ConfigService())
+        );
+    }
+
+    @AfterEach
+    public void tearDown() {
+        multiplexer.stop();
+    }
+
+    @Test
+    public void testSubscriptionsAreSplitAcrossStreams() {
+        StreamProcessor<MarketDataResponse> processor = response -> {
+        };
+        for (int i = 0; i <= Constants.PRICE_STREAM_MAX_SUBSCRIPTIONS; i++) {
+            multiplexer.subscribe("FIGI-" + i, processor, false);
+        }
+        assertEquals(2, multiplexer.getStreamsNumber());
+        assertEquals(Constants.PRICE_STREAM_MAX_SUBSCRIPTIONS, streams.get(0).figis.size());
+        assertEquals(Set.of("FIGI-" + Constants.PRICE_STREAM_MAX_SUBSCRIPTIONS), streams.get(1).figis);
+
+        // на инструмент подписываются один раз, сколько бы ни было обработчиков
+        StreamProcessor<MarketDataResponse> otherProcessor = response -> {
+        };
+        multiplexer.subscribe("FIGI-0", otherProcessor, true);
+        assertEquals(Constants.PRICE_STREAM_MAX_SUBSCRIPTIONS, streams.get(0).subscriptionsNumber);
+        multiplexer.unsubscribe("FIGI-0", otherProcessor);
+        assertTrue(streams.get(0).figis.contains("FIGI-0"));
+
+        // место, освобождённое последним обработчиком, занимает новый инструмент
+        multiplexer.unsubscribe("FIGI-0", processor);
+        assertFalse(streams.get(0).figis.contains("FIGI-0"));
+        multiplexer.subscribe(FIGI, processor, false);
+        assertTrue(streams.get(0).figis.contains(FIGI));
+        assertEquals(2, multiplexer.getStreamsNumber());
+    }
+
+    @Test
+    public void testPricesArePassedToSubscribersOfInstrument() {
+        var prices = new ArrayList<Long>();
+        var otherPrices = new ArrayList<Long>();
+        multiplexer.subscribe(FIGI, response -> {
+            throw new IllegalStateException("Processing failed");
+        }, false);
+        multiplexer.subscribe(FIGI, response -> prices.add(response.getLastPrice().getPrice().getUnits()), false);
+        multiplexer.subscribe(OTHER_FIGI, response -> otherPrices.add(response.getLastPrice().getPrice().getUnits()), false);
+        var stream = streams.get(0);
+
+        stream.send(createResponse(FIGI, 100));
+        stream.send(createResponse(OTHER_FIGI, 200));
+        stream.send(MarketDataResponse.getDefaultInstance());
+        stream.send(createResponse(FIGI, 101));
+
+        // ошибка одного обработчика не мешает другим
+        assertEquals(List.of(100L, 101L), prices);
+        assertEquals(List.of(200L), otherPrices);
+    }
+
+    @Test
+    public void testConflatedSubscriberReceivesLatestPrice() throws InterruptedException {
+        var prices = new CopyOnWriteArrayList<Long>();
+        var isProcessingStarted = new CountDownLatch(1);
+        var canProcess = new CountDownLatch(1);
+        var isLastPriceProcessed = new CountDownLatch(1);
+        multiplexer.subscribe(FIGI, response -> {
+            var price = response.getLastPrice().getPrice().getUnits();
+            prices.add(price);
+            isProcessingStarted.countDown();
+            try {
+                canProcess.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (price == 4) isLastPriceProcessed.countDown();
+        }, true);
+        var stream = streams.get(0);
+
+        stream.send(createResponse(FIGI, 1));
+        assertTrue(isProcessingStarted.await(5, TimeUnit.SECONDS));
+        // пока обработчик занят, цены заменяют друг друга
+        stream.send(createResponse(FIGI, 2));
+        stream.send(createResponse(FIGI, 3));
+        stream.send(createResponse(FIGI, 4));
+        canProcess.countDown();
+
+        assertTrue(isLastPriceProcessed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1L, 4L), prices);
+    }
+
+    private static MarketDataResponse createResponse(String figi, long price) {
+        return MarketDataResponse.newBuilder()
+                .setLastPrice(LastPrice.newBuilder()
+                        .setFigi(figi)
+                        .setPrice(Quotation.newBuilder().setUnits(price).build())
+                        .build())
+                .build();
+    }
+
+    /**
+     * Стрим без подключения к API: цены передаются вызовом {@link #send(MarketDataResponse)}.
+     */
+    private static class FakeStream implements PriceStreamMultiplexer.PriceStreamConnection {
+
+        private final StreamProcessor<MarketDataResponse> processor;
+        private final Set<String> figis = new HashSet<>();
+        private int subscriptionsNumber = 0;
+
+        FakeStream(StreamProcessor<MarketDataResponse> processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        public void subscribe(String figi) {
+            figis.add(figi);
+            subscriptionsNumber++;
+        }
+
+        @Override
+        public void unsubscribe(String figi) {
+            figis.remove(figi);
+        }
+
+        void send(MarketDataResponse response) {
+            processor.process(response);
+        }
+
+    }
+
+}
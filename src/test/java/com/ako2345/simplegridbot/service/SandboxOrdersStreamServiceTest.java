@@ -0,0 +1,134 @@
+package com.ako2345.simplegridbot.service;
+
+import com.ako2345.simplegridbot.Constants;
+import com.ako2345.simplegridbot.bot.GridBot;
+import com.ako2345.simplegridbot.cache.BotOrdersCache;
+import com.ako2345.simplegridbot.cache.InstrumentsCache;
+import com.ako2345.simplegridbot.controller.config.GridBotConfig;
+import com.ako2345.simplegridbot.model.Direction;
+import com.ako2345.simplegridbot.model.Order;
+import com.ako2345.simplegridbot.model.OrderStatus;
+import com.ako2345.simplegridbot.order.FakeOrderManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SandboxOrdersStreamServiceTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final BigDecimal LOT_SIZE = BigDecimal.TEN;
+    private static final BigDecimal INITIAL_PRICE = new BigDecimal("150");
+    private static final BigDecimal BUY_PRICE = new BigDecimal("140");
+    private static final BigDecimal SELL_PRICE = new BigDecimal("160");
+    private static final long SYNC_TIMEOUT_MS = 5000;
+
+    private SandboxOrderService sandboxOrderService;
+    private BotOrdersCache botOrdersCache;
+    private OrdersStreamServiceListener listener;
+    private SandboxOrdersStreamService sandboxOrdersStreamService;
+
+    @BeforeEach
+    public void setUp() {
+        var configService = mock(ConfigService.class);
+        when(configService.getSandboxMode()).thenReturn(true);
+        var infoService = mock(InfoService.class);
+        when(infoService.getLastPrice(FIGI)).thenReturn(INITIAL_PRICE);
+        var instrumentsCache = mock(InstrumentsCache.class);
+        when(instrumentsCache.getLotSize(FIGI)).thenReturn(LOT_SIZE);
+        sandboxOrderService = mock(SandboxOrderService.class);
+        botOrdersCache = new BotOrdersCache();
+        listener = mock(OrdersStreamServiceListener.class);
+        sandboxOrdersStreamService = new SandboxOrdersStreamService(
+                configService,
+                mock(SdkService.class),
+                infoService,
+                sandboxOrderService,
+                instrumentsCache,
+                botOrdersCache
+        );
+        sandboxOrdersStreamService.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sandboxOrdersStreamService.stop();
+    }
+
+    @Test
+    public void testMissingBotOrderIsExecuted() {
+        botOrdersCache.add("buy", listener, FIGI, Direction.BUY, BUY_PRICE, 1);
+        botOrdersCache.add("sell", listener, FIGI, Direction.SELL, SELL_PRICE, 2);
+        when(sandboxOrderService.getOrders(FIGI)).thenReturn(List.of(createOrder("buy", Direction.BUY, BUY_PRICE)));
+
+        sandboxOrdersStreamService.addBot(createGridBot());
+        verify(listener, timeout(SYNC_TIMEOUT_MS)).processOrder(
+                eq("sell"),
+                eq(FIGI),
+                eq(Direction.SELL),
+                eq(SELL_PRICE),
+                eq(new BigDecimal("3200")),
+                eq(2L),
+                any()
+        );
+        assertNull(botOrdersCache.get("sell"));
+        assertNotNull(botOrdersCache.get("buy"));
+        verify(listener, never()).processOrder(eq("buy"), any(), any(), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    public void testOrderAddedDuringRequestIsNotExecuted() {
+        botOrdersCache.add("buy", listener, FIGI, Direction.BUY, BUY_PRICE, 1);
+        // ордер выставлен во время запроса ордеров и поэтому отсутствует в первом ответе
+        when(sandboxOrderService.getOrders(FIGI))
+                .thenAnswer(invocation -> {
+                    botOrdersCache.add("sell", listener, FIGI, Direction.SELL, SELL_PRICE, 1);
+                    return List.of();
+                })
+                .thenReturn(List.of(createOrder("sell", Direction.SELL, SELL_PRICE)));
+
+        sandboxOrdersStreamService.addBot(createGridBot());
+        verify(listener, timeout(SYNC_TIMEOUT_MS)).processOrder(eq("buy"), any(), any(), any(), any(), anyLong(), any());
+        assertNotNull(botOrdersCache.get("sell"));
+        verify(listener, never()).processOrder(eq("sell"), any(), any(), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    public void testSyncDelayBacksOffUntilOrdersChange() {
+        var minPriceStep = 1000L;
+        // цена ближе половины шага сетки к ордеру
+        assertEquals(Constants.SANDBOX_ORDERS_SYNC_MIN_DELAY_MS, SandboxOrdersStreamService.getSyncDelay(500, minPriceStep, 3));
+        assertEquals(Constants.SANDBOX_ORDERS_SYNC_DELAY_MS, SandboxOrdersStreamService.getSyncDelay(501, minPriceStep, 0));
+        assertEquals(2 * Constants.SANDBOX_ORDERS_SYNC_DELAY_MS, SandboxOrdersStreamService.getSyncDelay(501, minPriceStep, 1));
+        assertEquals(Constants.SANDBOX_ORDERS_SYNC_MAX_DELAY_MS, SandboxOrdersStreamService.getSyncDelay(501, minPriceStep, 2));
+        assertEquals(Constants.SANDBOX_ORDERS_SYNC_MAX_DELAY_MS, SandboxOrdersStreamService.getSyncDelay(501, minPriceStep, 16));
+        // ордеров ботов нет
+        assertEquals(Constants.SANDBOX_ORDERS_SYNC_DELAY_MS, SandboxOrdersStreamService.getSyncDelay(Long.MAX_VALUE, minPriceStep, 0));
+    }
+
+    private static GridBot createGridBot() {
+        var config = new GridBotConfig(FIGI, 135.5F, 168.25F, 10, 1000000);
+        var fakeOrderManager = new FakeOrderManager();
+        fakeOrderManager.setSimulatedPrice(INITIAL_PRICE);
+        return new GridBot(config, fakeOrderManager, LOT_SIZE, INITIAL_PRICE);
+    }
+
+    private static Order createOrder(String orderId, Direction direction, BigDecimal price) {
+        return new Order(orderId, FIGI, price, direction, 1, BigDecimal.ZERO, OrderStatus.NEW);
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.ako2345.simplegridbot.ticklog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TickBufferTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final long DAY = 19000 * 86_400_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testOfferFailsWhenFullAndSucceedsAfterDrain() {
+        var buffer = new TickBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(0, DAY + i, 100 + i, 0));
+        }
+        assertFalse(buffer.offer(0, DAY + 4, 104, 0));
+
+        try (var writer = new TickLogWriter(directory, 1 << 20, figiId -> FIGI)) {
+            assertEquals(4, buffer.drainTo(writer));
+            assertEquals(0, buffer.drainTo(writer));
+            // освобождённые ячейки используются на следующем круге
+            for (int i = 5; i < 9; i++) {
+                assertTrue(buffer.offer(0, DAY + i, 100 + i, 0));
+            }
+            assertFalse(buffer.offer(0, DAY + 9, 109, 0));
+            assertEquals(4, buffer.drainTo(writer));
+        }
+
+        var timestamps = new ArrayList<Long>();
+        new TickLogReader(directory).replay(FIGI, (timestamp, price) -> timestamps.add(timestamp - DAY));
+        assertEquals(List.of(0L, 1L, 2L, 3L, 5L, 6L, 7L, 8L), timestamps);
+    }
+
+    @Test
+    public void testConcurrentWritersDoNotLoseAcceptedTicks() throws InterruptedException {
+        var buffer = new TickBuffer(1024);
+        var writersNumber = 4;
+        var ticksPerWriter = 200;
+        var acceptedNumbers = new int[writersNumber];
+        var threads = new ArrayList<Thread>();
+        for (int w = 0; w < writersNumber; w++) {
+            var writerIndex = w;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < ticksPerWriter; i++) {
+                    if (buffer.offer(writerIndex, DAY + i, i, 0)) acceptedNumbers[writerIndex]++;
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        var figis = List.of("BBG000000000", "BBG000000001", "BBG000000002", "BBG000000003");
+        try (var writer = new TickLogWriter(directory, 1 << 20, figis::get)) {
+            assertEquals(writersNumber * ticksPerWriter, buffer.drainTo(writer));
+        }
+        var reader = new TickLogReader(directory);
+        for (int w = 0; w < writersNumber; w++) {
+            assertEquals(acceptedNumbers[w], reader.replay(figis.get(w), (timestamp, price) -> {
+            }));
+        }
+    }
+
+    @Test
+    public void testCapacityMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new TickBuffer(3));
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.ako2345.simplegridbot.ticklog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class TickLogTest {
+
+    private static final List<String> FIGIS = List.of("BBG004730N88", "BBG004731032");
+    private static final long NANOS_PER_DAY = 86_400_000_000_000L;
+    private static final long DAY = 19000 * NANOS_PER_DAY;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReplayReturnsWrittenTicksInOrder() {
+        try (var writer = new TickLogWriter(directory, 1 << 20, FIGIS::get)) {
+            writer.write(0, DAY + 1, 100, 500_000_000);
+            writer.write(1, DAY + 2, 200, 0);
+            writer.write(0, DAY + 3, 101, 0);
+            // следующий день – новый сегмент
+            writer.write(0, DAY + NANOS_PER_DAY, 102, 250_000_000);
+        }
+
+        var reader = new TickLogReader(directory);
+        assertEquals(2, reader.getSegments().size());
+        var ticks = replay(reader, FIGIS.get(0));
+        assertEquals(List.of(
+                List.of(DAY + 1, TickLog.toTicks(100, 500_000_000)),
+                List.of(DAY + 3, TickLog.toTicks(101, 0)),
+                List.of(DAY + NANOS_PER_DAY, TickLog.toTicks(102, 250_000_000))
+        ), ticks);
+        assertEquals(List.of(List.of(DAY + 2, TickLog.toTicks(200, 0))), replay(reader, FIGIS.get(1)));
+        assertEquals(TickLog.toTicks(100, 500_000_000), reader.getFirstPrice(FIGIS.get(0)).getAsLong());
+        assertFalse(reader.getFirstPrice("BBG000000000").isPresent());
+    }
+
+    @Test
+    public void testFullSegmentIsContinuedInNextSegment() {
+        var ticksNumber = 5;
+        try (var writer = new TickLogWriter(directory, TickLog.HEADER_SIZE + 2 * TickLog.RECORD_SIZE, FIGIS::get)) {
+            for (int i = 0; i < ticksNumber; i++) {
+                writer.write(0, DAY + i, 100 + i, 0);
+            }
+        }
+
+        var reader = new TickLogReader(directory);
+        assertEquals(3, reader.getSegments().size());
+        var ticks = replay(reader, FIGIS.get(0));
+        assertEquals(ticksNumber, ticks.size());
+        for (int i = 0; i < ticksNumber; i++) {
+            assertEquals(List.of(DAY + i, TickLog.toTicks(100 + i, 0)), ticks.get(i));
+        }
+    }
+
+    @Test
+    public void testLateTickIsWrittenToCurrentSegment() {
+        try (var writer = new TickLogWriter(directory, 1 << 20, FIGIS::get)) {
+            writer.write(0, DAY + NANOS_PER_DAY, 100, 0);
+            writer.write(0, DAY + NANOS_PER_DAY - 1, 99, 0);
+        }
+
+        var reader = new TickLogReader(directory);
+        assertEquals(1, reader.getSegments().size());
+        assertEquals(2, replay(reader, FIGIS.get(0)).size());
+    }
+
+    private static List<List<Long>> replay(TickLogReader reader, String figi) {
+        var ticks = new ArrayList<List<Long>>();
+        reader.replay(figi, (timestamp, price) -> ticks.add(List.of(timestamp, price)));
+        return ticks;
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.ako2345.simplegridbot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MpscQueueTest {
+
+    @Test
+    public void testCapacityMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new MpscQueue<Integer>(0));
+        assertThrows(IllegalArgumentException.class, () -> new MpscQueue<Integer>(6));
+        assertEquals(8, new MpscQueue<Integer>(8).capacity());
+    }
+
+    @Test
+    public void testElementsArePolledInOfferOrder() {
+        var queue = new MpscQueue<Integer>(4);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        // несколько кругов, чтобы ячейки использовались повторно
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(queue.offer(round * 4 + i));
+            }
+            assertFalse(queue.offer(-1));
+            assertEquals(4, queue.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(round * 4 + i, (int) queue.poll());
+            }
+            assertTrue(queue.isEmpty());
+            assertEquals(0, queue.size());
+        }
+    }
+
+    @Test
+    public void testConcurrentProducersKeepTheirOrder() throws InterruptedException {
+        var producersNumber = 4;
+        var elementsNumber = 100_000;
+        var queue = new MpscQueue<long[]>(1 << 10);
+        var start = new CountDownLatch(1);
+        var producers = new ArrayList<Thread>();
+        for (int producer = 0; producer < producersNumber; producer++) {
+            var producerIndex = producer;
+            var thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < elementsNumber; i++) {
+                    var element = new long[]{producerIndex, i};
+                    while (!queue.offer(element)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+
+        start.countDown();
+        // элементы каждого писателя приходят в порядке добавления, ни один не теряется
+        var nextElements = new long[producersNumber];
+        for (int polledNumber = 0; polledNumber < producersNumber * elementsNumber; ) {
+            var element = queue.poll();
+            if (element == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            assertEquals(nextElements[(int) element[0]]++, element[1]);
+            polledNumber++;
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(queue.isEmpty());
+        for (long nextElement : nextElements) {
+            assertEquals(elementsNumber, nextElement);
+        }
+    }
+
+}